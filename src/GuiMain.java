@@ -1,10 +1,17 @@
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
 
+import control.BatchController;
 import control.Controller;
 import control.GuiControllerImpl;
+import control.GuiTaskRunner;
+import control.IController;
+import control.ParallelScriptController;
 import model.ImageModelImpl;
+import model.commands.CommandCache;
 import view.GuiViewImpl;
 import view.ImageViewImpl;
 
@@ -23,18 +30,30 @@ public class GuiMain {
 
     if (args.length == 0) {
       GuiViewImpl hi = new GuiViewImpl();
-      GuiControllerImpl controller = new GuiControllerImpl(model, hi);
+      // the edits run on a background thread so the window keeps responding while they run
+      GuiControllerImpl controller = new GuiControllerImpl(model, hi, new CommandCache(),
+              GuiTaskRunner.onSwing());
       controller.run();
     } else {
       if (args[0].equals("-file")) {
         try {
           ImageViewImpl view = new ImageViewImpl();
           Readable out = new FileReader(args[1]);
-          Controller controller = new Controller(model, view, out, "");
+          // -parallel runs the commands on unrelated images at the same time, and -lazy only
+          // runs the edits that a save needs
+          List<String> options = Arrays.asList(args).subList(2, args.length);
+          IController controller = options.contains("-parallel")
+                  ? new ParallelScriptController(model, view, out, options.contains("-lazy"))
+                  : new Controller(model, view, out, "", null, new CommandCache(),
+                  options.contains("-lazy"));
           controller.run();
         } catch (IOException e) {
           throw new IllegalArgumentException("file is unreadable or not found");
         }
+      } else if (args[0].equals("-batch")) {
+        // runs the template on every image in the input directory, each on its own
+        BatchController.fromArguments(Arrays.asList(args).subList(1, args.length),
+                new ImageViewImpl()).run();
       } else {
         if (args[0].equals("-text")) {
           ImageViewImpl view = new ImageViewImpl();
@@ -1,9 +1,15 @@
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.List;
 
+import control.BatchController;
 import control.Controller;
+import control.IController;
+import control.ParallelScriptController;
 import model.ImageModelImpl;
+import model.commands.CommandCache;
 import view.ImageViewImpl;
 
 /**
@@ -23,7 +29,8 @@ public final class UserMain {
     ImageViewImpl view = new ImageViewImpl();
 
 
-    // java -jar hw5.jar -file script
+    // java -jar hw5.jar -file script [-parallel] [-lazy]
+    // java -jar hw5.jar -batch template inputDirectory outputDirectory [-threads n] [-lazy]
 
     if (args.length == 0) {
       Controller controller = new Controller(model, view, new InputStreamReader(System.in), "");
@@ -32,12 +39,26 @@ public final class UserMain {
       if (args[0].equals("-file")) {
         try {
           Readable out = new FileReader(args[1]);
-          Controller controller = new Controller(model, view, out, "");
+          // -parallel runs the commands on unrelated images at the same time, and -lazy only
+          // runs the edits that a save needs
+          List<String> options = Arrays.asList(args).subList(2, args.length);
+          IController controller = options.contains("-parallel")
+                  ? new ParallelScriptController(model, view, out, options.contains("-lazy"))
+                  : new Controller(model, view, out, "", null, new CommandCache(),
+                  options.contains("-lazy"));
           controller.run();
         } catch (IOException e) {
           throw new IllegalArgumentException("file is unreadable or not found");
         }
+      } else if (args[0].equals("-batch")) {
+        // runs the template on every image in the input directory, each on its own
+        BatchController.fromArguments(Arrays.asList(args).subList(1, args.length),
+                view).run();
       }
     }
+    // -Dmodel.storeStats=true prints how the images were kept, to help size the heap
+    if (Boolean.getBoolean("model.storeStats")) {
+      System.err.println(model.getStatistics());
+    }
   }
 }
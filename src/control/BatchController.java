@@ -0,0 +1,213 @@
+package control;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.ImageModelImpl;
+import view.ImageView;
+import view.ImageViewImpl;
+
+/**
+ * This is the controller that runs one script on every image in a directory. The script is a
+ * template in which {input} is replaced by the path of the image, {name} by its file name
+ * without the extension, and {output} by that name in the output directory, so a template like
+ * "load {input} img brightness 10 img out save out {output} png" brightens every image.
+ *
+ * <p>Each image is run by its own Controller on its own model, so images cannot see each other
+ * and the memory of an image is let go as soon as it is done. A fixed number of images are run
+ * at the same time. Only files with an extension a Controller can load, in lower case, are run.
+ * An image fails if its Controller throws an exception or error or has any failures, and the
+ * other images are run anyway. A line for each image with how
+ * long it took is written in the order of the file names as the images finish, followed by the
+ * number of images that succeeded and failed and the time the whole batch took.
+ */
+public class BatchController implements IController {
+
+  // the file types a Controller can load, which it matches with their case
+  private static final List<String> EXTENSIONS = Arrays.asList(".ppm", ".pgm", ".bmp", ".jpg",
+          ".png");
+
+  private final String template;
+  private final File inputDirectory;
+  private final File outputDirectory;
+  private final ImageView view;
+  private final int threads;
+  private final boolean lazy;
+
+  /**
+   * Constructor for a controller that runs a template on every image in a directory.
+   *
+   * @param template        the script, with {input}, {name} and {output} to be replaced
+   * @param inputDirectory  the directory of the images
+   * @param outputDirectory the directory {output} is in, which is made if it does not exist
+   * @param view            the view the summary is written to
+   * @param threads         the number of images that are run at the same time
+   * @param lazy            true to only run the edits that a save needs
+   * @throws IllegalArgumentException if any of the parameters are null, the input directory is
+   *                                  not a directory, or the number of threads is less than one
+   */
+  public BatchController(String template, File inputDirectory, File outputDirectory,
+                         ImageView view, int threads, boolean lazy)
+          throws IllegalArgumentException {
+    if (template == null || inputDirectory == null || outputDirectory == null || view == null) {
+      throw new IllegalArgumentException("One or more of the "
+              + "parameters for the constructor is null");
+    }
+    if (!inputDirectory.isDirectory()) {
+      throw new IllegalArgumentException("input directory does not exist");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("number of threads must be at least one");
+    }
+    this.template = template;
+    this.inputDirectory = inputDirectory;
+    this.outputDirectory = outputDirectory;
+    this.view = view;
+    this.threads = threads;
+    this.lazy = lazy;
+  }
+
+  /**
+   * Makes a controller from the arguments of a main method that follow -batch: the template
+   * file, the input directory and the output directory, then -threads and a number and -lazy,
+   * which can be left out. By default there is one thread for each processor.
+   *
+   * @param args the arguments after -batch
+   * @param view the view the summary is written to
+   * @return the controller
+   * @throws IllegalArgumentException if an argument is missing or not valid, or the template is
+   *                                  unreadable or not found
+   */
+  public static BatchController fromArguments(List<String> args, ImageView view)
+          throws IllegalArgumentException {
+    if (args.size() < 3) {
+      throw new IllegalArgumentException("batch needs a template, an input directory and an "
+              + "output directory");
+    }
+    String template;
+    try {
+      template = new String(Files.readAllBytes(new File(args.get(0)).toPath()));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("file is unreadable or not found");
+    }
+    List<String> options = args.subList(3, args.size());
+    int threads = Runtime.getRuntime().availableProcessors();
+    int index = options.indexOf("-threads");
+    if (index >= 0) {
+      try {
+        threads = Integer.parseInt(options.get(index + 1));
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new IllegalArgumentException("-threads needs a number");
+      }
+    }
+    return new BatchController(template, new File(args.get(1)), new File(args.get(2)), view,
+            threads, options.contains("-lazy"));
+  }
+
+  @Override
+  public void run() {
+    File[] listed = inputDirectory.listFiles(file -> file.isFile()
+            && EXTENSIONS.contains(extension(file.getName())));
+    List<File> files = listed == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(listed));
+    files.sort((a, b) -> a.getName().compareTo(b.getName()));
+    outputDirectory.mkdirs();
+
+    long start = System.nanoTime();
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<CompletableFuture<ImageResult>> results = new ArrayList<>(files.size());
+    try {
+      for (File file : files) {
+        results.add(CompletableFuture.supplyAsync(() -> runImage(file), pool));
+      }
+      int failed = 0;
+      for (CompletableFuture<ImageResult> result : results) {
+        ImageResult done = result.join();
+        if (done.failure != null) {
+          failed++;
+          writeMessage(done.name + " failed in " + done.millis + " ms: " + done.failure + "\n");
+        } else {
+          writeMessage(done.name + " done in " + done.millis + " ms\n");
+        }
+      }
+      writeMessage("batch finished: " + (files.size() - failed) + " succeeded, " + failed
+              + " failed, in " + (System.nanoTime() - start) / 1_000_000 + " ms\n");
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Runs the template on one image with its own model, which is let go once it returns.
+   *
+   * @param file the image
+   * @return the time it took and why it failed, if it did
+   */
+  private ImageResult runImage(File file) {
+    String name = file.getName().substring(0, file.getName().lastIndexOf('.'));
+    String script = template.replace("{input}", file.getPath())
+            .replace("{name}", name)
+            .replace("{output}", new File(outputDirectory, name).getPath());
+    long start = System.nanoTime();
+    Controller controller = new Controller(new ImageModelImpl(),
+            new ImageViewImpl(new StringBuilder()), new StringReader(script), "", null, null,
+            lazy);
+    String failure = null;
+    try {
+      controller.run();
+    } catch (Throwable e) {
+      // errors like running out of memory only fail this image
+      failure = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+    // a command that did not work usually makes a later one throw, so it is the better reason
+    if (!controller.getFailures().isEmpty()) {
+      failure = controller.getFailures().get(0);
+    }
+    return new ImageResult(file.getName(), (System.nanoTime() - start) / 1_000_000, failure);
+  }
+
+  // the extension of a file name with its dot, in the case it was written in
+  private static String extension(String fileName) {
+    int dot = fileName.lastIndexOf('.');
+    return dot < 0 ? "" : fileName.substring(dot);
+  }
+
+  /**
+   * Catches the IO exception in renderMessage, the same as Controller does.
+   *
+   * @param message the message that is to be written
+   * @throws IllegalStateException instead of IO exception if the transmission fails
+   */
+  private void writeMessage(String message) throws IllegalStateException {
+    try {
+      this.view.renderMessage(message);
+    } catch (IOException e) {
+      throw new IllegalStateException("transmission of the message to the "
+              + "provided data destination fails");
+    }
+  }
+
+  /**
+   * This class is what running one image left behind: its file name, how long it took, and why
+   * it failed, if it did.
+   */
+  private static final class ImageResult {
+
+    private final String name;
+    private final long millis;
+    private final String failure;
+
+    ImageResult(String name, long millis, String failure) {
+      this.name = name;
+      this.millis = millis;
+      this.failure = failure;
+    }
+  }
+}
@@ -1,9 +1,14 @@
 package control;
 
 import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.function.Function;
@@ -12,14 +17,20 @@ import java.util.function.Function;
 import javax.imageio.ImageIO;
 
 import model.IImage;
-import model.ImageImpl;
 import model.ImageModel;
+import model.commands.BoxBlur;
+import model.commands.ColorMatrix;
 import model.commands.ColorTransformation;
+import model.commands.CommandCache;
+import model.commands.FftConvolution;
 import model.commands.Flip;
 import model.commands.GrayScale;
 import model.commands.ImageProcessingCommands;
 import model.commands.Brightness;
+import model.commands.ParallelExecutor;
 import model.commands.Quality;
+import model.commands.ViewCommand;
+import model.plan.PlanOptimizer;
 import view.ImageView;
 
 
@@ -34,6 +45,11 @@ public class Controller implements IController {
   private final Readable input;
   private String type;
   private boolean validCommand;
+  private final ParallelExecutor executor;
+  private final CommandCache cache;
+  private final boolean lazy;
+  // the messages of the commands that did not work, in the order they were run
+  private final List<String> failures;
   Map<String, Function<Scanner, ImageProcessingCommands>> knownCommands;
 
   /**
@@ -48,6 +64,60 @@ public class Controller implements IController {
    */
   public Controller(ImageModel model, ImageView view, Readable input, String type)
           throws IllegalArgumentException {
+    this(model, view, input, type, null);
+  }
+
+  /**
+   * Constructor for a controller that runs its edits through the given ParallelExecutor, so
+   * each edit is split into bands of rows that are processed at the same time.
+   *
+   * @param model    a list of saved images in a hashmap
+   * @param view     an image view
+   * @param input    a user input
+   * @param type     a type of command to run
+   * @param executor the executor edits are run on, or null to run them on this thread
+   * @throws IllegalArgumentException if the model, view, input or type is null
+   */
+  public Controller(ImageModel model, ImageView view, Readable input, String type,
+                    ParallelExecutor executor) throws IllegalArgumentException {
+    this(model, view, input, type, executor, new CommandCache());
+  }
+
+  /**
+   * Constructor for a controller that looks up its edits in the given CommandCache before
+   * running them. Controllers that share a cache reuse each other's results.
+   *
+   * @param model    a list of saved images in a hashmap
+   * @param view     an image view
+   * @param input    a user input
+   * @param type     a type of command to run
+   * @param executor the executor edits are run on, or null to run them on this thread
+   * @param cache    the cache of results, or null to always run the edits
+   * @throws IllegalArgumentException if the model, view, input or type is null
+   */
+  public Controller(ImageModel model, ImageView view, Readable input, String type,
+                    ParallelExecutor executor, CommandCache cache)
+          throws IllegalArgumentException {
+    this(model, view, input, type, executor, cache, false);
+  }
+
+  /**
+   * Constructor for a controller that can run lazily. A lazy controller only plans its edits:
+   * each edit saves a PlannedImage, and the pixels are made when a save needs them, so edits
+   * whose images are never saved or used by a saved image are never run.
+   *
+   * @param model    a list of saved images in a hashmap
+   * @param view     an image view
+   * @param input    a user input
+   * @param type     a type of command to run
+   * @param executor the executor edits are run on, or null to run them on this thread
+   * @param cache    the cache of results, or null to always run the edits
+   * @param lazy     true to plan the edits instead of running them right away
+   * @throws IllegalArgumentException if the model, view, input or type is null
+   */
+  public Controller(ImageModel model, ImageView view, Readable input, String type,
+                    ParallelExecutor executor, CommandCache cache, boolean lazy)
+          throws IllegalArgumentException {
 
     if (model == null || view == null || input == null || type == null) {
       throw new IllegalArgumentException("One or more of the "
@@ -59,6 +129,50 @@ public class Controller implements IController {
     this.input = input;
     this.type = type;
     this.validCommand = true;
+    this.executor = executor;
+    this.cache = cache;
+    this.lazy = lazy;
+    this.failures = new ArrayList<>();
+  }
+
+  /**
+   * Gets the messages of the commands that did not work, like a load of a missing file or a
+   * save that could not be written, so a caller can tell whether a script worked without
+   * reading what was written to the view.
+   *
+   * @return an unmodifiable list of the messages, in the order they were written
+   */
+  public List<String> getFailures() {
+    return Collections.unmodifiableList(failures);
+  }
+
+  /**
+   * Runs an edit on an image, in parallel if this controller has an executor. An edit that only
+   * moves pixels around, like a flip, gives a view of the image instead. If this controller
+   * has a cache, an edit that was already run on the same image is not run again. If this
+   * controller is lazy, the edit is only planned, put together with the edit the image is still
+   * waiting on when they can be done in one pass.
+   *
+   * @param cmd   the edit to be run
+   * @param image the image to be edited
+   * @return the edited image
+   */
+  private IImage apply(ImageProcessingCommands cmd, IImage image) {
+    // an edit that only moves pixels around is seen through a view instead of being run
+    if (cmd instanceof ViewCommand && image != null) {
+      return ((ViewCommand) cmd).view(image);
+    }
+    // a missing image is run right away so it fails the same way
+    if (lazy && image != null) {
+      return PlanOptimizer.plan(cmd, image, executor, cache);
+    }
+    if (cache != null) {
+      return cache.process(cmd, image, executor);
+    }
+    if (executor == null) {
+      return cmd.process(image);
+    }
+    return executor.execute(cmd, image);
   }
 
   /**
@@ -67,10 +181,10 @@ public class Controller implements IController {
    * @param s     a scanner for the user input
    * @param image an image that is going to be loaded
    */
-  private void loadController(Scanner s, ImageImpl image) {
+  private void loadController(Scanner s, IImage image) {
     String location = s.next();
     String name = s.next();
-    if (location.endsWith(".ppm")) {
+    if (location.endsWith(".ppm") || location.endsWith(".pgm")) {
       image = PPMUtil.loadPPM(location);
     } else {
       if (location.endsWith(".bmp") || location.endsWith(".jpg") || location.endsWith(".png")) {
@@ -78,7 +192,7 @@ public class Controller implements IController {
       }
     }
     if (image == null) {
-      writeMessage("load unsuccessful: file type is not a ppm or file name does not exist\n");
+      writeFailure("load unsuccessful: file type is not a ppm or file name does not exist\n");
       return;
     }
     model.saveName(name, image);
@@ -87,36 +201,50 @@ public class Controller implements IController {
 
 
   /**
-   * This is the helper for save when the file type is a PPM.
+   * This is the helper for save when the file type is a PPM. The file is written a row at a
+   * time as it is formatted, instead of being built in memory first.
    *
    * @param image      an image that is going to be saved
    * @param desired    a string represents the desired name of a file
-   * @param appendable input stream
    */
-  private void savePPMController(ImageImpl image, String desired,
-                                 Appendable appendable) {
-    try {
-      // creates the contents of the file
-      PPMUtil.savePPM(appendable, image);
-      // make the file and append the tag '.ppm'
-      File file = new File(desired + ".ppm");
-      if (!file.exists()) {
-        try {
-          // creates the new file and writes appendable inside
-          file.createNewFile();
-          FileWriter myWriter = new FileWriter(file);
-          myWriter.write(appendable.toString());
-          myWriter.close();
-        } catch (IOException e) {
-          writeMessage("an exception occurred");
-          validCommand = false;
-        }
+  private void savePPMController(IImage image, String desired) {
+    // make the file and append the tag '.ppm'
+    File file = new File(desired + ".ppm");
+    if (file.exists()) {
+      writeFailure("same file name exists save failed\n");
+      validCommand = false;
+      return;
+    }
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      PPMUtil.savePPM(out, image);
+    } catch (IOException e) {
+      writeFailure("an exception occurred");
+      validCommand = false;
+    }
+  }
+
+  /**
+   * This is the helper for save when the file is a binary PPM or PGM, which is written straight
+   * to the file a row at a time.
+   *
+   * @param image   an image to be saved
+   * @param desired the filename an image will be saved as
+   */
+  private void saveBinaryController(IImage image, String desired) {
+    File file = new File(desired + "." + type);
+    if (file.exists()) {
+      writeFailure("same file name exists save failed\n");
+      validCommand = false;
+      return;
+    }
+    try (OutputStream out = new FileOutputStream(file)) {
+      if (type.equals("ppm")) {
+        PPMUtil.saveBinaryPPM(out, image);
       } else {
-        writeMessage("same file name exists save failed\n");
-        validCommand = false;
+        PPMUtil.saveBinaryPGM(out, image);
       }
-    } catch (IllegalStateException e) {
-      writeMessage("save was unsuccessful. try again\n");
+    } catch (IOException e) {
+      writeFailure("an exception occurred");
       validCommand = false;
     }
   }
@@ -127,7 +255,7 @@ public class Controller implements IController {
    * @param image   an image to be saved
    * @param desired the filename an image will be saved as
    */
-  private void saveOtherFileController(ImageImpl image, String desired) {
+  private void saveOtherFileController(IImage image, String desired) {
     {
       BufferedImage bufferedImage = ImageUtil.saveImage(image);
       File file = new File(desired + "." + type);
@@ -139,7 +267,7 @@ public class Controller implements IController {
           throw new IllegalStateException("an exception occurred");
         }
       } else {
-        writeMessage("same file name exists save failed\n");
+        writeFailure("same file name exists save failed\n");
         validCommand = false;
       }
     }
@@ -156,7 +284,7 @@ public class Controller implements IController {
     String desired = s.next();
     IImage image = model.getValue(name);
     ImageProcessingCommands cmd = new Flip(type);
-    model.saveName(desired, cmd.process(image));
+    model.saveName(desired, apply(cmd, image));
     writeMessage(name + " was successfully " + type + "ly flipped\n");
   }
 
@@ -171,7 +299,7 @@ public class Controller implements IController {
     String desired = s.next();
     IImage image = model.getValue(name);
     ImageProcessingCommands cmd = new GrayScale(type);
-    model.saveName(desired, cmd.process(image));
+    model.saveName(desired, apply(cmd, image));
     writeMessage(name + " was successfully processed using " + type + " grayscale\n");
   }
 
@@ -188,7 +316,7 @@ public class Controller implements IController {
     String desired = s.next();
     IImage image = model.getValue(name);
     ImageProcessingCommands cmd = new Brightness(increment);
-    model.saveName(desired, cmd.process(image));
+    model.saveName(desired, apply(cmd, image));
     if (increment > 0) {
       writeMessage(name + " was successfully brightened by " + increment + "\n");
     }
@@ -204,14 +332,71 @@ public class Controller implements IController {
    */
   private void qualityController(Scanner s) {
     type = s.next();
+    ImageProcessingCommands cmd;
+    if (type.equals("box") || type.equals("gaussian")) {
+      int radius = s.nextInt();
+      if (radius < 0) {
+        writeFailure("quality unsuccessful: radius cannot be negative\n");
+        s.next();
+        s.next();
+        return;
+      }
+      cmd = type.equals("box") ? new BoxBlur(radius, 1) : BoxBlur.gaussian(radius);
+    } else if (type.equals("kernel")) {
+      cmd = kernelHelper(s);
+      if (cmd == null) {
+        return;
+      }
+    } else {
+      cmd = new Quality(type);
+    }
     String name = s.next();
     String desired = s.next();
     IImage image = model.getValue(name);
-    ImageProcessingCommands cmd = new Quality(type);
-    model.saveName(desired, cmd.process(image));
+    model.saveName(desired, apply(cmd, image));
     writeMessage(name + " was successfully blurred/sharpened\n");
   }
 
+  /**
+   * This is a helper for quality that reads a kernel of any odd size, first its number of rows
+   * and columns and then its values row by row. Large kernels are run with the Fourier
+   * transform.
+   *
+   * @param s a scanner that holds the user input
+   * @return the convolution, or null if the kernel could not be read, in which case the rest of
+   *         the values and the two names are skipped
+   */
+  private ImageProcessingCommands kernelHelper(Scanner s) {
+    int rows = s.nextInt();
+    int cols = s.nextInt();
+    if (rows < 1 || cols < 1 || rows % 2 == 0 || cols % 2 == 0) {
+      writeFailure("quality unsuccessful: the kernel must have an odd number of rows and "
+              + "columns\n");
+      // skip the values of the kernel and the two names
+      for (int i = 0; i < Math.max(0, rows * cols) + 2 && s.hasNext(); i++) {
+        s.next();
+      }
+      return null;
+    }
+    double[][] kernel = new double[rows][cols];
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        if (!s.hasNextDouble()) {
+          writeFailure("quality unsuccessful: the kernel must have " + rows * cols
+                  + " numbers\n");
+          // skip the values that are left, this one included, and the two names
+          int left = rows * cols - (row * cols + col) + 2;
+          for (int i = 0; i < left && s.hasNext(); i++) {
+            s.next();
+          }
+          return null;
+        }
+        kernel[row][col] = s.nextDouble();
+      }
+    }
+    return FftConvolution.forKernel(kernel);
+  }
+
   /**
    * This is a helper for filter which carries out a filter edit to an ImageImpl.
    *
@@ -219,26 +404,62 @@ public class Controller implements IController {
    */
   private void filterController(Scanner s) {
     type = s.next();
+    ImageProcessingCommands cmd;
+    if (type.equals("matrix") || type.equals("matrix-offset")) {
+      cmd = matrixHelper(s, type.equals("matrix") ? 3 : 4);
+      if (cmd == null) {
+        return;
+      }
+    } else {
+      cmd = new ColorTransformation(type);
+    }
     String name = s.next();
     String desired = s.next();
     IImage image = model.getValue(name);
-    ImageProcessingCommands cmd = new ColorTransformation(type);
-    model.saveName(desired, cmd.process(image));
+    model.saveName(desired, apply(cmd, image));
     writeMessage(name + " was successfully filtered\n");
   }
 
+  /**
+   * This is a helper for filter that reads a color matrix row by row, with either three values
+   * per row or three values and an offset.
+   *
+   * @param s       a scanner that holds the user input
+   * @param columns the number of values in each row of the matrix
+   * @return the color matrix, or null if the values were not all numbers, in which case the
+   *         rest of the values and the two names are skipped
+   */
+  private ColorMatrix matrixHelper(Scanner s, int columns) {
+    double[][] matrix = new double[3][columns];
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < columns; col++) {
+        if (!s.hasNextDouble()) {
+          writeFailure("filter unsuccessful: the matrix must have " + columns * 3
+                  + " numbers\n");
+          // skip the values that are left, this one included, and the two names
+          int left = columns * 3 - (row * columns + col) + 2;
+          for (int i = 0; i < left && s.hasNext(); i++) {
+            s.next();
+          }
+          return null;
+        }
+        matrix[row][col] = s.nextDouble();
+      }
+    }
+    return new ColorMatrix(matrix);
+  }
+
   //We want to make the run method shorter, but the time is limited. Vido said we need to make
   //all the helper methods into function objects.
 
   @Override
   public void run() {
     Scanner s = new Scanner(input);
-    ImageImpl image = null;
+    IImage image = null;
     String name;
     String desired;
     while (s.hasNext()) {
       String in = s.next();
-      Appendable appendable = new StringBuilder();
       switch (in) {
         case "q":
         case "Q":
@@ -250,17 +471,25 @@ public class Controller implements IController {
           loadController(s, image);
           break;
         case "save":
+          // each save reports on its own, whatever the saves before it did
+          validCommand = true;
           name = s.next();
           desired = s.next();
-          image = (ImageImpl) model.getValue(name);
+          image = model.getValue(name);
           type = s.next();
-          if (type.equals("ppm")) {
-            savePPMController(image, desired, appendable);
+          boolean binary = type.equals("binary");
+          if (binary) {
+            type = s.next();
+          }
+          if (type.equals("ppm") && !binary) {
+            savePPMController(image, desired);
+          } else if (type.equals("ppm") || type.equals("pgm")) {
+            saveBinaryController(image, desired);
           } else {
             if (type.equals("jpg") || type.equals("png") || type.equals("bmp")) {
               saveOtherFileController(image, desired);
             } else {
-              writeMessage("file type not supported\n");
+              writeFailure("file type not supported\n");
               break;
             }
           }
@@ -284,13 +513,24 @@ public class Controller implements IController {
           filterController(s);
           break;
         default:
-          writeMessage("Unknown command. Try again\n");
+          writeFailure("Unknown command. Try again\n");
           break;
       }
     }
   }
 
 
+  /**
+   * Writes the message of a command that did not work and keeps it for getFailures.
+   *
+   * @param message the message that is to be written
+   * @throws IllegalStateException if the transmission fails
+   */
+  private void writeFailure(String message) throws IllegalStateException {
+    failures.add(message.trim());
+    writeMessage(message);
+  }
+
   /**
    * Catches the IO exception in renderMessage, so it never occurs anywhere else in my code.
    *
@@ -2,9 +2,13 @@ package control;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import javax.imageio.ImageIO;
@@ -13,14 +17,15 @@ import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import model.IImage;
-import model.ImageImpl;
 import model.ImageModel;
 import model.commands.Brightness;
 import model.commands.ColorTransformation;
+import model.commands.CommandCache;
 import model.commands.Flip;
 import model.commands.GrayScale;
 import model.commands.ImageProcessingCommands;
 import model.commands.Quality;
+import model.commands.ViewCommand;
 import view.GuiView;
 
 /**
@@ -31,10 +36,17 @@ public class GuiControllerImpl implements ActionListener, GuiController {
   private final GuiView view;
   private final ImageModel model;
   private int imageNum;
+  // the largest number an image has been saved under, which is never handed out again
+  private int lastNum;
+  // the number the running edit saves its result under
+  private int runningNum;
+  // the numbers of cancelled edits, whose results are dropped before the next edit runs
+  private final List<Integer> cancelledNums;
   private IImage image;
-  private ImageProcessingCommands cmd;
   private final JFileChooser fChooser;
   private final FileNameExtensionFilter filter;
+  private final CommandCache cache;
+  private final GuiTaskRunner runner;
 
   /**
    * Constructor for the GUI controller class. A controller object contains all aspects of the
@@ -44,17 +56,131 @@ public class GuiControllerImpl implements ActionListener, GuiController {
    * @param view  the GuiViewImpl that will show what gets altered
    */
   public GuiControllerImpl(ImageModel model, GuiView view) {
+    this(model, view, new CommandCache());
+  }
+
+  /**
+   * Constructor for a GUI controller that looks up its edits in the given CommandCache before
+   * running them, so the same edit of an image with the same pixels is only run once. The edits
+   * are run on the thread that asks for them.
+   *
+   * @param model the ImageModel that will be referenced
+   * @param view  the GuiViewImpl that will show what gets altered
+   * @param cache the cache of results, or null to always run the edits
+   */
+  public GuiControllerImpl(ImageModel model, GuiView view, CommandCache cache) {
+    this(model, view, cache, GuiTaskRunner.direct());
+  }
+
+  /**
+   * Constructor for a GUI controller that runs its edits with the given GuiTaskRunner, which can
+   * run them on a background thread so the window keeps responding. While an edit runs, the view
+   * shows its progress and it can be cancelled, and the other edits are turned away until it is
+   * done.
+   *
+   * @param model  the ImageModel that will be referenced
+   * @param view   the GuiViewImpl that will show what gets altered
+   * @param cache  the cache of results, or null to always run the edits
+   * @param runner the runner the edits are run with
+   */
+  public GuiControllerImpl(ImageModel model, GuiView view, CommandCache cache,
+                           GuiTaskRunner runner) {
     this.model = Objects.requireNonNull(model);
+    this.runner = Objects.requireNonNull(runner);
+    this.cache = cache;
     this.view = Objects.requireNonNull(view);
     view.setListener(this);
     imageNum = 0;
+    cancelledNums = new ArrayList<>();
     fChooser = new JFileChooser(".");
     filter = new FileNameExtensionFilter("JPG/PNG/PPM/BMP files",
             "jpg", "gif", "png", "ppm", "bmp");
   }
 
+  // runs an edit once, looking it up in the cache first if there is one, or gives a view of the
+  // image for an edit that only moves pixels around
+  private IImage apply(ImageProcessingCommands cmd, IImage image) {
+    if (cmd instanceof ViewCommand) {
+      return ((ViewCommand) cmd).view(image);
+    }
+    if (cache == null) {
+      return cmd.process(image);
+    }
+    return cache.process(cmd, image, null);
+  }
+
+  /**
+   * Runs an edit of the current image with the runner, and once it is done saves the result as
+   * the image after the one it was run on, shows it and writes the message. Only one edit runs
+   * at a time.
+   *
+   * @param edit    the edit
+   * @param task    what the edit is called while it runs
+   * @param message the message written once it is done
+   */
+  private void runEdit(ImageProcessingCommands edit, String task, String message) {
+    if (isBusy()) {
+      return;
+    }
+    IImage source = model.getValue(String.valueOf(imageNum));
+    // the number is taken now, so nothing done while the edit runs can be saved over
+    int target = nextNum();
+    runningNum = target;
+    List<Integer> dropped = new ArrayList<>(cancelledNums);
+    cancelledNums.clear();
+    view.showProgress(task);
+    runner.submit(() -> {
+      // the cancelled edits ran before this one, so their results are all saved by now
+      for (int num : dropped) {
+        model.saveName(String.valueOf(num), null);
+      }
+      IImage result = apply(edit, source);
+      // saved here, since hashing the result and spilling images would hold up the window
+      model.saveName(String.valueOf(target), result);
+      return result;
+    }, result -> {
+      view.hideProgress();
+      view.setImagePanel(result);
+      view.renderMessage(message);
+      imageNum = target;
+    }, error -> {
+      view.hideProgress();
+      view.renderMessage("the edit could not be done");
+    });
+  }
+
+  // tells the user to wait and gives true if an edit is running, since loading or saving then
+  // would use an image the edit is about to replace
+  private boolean isBusy() {
+    if (runner.isBusy()) {
+      view.renderMessage("wait for the current edit to finish or cancel it");
+      return true;
+    }
+    return false;
+  }
+
+  // the number the next image is saved under, after every number that was handed out
+  private int nextNum() {
+    lastNum = Math.max(lastNum, imageNum) + 1;
+    return lastNum;
+  }
+
+  // cancels the edit that is running, so its result is not shown and is dropped later
+  private void cancelHelper() {
+    if (runner.cancel()) {
+      cancelledNums.add(runningNum);
+      view.hideProgress();
+      view.renderMessage("the edit was cancelled");
+    } else {
+      view.renderMessage("there is no edit to cancel");
+    }
+  }
+
   // saves an image to a file specified by the user
   private void saveHelper() {
+    if (isBusy()) {
+      return;
+    }
     if (imageNum == 0) {
       view.renderMessage("You must load an image first");
       return;
@@ -71,11 +197,10 @@ public class GuiControllerImpl implements ActionListener, GuiController {
             ImageIO.write(ImageUtil.saveImage(image), "png", f);
           } else {
             if (type.equals("ppm")) {
-              FileWriter myWriter = new FileWriter(f);
-              Appendable appendable = new StringBuilder();
-              PPMUtil.savePPM(appendable, image);
-              myWriter.write(appendable.toString());
-              myWriter.close();
+              // the file is written a row at a time instead of being built in memory
+              try (OutputStream out = new BufferedOutputStream(new FileOutputStream(f))) {
+                PPMUtil.savePPM(out, image);
+              }
             } else {
               view.renderMessage("extension must be either jpg, png, ppm or bmp");
             }
@@ -93,24 +218,29 @@ public class GuiControllerImpl implements ActionListener, GuiController {
 
   // loads an image and creates a new ImagePanel with it
   private void loadHelper() {
+    if (isBusy()) {
+      return;
+    }
     fChooser.setFileFilter(filter);
     int retValue = fChooser.showOpenDialog(null);
     if (retValue == JFileChooser.APPROVE_OPTION) {
       File f = fChooser.getSelectedFile();
+      // a cancelled edit may still save under the next number, so a new one is taken
+      int target = nextNum();
       if (f.toString().endsWith(".ppm")) {
         image = PPMUtil.loadPPM(String.valueOf(f));
         view.setImagePanel(image);
-        model.saveName(String.valueOf(imageNum + 1), image);
+        model.saveName(String.valueOf(target), image);
       }
       if (f.toString().endsWith(".png")
               || f.toString().endsWith(".bmp")
               || f.toString().endsWith(".jpg")) {
         image = ImageUtil.loadImage(String.valueOf(f));
         view.setImagePanel(image);
-        model.saveName(String.valueOf(imageNum + 1), image);
+        model.saveName(String.valueOf(target), image);
       }
       view.renderMessage("loaded" + f);
-      imageNum++;
+      imageNum = target;
     }
   }
 
@@ -120,12 +250,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new Quality("sharpen");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("image was sharpened");
-    imageNum++;
+    runEdit(new Quality("sharpen"), "sharpening", "image was sharpened");
   }
 
   // blurs an image and creates a new ImagePanel with it
@@ -134,12 +259,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new Quality("blur");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("image was blurred");
-    imageNum++;
+    runEdit(new Quality("blur"), "blurring", "image was blurred");
   }
 
   // flips an image horizontally and creates a new ImagePanel with it
@@ -148,12 +268,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new Flip("horizontal");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("image was flipped horizontally");
-    imageNum++;
+    runEdit(new Flip("horizontal"), "flipping", "image was flipped horizontally");
   }
 
   // flips an image vertically and creates a new ImagePanel with it
@@ -162,12 +277,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new Flip("vertical");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("image was flipped vertically");
-    imageNum++;
+    runEdit(new Flip("vertical"), "flipping", "image was flipped vertically");
   }
 
   // retrieves the increment to be brightened by and passes it to brightnessHelper
@@ -184,8 +294,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.refresh();
       return;
     }
-    brightnessHelper(increment);
-    view.renderMessage("image was brightened by " + increment);
+    brightnessHelper(increment, "image was brightened by " + increment);
   }
 
   // retrieves the increment to be darkened by and passes it to brightnessHelper
@@ -202,21 +311,16 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.refresh();
       return;
     }
-    brightnessHelper(increment);
-    view.renderMessage("image was darkened by " + increment);
+    brightnessHelper(increment, "image was darkened by " + increment);
   }
 
   // helper to perform the action of brighten/darken an image
-  private void brightnessHelper(int increment) {
+  private void brightnessHelper(int increment, String message) {
     if (imageNum == 0) {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new Brightness(increment);
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    imageNum++;
+    runEdit(new Brightness(increment), "changing the brightness", message);
   }
 
   // helper to perform the action of adding a sepia filter on an image
@@ -225,12 +329,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new ColorTransformation("sepia");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("the filter sepia was applied");
-    imageNum++;
+    runEdit(new ColorTransformation("sepia"), "applying sepia", "the filter sepia was applied");
   }
 
   // helper to perform the action of adding a luma filter on an image
@@ -239,12 +338,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new ColorTransformation("luma");
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("the filter luma was applied");
-    imageNum++;
+    runEdit(new ColorTransformation("luma"), "applying luma", "the filter luma was applied");
   }
 
   // helper to perform the action of add a grayscale on an image
@@ -253,12 +347,9 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       view.renderMessage("load an image first");
       return;
     }
-    image = model.getValue(String.valueOf(imageNum));
-    cmd = new GrayScale(view.getSelectedGrayscale());
-    model.saveName(String.valueOf(imageNum + 1), cmd.process(image));
-    view.setImagePanel(cmd.process(image));
-    view.renderMessage("the image was grayscaled using "
-            + view.getSelectedGrayscale() + " grayscale");
+    String type = view.getSelectedGrayscale();
+    runEdit(new GrayScale(type), "grayscaling",
+            "the image was grayscaled using " + type + " grayscale");
   }
 
   // helper to perform the action of showing red histogram of an image
@@ -269,7 +360,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
     }
     image = model.getValue(String.valueOf(imageNum));
     String type = "red";
-    view.setHistogramPanel((ImageImpl) image, type);
+    view.setHistogramPanel(image, type);
     view.renderMessage("showing red histogram");
   }
 
@@ -281,7 +372,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
     }
     image = model.getValue(String.valueOf(imageNum));
     String type = "green";
-    view.setHistogramPanel((ImageImpl) image, type);
+    view.setHistogramPanel(image, type);
     view.renderMessage("showing green histogram");
   }
 
@@ -293,7 +384,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
     }
     image = model.getValue(String.valueOf(imageNum));
     String type = "blue";
-    view.setHistogramPanel((ImageImpl) image, type);
+    view.setHistogramPanel(image, type);
     view.renderMessage("showing blue histogram");
   }
 
@@ -305,7 +396,7 @@ public class GuiControllerImpl implements ActionListener, GuiController {
     }
     image = model.getValue(String.valueOf(imageNum));
     String type = "intensity";
-    view.setHistogramPanel((ImageImpl) image, type);
+    view.setHistogramPanel(image, type);
     view.renderMessage("showing intensity histogram");
   }
 
@@ -359,6 +450,9 @@ public class GuiControllerImpl implements ActionListener, GuiController {
       case "intensity histogram":
         intensityHistogramHelper();
         break;
+      case "cancel":
+        cancelHelper();
+        break;
       default:
         break;
     }
@@ -0,0 +1,136 @@
+package control;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * This class runs the edits of the GUI on a background thread and hands each result back to the
+ * Swing event dispatch thread, so the window keeps responding while an edit runs. One edit runs
+ * at a time: a new one cannot be started until the last one is done or cancelled.
+ *
+ * <p>Cancelling an edit drops its result, so nothing it made is shown or saved. The commands
+ * cannot be stopped halfway through, so a cancelled edit still finishes on the background thread
+ * and the next edit waits for it. The runner is meant to be used from the thread results are
+ * handed to, which is the event dispatch thread for a runner made with onSwing.
+ */
+public class GuiTaskRunner {
+
+  private final Executor background;
+  private final Executor publisher;
+  // the task whose result is still wanted, or null if there is none
+  private volatile Object current;
+
+  /**
+   * Constructs a GuiTaskRunner that runs its edits on one executor and hands their results to
+   * another.
+   *
+   * @param background the executor the edits are run on
+   * @param publisher  the executor the results are handed to
+   * @throws IllegalArgumentException if either executor is null
+   */
+  public GuiTaskRunner(Executor background, Executor publisher) throws IllegalArgumentException {
+    if (background == null || publisher == null) {
+      throw new IllegalArgumentException("executors cannot be null");
+    }
+    this.background = background;
+    this.publisher = publisher;
+  }
+
+  /**
+   * Makes a runner that runs its edits on a background thread of its own and hands their
+   * results to the event dispatch thread. The thread does not keep the program running.
+   *
+   * @return the runner
+   */
+  public static GuiTaskRunner onSwing() {
+    ExecutorService background = Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, "image edits");
+      thread.setDaemon(true);
+      return thread;
+    });
+    return new GuiTaskRunner(background, SwingUtilities::invokeLater);
+  }
+
+  /**
+   * Makes a runner that runs each edit and hands over its result right away on the thread that
+   * submits it, the way the GUI ran its edits before there were runners.
+   *
+   * @return the runner
+   */
+  public static GuiTaskRunner direct() {
+    return new GuiTaskRunner(Runnable::run, Runnable::run);
+  }
+
+  /**
+   * Tells whether an edit has been submitted and is not done or cancelled yet.
+   *
+   * @return true if an edit is running
+   */
+  public boolean isBusy() {
+    return current != null;
+  }
+
+  /**
+   * Runs an edit in the background and hands its result, or whatever it threw, to the
+   * publishing executor, unless the edit is cancelled first. Errors like running out of memory
+   * are handed over too, so the runner is never left busy with an edit that is gone.
+   *
+   * @param work      the edit
+   * @param onDone    what is done with the result
+   * @param onFailure what is done with the exception or error if the edit throws one
+   * @param <T>       the type of the result
+   * @throws IllegalArgumentException if any of the parameters are null
+   * @throws IllegalStateException if an edit is already running
+   */
+  public <T> void submit(Supplier<T> work, Consumer<T> onDone,
+                         Consumer<Throwable> onFailure)
+          throws IllegalArgumentException, IllegalStateException {
+    if (work == null || onDone == null || onFailure == null) {
+      throw new IllegalArgumentException("work and callbacks cannot be null");
+    }
+    if (isBusy()) {
+      throw new IllegalStateException("an edit is already running");
+    }
+    Object task = new Object();
+    current = task;
+    background.execute(() -> {
+      T result;
+      try {
+        result = work.get();
+      } catch (Throwable e) {
+        publish(task, () -> onFailure.accept(e));
+        return;
+      }
+      publish(task, () -> onDone.accept(result));
+    });
+  }
+
+  // hands over the outcome of a task unless it was cancelled in the meantime
+  private void publish(Object task, Runnable outcome) {
+    publisher.execute(() -> {
+      if (current != task) {
+        return;
+      }
+      current = null;
+      outcome.run();
+    });
+  }
+
+  /**
+   * Cancels the running edit, so its result is dropped.
+   *
+   * @return true if there was an edit to cancel
+   */
+  public boolean cancel() {
+    if (current == null) {
+      return false;
+    }
+    current = null;
+    return true;
+  }
+}
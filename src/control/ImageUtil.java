@@ -1,7 +1,7 @@
 package control;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 
@@ -9,12 +9,15 @@ import javax.imageio.ImageIO;
 
 import model.IImage;
 import model.ImageImpl;
-import model.PixelImpl;
 
 
 /**
  * This class contains utility methods to read or save to a jpg, png, or bmp image from file and
  * simply print its contents .
+ *
+ * <p>Images stored as TYPE_INT_RGB, TYPE_INT_ARGB or TYPE_3BYTE_BGR, which is what ImageIO gives
+ * for most png, jpg and bmp files, are copied to and from their raster in bulk a row at a time.
+ * Every other layout goes through getRGB, which converts its colors to RGB.
  */
 public class ImageUtil {
 
@@ -27,22 +30,60 @@ public class ImageUtil {
 
     try {
       BufferedImage image = ImageIO.read(new File(filename));
-      int width = image.getWidth();
-      int height = image.getHeight();
-      PixelImpl[][] pixels = new PixelImpl[height][width];
-      for (int row = 0; row < height; row++) {
-        for (int col = 0; col < width; col++) {
-          int color = image.getRGB(col, row);
-          Color c = new Color(color);
-          pixels[row][col] = new PixelImpl(c.getRed(), c.getGreen(), c.getBlue());
-        }
-      }
-      return new ImageImpl(width, height, 255, pixels);
+      return fromBufferedImage(image);
     } catch (IOException e) {
       throw new IllegalStateException("something went wrong with the load");
     }
   }
 
+  /**
+   * Copies the colors of a BufferedImage into an ImageImpl. Any alpha channel is dropped.
+   *
+   * @param image the image to be copied
+   * @return an ImageImpl with the image's data
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static ImageImpl fromBufferedImage(BufferedImage image)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = new int[width * height];
+    WritableRaster raster = image.getRaster();
+
+    switch (image.getType()) {
+      case BufferedImage.TYPE_INT_RGB:
+      case BufferedImage.TYPE_INT_ARGB:
+        // one int per pixel holding 0xAARRGGBB, the alpha of TYPE_INT_RGB is unused
+        raster.getDataElements(0, 0, width, height, pixels);
+        for (int i = 0; i < pixels.length; i++) {
+          pixels[i] &= 0xFFFFFF;
+        }
+        break;
+      case BufferedImage.TYPE_3BYTE_BGR:
+        // the raster gives the bytes of each pixel in band order, which is red, green, blue
+        byte[] bytes = new byte[width * 3];
+        for (int row = 0; row < height; row++) {
+          raster.getDataElements(0, row, width, 1, bytes);
+          int offset = row * width;
+          for (int col = 0, i = 0; col < width; col++, i += 3) {
+            pixels[offset + col] = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8
+                    | (bytes[i + 2] & 0xFF);
+          }
+        }
+        break;
+      default:
+        image.getRGB(0, 0, width, height, pixels, 0, width);
+        for (int i = 0; i < pixels.length; i++) {
+          pixels[i] &= 0xFFFFFF;
+        }
+        break;
+    }
+    return ImageImpl.fromPacked(width, height, 255, pixels);
+  }
+
   /**
    * Observes fields from an ImageImpl in our program and converts them into a BufferedImage to be
    * saved to a file.
@@ -51,22 +92,17 @@ public class ImageUtil {
    * @return a BufferedImage
    */
   public static BufferedImage saveImage(IImage image) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+    BufferedImage bufferImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-    BufferedImage bufferImage = new BufferedImage(image.getWidth(),
-            image.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-    for (int row = 0; row < image.getHeight(); row++) {
-      for (int col = 0; col < image.getWidth(); col++) {
-        // (get pixels at image).getR
-        int r = image.getPixelAt(row, col).getR();
-        int g = image.getPixelAt(row, col).getG();
-        int b = image.getPixelAt(row, col).getB();
-
-        Color color = new Color(r,g,b);
-
-        bufferImage.setRGB(col, row, color.getRGB());
-      }
+    // packed pixels are already the 0xRRGGBB ints that TYPE_INT_RGB stores
+    WritableRaster raster = bufferImage.getRaster();
+    int[] pixels = new int[width];
+    for (int row = 0; row < height; row++) {
+      image.getPackedRow(row, pixels, 0);
+      raster.setDataElements(0, row, width, 1, pixels);
     }
     return bufferImage;
   }
-}
\ No newline at end of file
+}
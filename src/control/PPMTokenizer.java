@@ -0,0 +1,167 @@
+package control;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This class reads the tokens of a PPM file straight from the bytes of a stream. Numbers are
+ * parsed digit by digit as they are read, so no strings are made for them, and a '#' starts a
+ * comment that runs to the end of the line wherever it appears. The stream is read through one
+ * buffer that is reused, so a file of any size only needs the memory of its pixels. The binary
+ * samples that follow the header of a P5 or P6 file are read in bulk with readFully.
+ */
+final class PPMTokenizer {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  /**
+   * Constructs a PPMTokenizer that reads from the given stream. The stream is not closed by the
+   * tokenizer.
+   *
+   * @param in the stream to be read
+   */
+  PPMTokenizer(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Reads the next byte of the stream.
+   *
+   * @return the byte from 0 to 255, or -1 at the end of the stream
+   * @throws IOException if the stream cannot be read
+   */
+  int read() throws IOException {
+    if (position == limit) {
+      limit = in.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  /**
+   * Reads bytes into the given array until it has the given number of them, first from what is
+   * left in the buffer and then straight from the stream.
+   *
+   * @param dest   the array the bytes are read into
+   * @param offset the index of the first byte
+   * @param length the number of bytes to be read
+   * @throws IOException if the stream cannot be read or ends before all of the bytes
+   */
+  void readFully(byte[] dest, int offset, int length) throws IOException {
+    int buffered = Math.min(length, limit - position);
+    System.arraycopy(buffer, position, dest, offset, buffered);
+    position += buffered;
+    int done = buffered;
+    while (done < length) {
+      int count = in.read(dest, offset + done, length - done);
+      if (count < 0) {
+        throw new EOFException("the file ended early");
+      }
+      done += count;
+    }
+  }
+
+  /**
+   * Skips whitespace and comments, and reads the first byte after them.
+   *
+   * @return the first byte of the next token, or -1 at the end of the stream
+   * @throws IOException if the stream cannot be read
+   */
+  private int skipToToken() throws IOException {
+    int c = read();
+    while (true) {
+      if (c == '#') {
+        skipComment(c);
+        c = read();
+      } else if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B) {
+        c = read();
+      } else {
+        return c;
+      }
+    }
+  }
+
+  /**
+   * Reads the next token as a string. This is only meant for short tokens like the magic number
+   * at the start of the file.
+   *
+   * @return the token
+   * @throws IOException if the stream cannot be read or has no more tokens
+   */
+  String nextToken() throws IOException {
+    int c = skipToToken();
+    if (c == -1) {
+      throw new EOFException("the file ended early");
+    }
+    StringBuilder token = new StringBuilder();
+    while (c != -1 && !isSeparator(c)) {
+      token.append((char) c);
+      c = read();
+    }
+    skipComment(c);
+    return token.toString();
+  }
+
+  /**
+   * Reads the next token as a whole number, with an optional sign.
+   *
+   * @return the number
+   * @throws IOException if the stream cannot be read, has no more tokens, or the token is not a
+   *                     whole number that fits in an int
+   */
+  int nextInt() throws IOException {
+    int c = skipToToken();
+    if (c == -1) {
+      throw new EOFException("the file ended early");
+    }
+    boolean negative = c == '-';
+    if (c == '-' || c == '+') {
+      c = read();
+    }
+    if (c < '0' || c > '9') {
+      throw new IOException("expected a number");
+    }
+    long value = 0;
+    while (c >= '0' && c <= '9') {
+      value = value * 10 + (c - '0');
+      if (value > Integer.MAX_VALUE + 1L) {
+        throw new IOException("number is too large");
+      }
+      c = read();
+    }
+    if (c != -1 && !isSeparator(c)) {
+      throw new IOException("expected a number");
+    }
+    skipComment(c);
+    value = negative ? -value : value;
+    if (value > Integer.MAX_VALUE) {
+      throw new IOException("number is too large");
+    }
+    return (int) value;
+  }
+
+  // skips the rest of a comment when the byte that ended a token started one
+  private void skipComment(int c) throws IOException {
+    if (c == '#') {
+      while (c != '\n' && c != '\r' && c != -1) {
+        c = read();
+      }
+    }
+  }
+
+  // whether a byte ends a token
+  private static boolean isSeparator(int c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f' || c == 0x0B
+            || c == '#';
+  }
+}
@@ -1,22 +1,28 @@
 package control;
 
 import java.io.IOException;
-import java.util.Scanner;
 import java.io.FileNotFoundException;
 import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 
 
 import model.IImage;
 import model.ImageImpl;
+import model.PackedPixels;
 import model.Pixel;
-import model.PixelImpl;
 
 /**
  * This class contains utility methods to read or save to a PPM image from file and
- * simply print its contents.
+ * simply print its contents. Images can also be saved in the binary P6 format, or the binary
+ * P5 format of grayscale PGM files, and read back from either.
  */
 public class PPMUtil {
 
+  // the largest max value a binary PPM or PGM file can have
+  private static final int MAX_BINARY_VALUE = 65535;
+
   /**
    * Load an image from the specified path and refer to it in the program by the given image name.
    *
@@ -31,54 +37,133 @@ public class PPMUtil {
    * Read an image file in the PPM format and print the colors.
    *
    * @param fileName the path of the file.
+   * @return the image, or null if the file does not exist, is not a P3 PPM or is malformed
    */
   public static ImageImpl readPPM(String fileName) {
-    Scanner sc;
-
+    InputStream in;
     try {
-      sc = new Scanner(new FileInputStream(fileName));
+      in = new FileInputStream(fileName);
     } catch (FileNotFoundException e) {
       // file name does not exist
       return null;
     }
-    StringBuilder builder = new StringBuilder();
-    //read the file line by line, and populate a string. This will throw away any comment lines
-    while (sc.hasNextLine()) {
-      String s = sc.nextLine();
-      if (s.charAt(0) != '#') {
-        builder.append(s + System.lineSeparator());
-      }
+    try (InputStream stream = in) {
+      return readPPM(stream);
+    } catch (IOException e) {
+      // the file could not be closed, but it has already been read
+      return null;
     }
+  }
 
-    //now set up the scanner to read from the string we just built
-    sc = new Scanner(builder.toString());
-
-    String token;
+  /**
+   * Reads an image in the PPM format from a stream. The ASCII P3 format and the binary P6 format
+   * are read as they are, and the binary grayscale P5 format of PGM files is read with the same
+   * value in all three channels. Binary files with a max value over 255 have two bytes per
+   * sample, most significant first. When the max value is over 255, each sample is scaled from
+   * 0 to the max value down to 0 to 255, rounded, so the image keeps its max value and its
+   * brightness. Every value is then clamped to 0 to 255 as it is stored, the same for every
+   * format. The numbers of a P3 file are parsed straight from the bytes of the
+   * stream, comments starting with '#' are skipped wherever they appear in a header, and the
+   * samples of a binary file are read a row at a time. The stream is not closed.
+   *
+   * @param in the stream the image is read from
+   * @return the image, or null if the stream is not a P3, P5 or P6 file, is malformed or cannot
+   *         be read
+   */
+  public static ImageImpl readPPM(InputStream in) {
+    PPMTokenizer tokenizer = new PPMTokenizer(in);
+    try {
+      String format = tokenizer.nextToken();
+      if (!format.equals("P3") && !format.equals("P5") && !format.equals("P6")) {
+        // file type unsupported
+        return null;
+      }
+      int width = tokenizer.nextInt();
+      int height = tokenizer.nextInt();
+      int maxValue = tokenizer.nextInt();
+      if (width < 1 || height < 1 || maxValue < 1
+              || (long) width * height > Integer.MAX_VALUE) {
+        return null;
+      }
 
-    token = sc.next();
-    if (!token.equals("P3")) {
-      // file type unsupported
+      int[] pixels = new int[width * height];
+      if (format.equals("P3")) {
+        for (int index = 0; index < pixels.length; index++) {
+          int r = scaleDown(tokenizer.nextInt(), maxValue);
+          int g = scaleDown(tokenizer.nextInt(), maxValue);
+          int b = scaleDown(tokenizer.nextInt(), maxValue);
+          // ADD PIXELS TO IMAGE
+          pixels[index] = PackedPixels.pack(r, g, b);
+        }
+      } else {
+        if (maxValue > MAX_BINARY_VALUE) {
+          return null;
+        }
+        readSamples(tokenizer, pixels, width, height, format.equals("P5") ? 1 : 3, maxValue);
+      }
+      return ImageImpl.fromPacked(width, height, maxValue, pixels);
+    } catch (IOException e) {
+      // the stream ended early, held something that is not a number, or could not be read
       return null;
     }
-    int width = sc.nextInt();
-    int height = sc.nextInt();
-    int maxValue = sc.nextInt();
+  }
 
-    PixelImpl[][] pixels = new PixelImpl[height][width];
+  /**
+   * Reads the binary samples of a P5 or P6 file one row at a time and packs them into pixels.
+   * Two byte samples are scaled down to 0 to 255.
+   *
+   * @param tokenizer the tokenizer that has just read the header
+   * @param pixels    the packed pixels of the image
+   * @param width     the width of the image
+   * @param height    the height of the image
+   * @param channels  1 for a grayscale P5 file and 3 for a P6 file
+   * @param maxValue  the max value of the file, which has two bytes per sample when it is over
+   *                  255
+   * @throws IOException if the stream cannot be read or ends early
+   */
+  private static void readSamples(PPMTokenizer tokenizer, int[] pixels, int width, int height,
+                                  int channels, int maxValue) throws IOException {
+    int[] samples = new int[width * channels];
+    byte[] bytes = new byte[samples.length * (maxValue > 255 ? 2 : 1)];
     for (int row = 0; row < height; row++) {
-      for (int col = 0; col < width; col++) {
-        int r = sc.nextInt();
-        int g = sc.nextInt();
-        int b = sc.nextInt();
-        // ADD PIXELS TO IMAGE
-        pixels[row][col] = new PixelImpl(r, g, b);
+      tokenizer.readFully(bytes, 0, bytes.length);
+      for (int i = 0; i < samples.length; i++) {
+        if (maxValue <= 255) {
+          samples[i] = bytes[i] & 0xFF;
+        } else {
+          samples[i] = scaleDown(((bytes[2 * i] & 0xFF) << 8) | (bytes[2 * i + 1] & 0xFF),
+                  maxValue);
+        }
+      }
+      int start = row * width;
+      if (channels == 3) {
+        PackedPixels.packRow(samples, 0, pixels, start, width);
+      } else {
+        for (int col = 0; col < width; col++) {
+          pixels[start + col] = PackedPixels.pack(samples[col], samples[col], samples[col]);
+        }
       }
     }
-    return new ImageImpl(width, height, maxValue, pixels);
+  }
+
+  // scales a sample from 0 to a max value over 255 down to 0 to 255, rounded
+  private static int scaleDown(int sample, int maxValue) {
+    if (maxValue <= 255) {
+      return sample;
+    }
+    return (int) (((long) sample * 255 + maxValue / 2) / maxValue);
+  }
+
+  // scales a value from 0 to 255 up to 0 to a max value over 255, rounded
+  private static int scaleUp(int value, int maxValue) {
+    return maxValue <= 255 ? value : (value * maxValue + 127) / 255;
   }
 
   /**
-   * Saves an Image to a specified path in the format .ppm.
+   * Saves an Image to a specified path in the format .ppm. This builds the whole file in the
+   * Appendable, so files are better saved with the OutputStream version, which streams them.
+   * Images with a max value over 255 have their values scaled up to it, the same as
+   * saveBinaryPPM does.
    *
    * @param appendable the input stream
    * @param image      the image that is going to be saved
@@ -90,18 +175,151 @@ public class PPMUtil {
     //put in file
     try {
 
+      int maxValue = Math.min(image.getMaxValue(), MAX_BINARY_VALUE);
       appendable.append("P3\n");
       appendable.append(image.getWidth() + " " + image.getHeight() + "\n");
-      appendable.append(image.getMaxValue() + "\n");
+      appendable.append(maxValue + "\n");
       for (int row = 0; row < image.getHeight(); row++) {
         for (int col = 0; col < image.getWidth(); col++) {
           Pixel pixel = image.getPixelAt(row, col);
-          appendable.append(pixel.getR() + "\n" + pixel.getG() + "\n" + pixel.getB() + "\n");
+          appendable.append(scaleUp(pixel.getR(), maxValue) + "\n"
+                  + scaleUp(pixel.getG(), maxValue) + "\n"
+                  + scaleUp(pixel.getB(), maxValue) + "\n");
         }
       }
     } catch (IOException e) {
       throw new IllegalStateException("file location unspecified");
     }
   }
-}
 
+  /**
+   * Saves an image to a stream in the ASCII P3 format, the same text savePPM makes for an
+   * Appendable. Each row is formatted into one byte buffer that is reused for every row and
+   * written as soon as it is done, so the whole file is never held in memory. The stream should
+   * be buffered when rows are short.
+   *
+   * @param out   the stream the image is written to
+   * @param image the image that is going to be saved
+   * @throws IOException if the stream cannot be written to
+   */
+  public static void savePPM(OutputStream out, IImage image) throws IOException {
+    int width = image.getWidth();
+    int maxValue = Math.min(image.getMaxValue(), MAX_BINARY_VALUE);
+    String header = "P3\n" + width + " " + image.getHeight() + "\n" + maxValue + "\n";
+    out.write(header.getBytes(StandardCharsets.US_ASCII));
+
+    int[] pixels = new int[width];
+    // each sample is at most three digits and a newline, or five once it is scaled up
+    byte[] bytes = new byte[width * 3 * (maxValue > 255 ? 6 : 4)];
+    for (int row = 0; row < image.getHeight(); row++) {
+      image.getPackedRow(row, pixels, 0);
+      int index = 0;
+      for (int pixel : pixels) {
+        index = putDigits(bytes, index, scaleUp(PackedPixels.red(pixel), maxValue));
+        index = putDigits(bytes, index, scaleUp(PackedPixels.green(pixel), maxValue));
+        index = putDigits(bytes, index, scaleUp(PackedPixels.blue(pixel), maxValue));
+      }
+      out.write(bytes, 0, index);
+    }
+    out.flush();
+  }
+
+  // puts the digits of a value from 0 to 65535 and a newline into a row and gives the index after
+  private static int putDigits(byte[] bytes, int index, int value) {
+    if (value >= 10000) {
+      bytes[index++] = (byte) ('0' + value / 10000);
+    }
+    if (value >= 1000) {
+      bytes[index++] = (byte) ('0' + value / 1000 % 10);
+    }
+    if (value >= 100) {
+      bytes[index++] = (byte) ('0' + value / 100 % 10);
+    }
+    if (value >= 10) {
+      bytes[index++] = (byte) ('0' + value / 10 % 10);
+    }
+    bytes[index++] = (byte) ('0' + value % 10);
+    bytes[index++] = '\n';
+    return index;
+  }
+
+  /**
+   * Saves an image to a stream in the binary P6 format, which takes one or two bytes per sample
+   * instead of up to four characters. Each row is written with one call. Images with a max value
+   * over 255 are saved with two bytes per sample, each value scaled up from 0 to 255 to 0 to the
+   * max value, which is how readPPM reads them back. A max value over 65535, which binary files
+   * cannot hold, is saved as 65535.
+   *
+   * @param out   the stream the image is written to
+   * @param image the image that is going to be saved
+   * @throws IOException if the stream cannot be written to
+   */
+  public static void saveBinaryPPM(OutputStream out, IImage image) throws IOException {
+    writeBinary(out, image, 3);
+  }
+
+  /**
+   * Saves an image to a stream in the binary P5 format of PGM files. A PGM file only has one
+   * channel, so each pixel is saved as its intensity, the average of its three channels, which
+   * is its value when the image is already gray.
+   *
+   * @param out   the stream the image is written to
+   * @param image the image that is going to be saved
+   * @throws IOException if the stream cannot be written to
+   */
+  public static void saveBinaryPGM(OutputStream out, IImage image) throws IOException {
+    writeBinary(out, image, 1);
+  }
+
+  /**
+   * Writes the header and the samples of a binary P5 or P6 file.
+   *
+   * @param out      the stream the image is written to
+   * @param image    the image that is going to be saved
+   * @param channels 1 for a grayscale P5 file and 3 for a P6 file
+   * @throws IOException if the stream cannot be written to
+   */
+  private static void writeBinary(OutputStream out, IImage image, int channels)
+          throws IOException {
+    int width = image.getWidth();
+    int maxValue = Math.min(image.getMaxValue(), MAX_BINARY_VALUE);
+    int bytesPerSample = maxValue > 255 ? 2 : 1;
+    String header = (channels == 3 ? "P6" : "P5") + "\n" + width + " " + image.getHeight()
+            + "\n" + maxValue + "\n";
+    out.write(header.getBytes(StandardCharsets.US_ASCII));
+
+    int[] pixels = new int[width];
+    byte[] bytes = new byte[width * channels * bytesPerSample];
+    for (int row = 0; row < image.getHeight(); row++) {
+      image.getPackedRow(row, pixels, 0);
+      int index = 0;
+      for (int pixel : pixels) {
+        int r = PackedPixels.red(pixel);
+        int g = PackedPixels.green(pixel);
+        int b = PackedPixels.blue(pixel);
+        if (channels == 3) {
+          index = putSample(bytes, index, r, maxValue);
+          index = putSample(bytes, index, g, maxValue);
+          index = putSample(bytes, index, b, maxValue);
+        } else {
+          index = putSample(bytes, index, (r + g + b) / 3, maxValue);
+        }
+      }
+      out.write(bytes);
+    }
+    out.flush();
+  }
+
+  // puts a value from 0 to 255 into the bytes of a row as one sample and gives the index after
+  // it, scaled up to two bytes when the max value is over 255
+  private static int putSample(byte[] bytes, int index, int value, int maxValue) {
+    if (maxValue <= 255) {
+      bytes[index++] = (byte) value;
+      return index;
+    }
+    int sample = scaleUp(value, maxValue);
+    bytes[index++] = (byte) (sample >> 8);
+    bytes[index++] = (byte) sample;
+    return index;
+  }
+}
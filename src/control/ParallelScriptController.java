@@ -0,0 +1,204 @@
+package control;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.ImageModel;
+import model.commands.CommandCache;
+import view.ImageView;
+import view.ImageViewImpl;
+
+/**
+ * This is the controller that runs a whole script at once instead of one command after another.
+ * The script is compiled into steps first, and each step starts on a thread pool as soon as the
+ * steps it depends on are done, so commands on unrelated images run at the same time. Each step
+ * is run by its own Controller against the shared model, which has to be safe to use from many
+ * threads, like ImageModelImpl and ConcurrentImageModel are.
+ *
+ * <p>The messages of each step are kept until every step before it has written its own, so the
+ * output is in script order no matter which steps finish first. If a step throws an exception,
+ * the messages before it are written and the exception is thrown once the other steps are done.
+ * The steps that depend on the failed step are skipped, but steps that do not may already have
+ * run, which a Controller would never have reached.
+ *
+ * <p>A lazy controller runs each step with a lazy Controller, so the steps only plan their edits
+ * and the edits a save needs are run by the step that saves.
+ */
+public class ParallelScriptController implements IController {
+
+  private final ImageModel model;
+  private final ImageView view;
+  private final Readable input;
+  private final ExecutorService pool;
+  private final int parallelism;
+  private final CommandCache cache;
+  private final boolean lazy;
+
+  /**
+   * Constructor for a controller that runs its steps on a pool of one thread per processor,
+   * which is made for each run.
+   *
+   * @param model a model that can be used from many threads
+   * @param view  the view the messages are written to
+   * @param input the script
+   * @throws IllegalArgumentException if any of the parameters are null
+   */
+  public ParallelScriptController(ImageModel model, ImageView view, Readable input)
+          throws IllegalArgumentException {
+    this(model, view, input, false);
+  }
+
+  /**
+   * Constructor for a controller that runs its steps on a pool of one thread per processor,
+   * which is made for each run, and can plan its edits instead of running them right away.
+   *
+   * @param model a model that can be used from many threads
+   * @param view  the view the messages are written to
+   * @param input the script
+   * @param lazy  true to plan the edits instead of running them right away
+   * @throws IllegalArgumentException if any of the parameters are null
+   */
+  public ParallelScriptController(ImageModel model, ImageView view, Readable input,
+                                  boolean lazy) throws IllegalArgumentException {
+    this(model, view, input, null, Runtime.getRuntime().availableProcessors(),
+            new CommandCache(), lazy);
+  }
+
+  /**
+   * Constructor for a controller that runs its steps on the given pool.
+   *
+   * @param model a model that can be used from many threads
+   * @param view  the view the messages are written to
+   * @param input the script
+   * @param pool  the pool the steps are run on, which is not shut down by the controller
+   * @param cache the cache of results shared by the steps, or null to always run the edits
+   * @throws IllegalArgumentException if the model, view, input or pool is null
+   */
+  public ParallelScriptController(ImageModel model, ImageView view, Readable input,
+                                  ExecutorService pool, CommandCache cache)
+          throws IllegalArgumentException {
+    this(model, view, input, checkPool(pool), 0, cache, false);
+  }
+
+  // the constructor all others go through, with either a pool or a number of threads
+  private ParallelScriptController(ImageModel model, ImageView view, Readable input,
+                                   ExecutorService pool, int parallelism, CommandCache cache,
+                                   boolean lazy) {
+    if (model == null || view == null || input == null) {
+      throw new IllegalArgumentException("One or more of the "
+              + "parameters for the constructor is null");
+    }
+    this.model = model;
+    this.view = view;
+    this.input = input;
+    this.pool = pool;
+    this.parallelism = parallelism;
+    this.cache = cache;
+    this.lazy = lazy;
+  }
+
+  // makes sure a pool was given
+  private static ExecutorService checkPool(ExecutorService pool)
+          throws IllegalArgumentException {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool is null");
+    }
+    return pool;
+  }
+
+  @Override
+  public void run() {
+    List<ScriptCompiler.Step> steps = ScriptCompiler.compile(input);
+    ExecutorService runOn = pool != null ? pool : Executors.newFixedThreadPool(parallelism);
+    try {
+      List<CompletableFuture<StepResult>> results = new ArrayList<>(steps.size());
+      for (ScriptCompiler.Step step : steps) {
+        List<CompletableFuture<StepResult>> waitFor = new ArrayList<>();
+        for (ScriptCompiler.Step dependency : step.getDependencies()) {
+          waitFor.add(results.get(dependency.getIndex()));
+        }
+        results.add(CompletableFuture.allOf(waitFor.toArray(new CompletableFuture<?>[0]))
+                .thenApplyAsync(ignored -> runStep(step, waitFor), runOn));
+      }
+
+      // the messages are written in script order while the later steps are still running
+      for (CompletableFuture<StepResult> result : results) {
+        StepResult done = result.join();
+        writeMessage(done.messages);
+        if (done.failure != null) {
+          CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+          throw done.failure;
+        }
+      }
+    } finally {
+      if (pool == null) {
+        runOn.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Runs one step with its own Controller, unless a step it depends on failed or was skipped.
+   *
+   * @param step    the step
+   * @param waitFor the results of the steps it depends on, which are all done
+   * @return the messages of the step and the exception it threw, if any
+   */
+  private StepResult runStep(ScriptCompiler.Step step,
+                             List<CompletableFuture<StepResult>> waitFor) {
+    for (CompletableFuture<StepResult> dependency : waitFor) {
+      if (dependency.join().failure != null || dependency.join().skipped) {
+        return new StepResult("", null, true);
+      }
+    }
+    StringBuilder messages = new StringBuilder();
+    Controller controller = new Controller(model, new ImageViewImpl(messages),
+            new StringReader(step.getText()), "", null, cache, lazy);
+    try {
+      controller.run();
+    } catch (RuntimeException e) {
+      return new StepResult(messages.toString(), e, false);
+    }
+    return new StepResult(messages.toString(), null, false);
+  }
+
+  /**
+   * Catches the IO exception in renderMessage, the same as Controller does.
+   *
+   * @param message the message that is to be written
+   * @throws IllegalStateException instead of IO exception if the transmission fails
+   */
+  private void writeMessage(String message) throws IllegalStateException {
+    if (message.isEmpty()) {
+      return;
+    }
+    try {
+      this.view.renderMessage(message);
+    } catch (IOException e) {
+      throw new IllegalStateException("transmission of the message to the "
+              + "provided data destination fails");
+    }
+  }
+
+  /**
+   * This class is what a step left behind: its messages, the exception it threw, and whether it
+   * was skipped because a step before it failed.
+   */
+  private static final class StepResult {
+
+    private final String messages;
+    private final RuntimeException failure;
+    private final boolean skipped;
+
+    StepResult(String messages, RuntimeException failure, boolean skipped) {
+      this.messages = messages;
+      this.failure = failure;
+      this.skipped = skipped;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package control;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+/**
+ * This class splits a whole script into steps, one for each command, and works out which steps
+ * have to wait for which. Each step reads and writes named images and files: a step waits for
+ * the last step before it that wrote anything it reads or writes, and a step that writes
+ * something also waits for every step since that write that read it. Steps that do not wait for
+ * each other, directly or through other steps, can run at the same time.
+ *
+ * <p>Commands are split with the same rules Controller reads them with. When the compiler meets
+ * something it cannot split with confidence, such as a kernel size that is not a number, the
+ * rest of the script becomes one last step that waits for all of the others and is run in order
+ * by a single Controller. A quit ends the script like it does for a Controller.
+ */
+final class ScriptCompiler {
+
+  private ScriptCompiler() {
+    // utility class, no instances
+  }
+
+  /**
+   * This class is one step of a compiled script: the text of its command and the steps it has
+   * to wait for, which always come before it.
+   */
+  static final class Step {
+
+    private final int index;
+    private final String text;
+    private final List<Step> dependencies;
+
+    Step(int index, String text, List<Step> dependencies) {
+      this.index = index;
+      this.text = text;
+      this.dependencies = Collections.unmodifiableList(dependencies);
+    }
+
+    /**
+     * Gets the position of this step in the script, counting from zero.
+     *
+     * @return the position of this step
+     */
+    int getIndex() {
+      return index;
+    }
+
+    /**
+     * Gets the text of this step, which a Controller can run on its own.
+     *
+     * @return the text of the command
+     */
+    String getText() {
+      return text;
+    }
+
+    /**
+     * Gets the steps that have to finish before this one starts.
+     *
+     * @return the steps, in script order
+     */
+    List<Step> getDependencies() {
+      return dependencies;
+    }
+  }
+
+  /**
+   * Splits a script into steps and finds the steps each of them waits for.
+   *
+   * @param input the script
+   * @return the steps, in script order
+   */
+  static List<Step> compile(Readable input) {
+    List<String> tokens = new ArrayList<>();
+    Scanner s = new Scanner(input);
+    while (s.hasNext()) {
+      tokens.add(s.next());
+    }
+
+    List<Step> steps = new ArrayList<>();
+    Map<String, Step> lastWriter = new HashMap<>();
+    Map<String, List<Step>> readers = new HashMap<>();
+    int start = 0;
+    while (start < tokens.size()) {
+      List<String> reads = new ArrayList<>();
+      List<String> writes = new ArrayList<>();
+      int end = split(tokens, start, reads, writes);
+      Set<Step> dependencies = new LinkedHashSet<>();
+      if (end < 0) {
+        // the rest of the script is run in order after everything else
+        dependencies.addAll(steps);
+        end = tokens.size();
+      } else {
+        for (String read : reads) {
+          addIfPresent(dependencies, lastWriter.get(read));
+        }
+        for (String write : writes) {
+          addIfPresent(dependencies, lastWriter.get(write));
+          dependencies.addAll(readers.getOrDefault(write, Collections.emptyList()));
+        }
+      }
+      List<Step> sorted = new ArrayList<>(dependencies);
+      sorted.sort((a, b) -> Integer.compare(a.index, b.index));
+      Step step = new Step(steps.size(), String.join(" ", tokens.subList(start, end)), sorted);
+      steps.add(step);
+
+      for (String read : reads) {
+        readers.computeIfAbsent(read, key -> new ArrayList<>()).add(step);
+      }
+      for (String write : writes) {
+        lastWriter.put(write, step);
+        readers.remove(write);
+      }
+      if (isQuit(tokens.get(start))) {
+        break;
+      }
+      start = end;
+    }
+    return steps;
+  }
+
+  // adds a step to a set of dependencies unless there is none
+  private static void addIfPresent(Set<Step> dependencies, Step step) {
+    if (step != null) {
+      dependencies.add(step);
+    }
+  }
+
+  /**
+   * Finds the end of the command that starts at the given token, and what it reads and writes.
+   *
+   * @param tokens the tokens of the script
+   * @param start  the index of the first token of the command
+   * @param reads  the list the images and files the command reads are added to
+   * @param writes the list the images and files the command writes are added to
+   * @return the index after the last token of the command, or -1 if it could not be split
+   */
+  private static int split(List<String> tokens, int start, List<String> reads,
+                           List<String> writes) {
+    String command = tokens.get(start);
+    int size = tokens.size();
+    int next = start + 1;
+    switch (command) {
+      case "q":
+      case "Q":
+      case "quit":
+      case "Quit":
+        return next;
+      case "load":
+        if (next + 2 > size) {
+          return -1;
+        }
+        reads.add(file(tokens.get(next)));
+        writes.add(image(tokens.get(next + 1)));
+        return next + 2;
+      case "save":
+        if (next + 3 > size) {
+          return -1;
+        }
+        String type = tokens.get(next + 2);
+        int end = next + 3;
+        if (type.equals("binary")) {
+          if (end + 1 > size) {
+            return -1;
+          }
+          type = tokens.get(end);
+          end++;
+        }
+        reads.add(image(tokens.get(next)));
+        writes.add(file(tokens.get(next + 1) + "." + type));
+        return end;
+      case "flip":
+      case "grayscale":
+        return edit(tokens, next + 1, reads, writes);
+      case "brightness":
+        if (next >= size || !isInt(tokens.get(next))) {
+          return -1;
+        }
+        return edit(tokens, next + 1, reads, writes);
+      case "quality":
+        return quality(tokens, next, reads, writes);
+      case "filter":
+        if (next >= size) {
+          return -1;
+        }
+        String filter = tokens.get(next);
+        if (filter.equals("matrix") || filter.equals("matrix-offset")) {
+          int values = filter.equals("matrix") ? 9 : 12;
+          if (!areDoubles(tokens, next + 1, values)) {
+            return -1;
+          }
+          return edit(tokens, next + 1 + values, reads, writes);
+        }
+        return edit(tokens, next + 1, reads, writes);
+      default:
+        // a Controller only skips the unknown word
+        return next;
+    }
+  }
+
+  // splits a quality command, whose parameters depend on its type
+  private static int quality(List<String> tokens, int next, List<String> reads,
+                             List<String> writes) {
+    if (next >= tokens.size()) {
+      return -1;
+    }
+    String type = tokens.get(next);
+    if (type.equals("box") || type.equals("gaussian")) {
+      if (next + 1 >= tokens.size() || !isInt(tokens.get(next + 1))) {
+        return -1;
+      }
+      return edit(tokens, next + 2, reads, writes);
+    }
+    if (type.equals("kernel")) {
+      if (next + 2 >= tokens.size() || !isInt(tokens.get(next + 1))
+              || !isInt(tokens.get(next + 2))) {
+        return -1;
+      }
+      long rows = Integer.parseInt(tokens.get(next + 1));
+      long cols = Integer.parseInt(tokens.get(next + 2));
+      if (rows < 1 || cols < 1 || rows % 2 == 0 || cols % 2 == 0
+              || !areDoubles(tokens, next + 3, rows * cols)) {
+        return -1;
+      }
+      return edit(tokens, next + 3 + (int) (rows * cols), reads, writes);
+    }
+    return edit(tokens, next + 1, reads, writes);
+  }
+
+  // splits the two names at the end of an edit, which reads the first and writes the second
+  private static int edit(List<String> tokens, int names, List<String> reads,
+                          List<String> writes) {
+    if (names + 2 > tokens.size()) {
+      return -1;
+    }
+    reads.add(image(tokens.get(names)));
+    writes.add(image(tokens.get(names + 1)));
+    return names + 2;
+  }
+
+  // whether a word ends a script
+  private static boolean isQuit(String word) {
+    return word.equals("q") || word.equals("Q") || word.equals("quit") || word.equals("Quit");
+  }
+
+  // whether a token is read by Scanner.nextInt
+  private static boolean isInt(String token) {
+    return new Scanner(token).hasNextInt();
+  }
+
+  // whether the given number of tokens from start are all read by Scanner.nextDouble
+  private static boolean areDoubles(List<String> tokens, int start, long count) {
+    if (start + count > tokens.size()) {
+      return false;
+    }
+    for (int i = start; i < start + count; i++) {
+      if (!new Scanner(tokens.get(i)).hasNextDouble()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the key of a named image
+  private static String image(String name) {
+    return "image " + name;
+  }
+
+  // the key of a file, the same for every way of writing its path
+  private static String file(String path) {
+    try {
+      return "file " + Paths.get(path).toAbsolutePath().normalize();
+    } catch (RuntimeException e) {
+      return "file " + path;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package model;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+
+/**
+ * This class is an ImageModel that can be shared by many threads, such as several Controllers
+ * running scripts at the same time. Each name maps to a future of its image, so reading an image
+ * that is already there never takes a lock.
+ *
+ * <p>computeIfAbsent makes an image only once for a name: a thread that asks for a name whose
+ * image is still being made waits for it instead of making it again. Unlike
+ * ConcurrentHashMap.computeIfAbsent, the image is made outside of the map's locks, so a slow
+ * image does not hold up other names.
+ */
+public class ConcurrentImageModel implements ImageModel {
+
+  private final ConcurrentHashMap<String, CompletableFuture<IImage>> existingImages;
+
+  /**
+   * This is the constructor for ConcurrentImageModel, which starts out with no images.
+   */
+  public ConcurrentImageModel() {
+    this.existingImages = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public void saveName(String desiredName, IImage image) {
+    if (image == null) {
+      this.existingImages.remove(desiredName);
+    } else {
+      this.existingImages.put(desiredName, CompletableFuture.completedFuture(image));
+    }
+  }
+
+  /**
+   * Gets the image saved with a name. If the image is still being made by computeIfAbsent, this
+   * waits for it.
+   *
+   * @param imageName the name of the image
+   * @return the image, or null if there is none or making it failed
+   */
+  @Override
+  public IImage getValue(String imageName) {
+    CompletableFuture<IImage> future = this.existingImages.get(imageName);
+    if (future == null) {
+      return null;
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Replaces the image saved with a name, but only if it is still the expected image. Two
+   * threads that each read an image, edit it and replace it cannot both succeed.
+   *
+   * @param name     the name of the image
+   * @param expected the image the name must have now
+   * @param image    the new image
+   * @return true if the image was replaced
+   * @throws IllegalArgumentException if the new image is null
+   */
+  public boolean replace(String name, IImage expected, IImage image)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    CompletableFuture<IImage> current = this.existingImages.get(name);
+    if (current == null || !current.isDone() || current.isCompletedExceptionally()
+            || current.getNow(null) != expected) {
+      return false;
+    }
+    return this.existingImages.replace(name, current, CompletableFuture.completedFuture(image));
+  }
+
+  /**
+   * Gets the image saved with a name, making it with the given function and saving it if there
+   * is none. However many threads ask for the same name at once, the function runs once and the
+   * others wait for its image. If the function gives null or throws an exception, nothing is
+   * saved and every waiting thread gets the same result. The function must not ask for the name
+   * it is making, or it waits for itself.
+   *
+   * @param name     the name of the image
+   * @param function makes the image from the name
+   * @return the saved or new image, or null if the function gave null
+   * @throws IllegalArgumentException if the function is null
+   */
+  public IImage computeIfAbsent(String name, Function<String, IImage> function)
+          throws IllegalArgumentException {
+    if (function == null) {
+      throw new IllegalArgumentException("function is null");
+    }
+    CompletableFuture<IImage> future = this.existingImages.get(name);
+    if (future == null) {
+      CompletableFuture<IImage> made = new CompletableFuture<>();
+      future = this.existingImages.putIfAbsent(name, made);
+      if (future == null) {
+        return make(name, made, function);
+      }
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw rethrow(e.getCause());
+    }
+  }
+
+  /**
+   * Runs the function of computeIfAbsent and completes its future, which this thread has put in
+   * the map.
+   *
+   * @param name     the name of the image
+   * @param made     the future for the image
+   * @param function makes the image from the name
+   * @return the new image
+   */
+  private IImage make(String name, CompletableFuture<IImage> made,
+                      Function<String, IImage> function) {
+    IImage image;
+    try {
+      image = function.apply(name);
+    } catch (RuntimeException | Error e) {
+      this.existingImages.remove(name, made);
+      made.completeExceptionally(e);
+      throw e;
+    }
+    if (image == null) {
+      this.existingImages.remove(name, made);
+    }
+    made.complete(image);
+    return image;
+  }
+
+  // gives back the exception of a failed computeIfAbsent so the waiting thread can throw it
+  private static RuntimeException rethrow(Throwable cause) {
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    return new IllegalStateException(cause);
+  }
+}
@@ -0,0 +1,192 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class holds the histograms of an image: how many pixels have each of the 256 values for
+ * the red, green and blue channels and for the intensity, which is the average of the three
+ * channels rounded down. All four are counted together in one pass over the pixels. A Histogram
+ * cannot be changed once it is made, so an image can keep its histogram and hand it out again.
+ *
+ * <p>Large images are counted in parallel, with each band of rows counted into its own arrays
+ * and the arrays added together at the end.
+ */
+public final class Histogram {
+
+  /**
+   * The number of pixels at which an image is counted in parallel.
+   */
+  public static final int PARALLEL_THRESHOLD = 1 << 20;
+
+  // the number of rows each parallel task counts on its own
+  private static final int BAND_HEIGHT = 64;
+
+  private static final String[] TYPES = {"red", "green", "blue", "intensity"};
+
+  // counts[type][value], with the types in the order of TYPES
+  private final int[][] counts;
+
+  // constructs a Histogram around counts that are not used anywhere else
+  private Histogram(int[][] counts) {
+    this.counts = counts;
+  }
+
+  /**
+   * Counts the histograms of an image. Images of at least PARALLEL_THRESHOLD pixels are counted
+   * in parallel on the common pool.
+   *
+   * @param image the image to be counted
+   * @return the histograms of the image
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static Histogram of(IImage image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    if ((long) image.getWidth() * image.getHeight() >= PARALLEL_THRESHOLD
+            && ForkJoinPool.getCommonPoolParallelism() > 1) {
+      return of(image, ForkJoinPool.commonPool());
+    }
+    return new Histogram(countRows(image, 0, image.getHeight()));
+  }
+
+  /**
+   * Counts the histograms of an image in parallel on the given pool.
+   *
+   * @param image the image to be counted
+   * @param pool  the pool the bands of rows are counted on
+   * @return the histograms of the image
+   * @throws IllegalArgumentException if the image or the pool is null
+   */
+  public static Histogram of(IImage image, ForkJoinPool pool) throws IllegalArgumentException {
+    if (image == null || pool == null) {
+      throw new IllegalArgumentException("image and pool cannot be null");
+    }
+    return new Histogram(pool.invoke(new CountTask(image, 0, image.getHeight())));
+  }
+
+  /**
+   * Counts the rows from fromRow up to but not including toRow of an image.
+   *
+   * @param image   the image to be counted
+   * @param fromRow the first row to be counted
+   * @param toRow   the row after the last row to be counted
+   * @return the counts of each type
+   */
+  private static int[][] countRows(IImage image, int fromRow, int toRow) {
+    int[] red = new int[256];
+    int[] green = new int[256];
+    int[] blue = new int[256];
+    int[] intensity = new int[256];
+    int[] pixels = new int[image.getWidth()];
+
+    for (int row = fromRow; row < toRow; row++) {
+      image.getPackedRow(row, pixels, 0);
+      for (int pixel : pixels) {
+        int r = PackedPixels.red(pixel);
+        int g = PackedPixels.green(pixel);
+        int b = PackedPixels.blue(pixel);
+        red[r]++;
+        green[g]++;
+        blue[b]++;
+        intensity[(r + g + b) / 3]++;
+      }
+    }
+    return new int[][] {red, green, blue, intensity};
+  }
+
+  // the index in counts of the given type, or -1 if it is not a type
+  private static int indexOf(String type) {
+    for (int index = 0; index < TYPES.length; index++) {
+      if (TYPES[index].equals(type)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the number of pixels with each value, for one type of histogram. The histogram of a
+   * type that is not red, green, blue or intensity is all zeros, the same as
+   * IImage.getHistogramValues has always given.
+   *
+   * @param type the type of histogram
+   * @return a copy of the 256 counts
+   */
+  public int[] getCounts(String type) {
+    int index = indexOf(type);
+    return index < 0 ? new int[256] : counts[index].clone();
+  }
+
+  /**
+   * Gets the largest count of one type of histogram, which is the height of its tallest bar.
+   *
+   * @param type the type of histogram
+   * @return the largest count
+   */
+  public int getMaxCount(String type) {
+    int max = 0;
+    int index = indexOf(type);
+    if (index >= 0) {
+      for (int count : counts[index]) {
+        max = Math.max(max, count);
+      }
+    }
+    return max;
+  }
+
+  /**
+   * Gets one type of histogram as a map from each value from 0 to 255 to its count.
+   *
+   * @param type the type of histogram
+   * @return the map of counts
+   */
+  public Map<Integer, Integer> toMap(String type) {
+    int[] typeCounts = getCounts(type);
+    Map<Integer, Integer> histogram = new HashMap<>();
+    for (int value = 0; value < 256; value++) {
+      histogram.put(value, typeCounts[value]);
+    }
+    return histogram;
+  }
+
+  /**
+   * This is the task that counts a band of rows, splitting it in half until it is short enough
+   * and then adding up the counts of the halves.
+   */
+  private static class CountTask extends RecursiveTask<int[][]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IImage image;
+    private final int fromRow;
+    private final int toRow;
+
+    CountTask(IImage image, int fromRow, int toRow) {
+      this.image = image;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+    }
+
+    @Override
+    protected int[][] compute() {
+      if (toRow - fromRow <= BAND_HEIGHT) {
+        return countRows(image, fromRow, toRow);
+      }
+      int middle = (fromRow + toRow) >>> 1;
+      CountTask top = new CountTask(image, fromRow, middle);
+      top.fork();
+      int[][] bottom = new CountTask(image, middle, toRow).compute();
+      int[][] result = top.join();
+      for (int type = 0; type < result.length; type++) {
+        for (int value = 0; value < 256; value++) {
+          result[type][value] += bottom[type][value];
+        }
+      }
+      return result;
+    }
+  }
+}
@@ -22,6 +22,61 @@ public interface IImage {
    */
   Pixel getPixelAt(int row, int col);
 
+  /**
+   * Gets the pixel at the given row and col packed into one integer as 0xRRGGBB. Unlike
+   * getPixelAt, no Pixel object is created.
+   *
+   * @param row the height coordinate
+   * @param col the width coordinate
+   * @return the packed pixel at a certain coordinate
+   * @throws IllegalArgumentException when the given row or col is outside of the image
+   */
+  int getPackedAt(int row, int col);
+
+  /**
+   * Copies a whole row of packed pixels into the given buffer, starting at the given offset.
+   * The buffer must have room for getWidth() values after the offset.
+   *
+   * @param row    the row to be copied
+   * @param dest   the buffer the packed pixels are copied into
+   * @param offset the index in the buffer of the first pixel of the row
+   * @throws IllegalArgumentException when the row is outside of the image,
+   *                                  or when the buffer is null or too small
+   */
+  void getPackedRow(int row, int[] dest, int offset);
+
+  /**
+   * Copies the red, green and blue values of a whole row into the given buffer, starting at the
+   * given offset. The values are interleaved, so the red value of the pixel in column col is at
+   * offset + col * 3, followed by its green and blue values. The buffer must have room for
+   * getWidth() * 3 values after the offset.
+   *
+   * @param row    the row to be copied
+   * @param dest   the buffer the channel values are copied into
+   * @param offset the index in the buffer of the red value of the first pixel
+   * @throws IllegalArgumentException when the row is outside of the image,
+   *                                  or when the buffer is null or too small
+   */
+  void getChannelRow(int row, int[] dest, int offset);
+
+  /**
+   * Copies the red, green and blue values of a rectangular region into the given buffer,
+   * starting at the given offset. The region is copied row by row with the values of each pixel
+   * interleaved the same way as getChannelRow, so every row of the region takes up
+   * regionWidth * 3 values of the buffer.
+   *
+   * @param row          the top row of the region
+   * @param col          the left column of the region
+   * @param regionWidth  the number of columns in the region
+   * @param regionHeight the number of rows in the region
+   * @param dest         the buffer the channel values are copied into
+   * @param offset       the index in the buffer of the red value of the top left pixel
+   * @throws IllegalArgumentException when the region is empty or not inside of the image,
+   *                                  or when the buffer is null or too small
+   */
+  void getChannelRegion(int row, int col, int regionWidth, int regionHeight,
+                        int[] dest, int offset);
+
   /**
    * Gets the integer assigned to the variable height.
    *
@@ -50,4 +105,30 @@ public interface IImage {
    * @return a map of each pixel value and its corresponding frequency
    */
   Map<Integer, Integer> getHistogramValues(String type);
+
+  /**
+   * Gets the red, green, blue and intensity histograms of the image, which are all counted in
+   * one pass the first time they are asked for.
+   *
+   * @return the histograms of the image
+   */
+  Histogram getHistogram();
+
+  /**
+   * Gets a 64 bit hash of the width, height, max value and pixels of the image. Images with the
+   * same content always have the same hash, and the hash is only worked out once.
+   *
+   * @return the hash of the image's content
+   */
+  long getContentHash();
+
+  /**
+   * Checks whether another image has the same width, height, max value and pixels as this one.
+   * The hashes are compared first, so images that differ are almost always told apart without
+   * looking at their pixels.
+   *
+   * @param other the image to compare to
+   * @return true if the images have the same content
+   */
+  boolean hasSameContent(IImage other);
 }
@@ -1,8 +1,6 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 
 /**
@@ -10,13 +8,24 @@ import java.util.Map;
  * An ImageImpl represents one object
  * of our Image interface that is readable by our program.
  * Also implements methods that retrieve data from an image.
+ * The pixels are stored row by row in one int array, one packed 0xRRGGBB value per pixel,
+ * instead of one Pixel object per pixel.
  */
 public class ImageImpl implements IImage {
 
+  // the constants of the content hash
+  private static final long HASH_PRIME = 0x100000001B3L;
+  private static final long EVEN_SEED = 0xCBF29CE484222325L;
+  private static final long ODD_SEED = 0x84222325CBF29CE4L;
+
   private final int width;
   private final int height;
   private final int maxValue;
-  private final Pixel[][] wholeImage;
+  private final int[] packed;
+  // the histograms, counted the first time they are asked for since the pixels never change
+  private volatile Histogram histogram;
+  // the hash of the content, or 0 until it is worked out
+  private volatile long contentHash;
 
   /**
    * Constructs an ImageImpl and assigns each pixel its own respective coordinate in the 2d array.
@@ -25,39 +34,172 @@ public class ImageImpl implements IImage {
    * @param height the height of the image
    * @throws IllegalArgumentException if the width, height, or max value is invalid
    * @throws IllegalArgumentException if the array of pixels is null
+   * @throws IllegalArgumentException if the array of pixels does not match the width and height,
+   *                                  or contains a null pixel
    */
   public ImageImpl(int width, int height, int maxValue, Pixel[][] pixels)
           throws IllegalArgumentException {
 
+    this(width, height, maxValue, packPixels(width, height, maxValue, pixels));
+  }
+
+  // constructs an ImageImpl around an array of packed pixels that has already been checked
+  private ImageImpl(int width, int height, int maxValue, int[] packed) {
+    this.width = width;
+    this.height = height;
+    this.maxValue = maxValue;
+    this.packed = packed;
+  }
+
+  /**
+   * Creates an ImageImpl from pixels that are already packed. The array is laid out row by
+   * row, so the pixel at (row, col) is at index row * width + col. The array is not copied, so
+   * the caller must not change it after the image is made.
+   *
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param maxValue the max value of the image
+   * @param packed   the packed pixels of the image
+   * @return an image that uses the given pixels
+   * @throws IllegalArgumentException if the width, height, or max value is invalid
+   * @throws IllegalArgumentException if the array is null or its length is not width * height
+   */
+  public static ImageImpl fromPacked(int width, int height, int maxValue, int[] packed)
+          throws IllegalArgumentException {
+
+    checkDimensions(width, height, maxValue);
+
+    if (packed == null) {
+      throw new IllegalArgumentException("pixels is null");
+    }
+    if (packed.length != width * height) {
+      throw new IllegalArgumentException("pixels does not match the width and height");
+    }
+    return new ImageImpl(width, height, maxValue, packed);
+  }
+
+  /**
+   * Gets an ImageImpl with the same content as an image. An ImageImpl is given back as it is,
+   * since its pixels never change, and any other image is copied row by row.
+   *
+   * @param image the image
+   * @return an ImageImpl with the content of the image
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static ImageImpl copyOf(IImage image) throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    if (image instanceof ImageImpl) {
+      return (ImageImpl) image;
+    }
+    int width = image.getWidth();
+    int[] pixels = new int[width * image.getHeight()];
+    for (int row = 0; row < image.getHeight(); row++) {
+      image.getPackedRow(row, pixels, row * width);
+    }
+    return fromPacked(width, image.getHeight(), image.getMaxValue(), pixels);
+  }
+
+  // makes sure the width, height and max value are all at least one
+  private static void checkDimensions(int width, int height, int maxValue)
+          throws IllegalArgumentException {
     if (width < 1 || height < 1 || maxValue < 1) {
       throw new IllegalArgumentException("Width, height, or max value is less than one");
     }
+  }
+
+  // packs a 2d array of pixels into one row by row int array
+  private static int[] packPixels(int width, int height, int maxValue, Pixel[][] pixels)
+          throws IllegalArgumentException {
+
+    checkDimensions(width, height, maxValue);
 
     if (pixels == null) {
       throw new IllegalArgumentException("pixels is null");
     }
+    if (pixels.length < height) {
+      throw new IllegalArgumentException("pixels does not match the width and height");
+    }
 
-    this.width = width;
-    this.height = height;
-    this.maxValue = maxValue;
-    this.wholeImage = pixels;
-
-    // populate method
-    // we will only need to call populate once
-    // so we cn just add it to the constructor where it is called
-    for (int row = 0; row < getHeight(); row++) {
-      for (int column = 0; column < getWidth(); column++) {
-        this.wholeImage[row][column] = getPixelAt(row, column);
+    int[] result = new int[width * height];
+    for (int row = 0; row < height; row++) {
+      if (pixels[row] == null || pixels[row].length < width) {
+        throw new IllegalArgumentException("pixels does not match the width and height");
+      }
+      for (int column = 0; column < width; column++) {
+        result[row * width + column] = PackedPixels.pack(pixels[row][column]);
       }
     }
+    return result;
   }
 
   @Override
   public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
-    if (row > getHeight() || col > getWidth() || row < 0 || col < 0) {
+    return PackedPixels.toPixel(getPackedAt(row, col));
+  }
+
+  @Override
+  public int getPackedAt(int row, int col) throws IllegalArgumentException {
+    if (row >= getHeight() || col >= getWidth() || row < 0 || col < 0) {
       throw new IllegalArgumentException("input is greater than bounds of the board");
     }
-    return this.wholeImage[row][col];
+    return this.packed[row * this.width + col];
+  }
+
+  @Override
+  public void getPackedRow(int row, int[] dest, int offset) throws IllegalArgumentException {
+    if (row >= getHeight() || row < 0) {
+      throw new IllegalArgumentException("row is outside of the image");
+    }
+    if (dest == null || offset < 0 || offset + this.width > dest.length) {
+      throw new IllegalArgumentException("buffer is null or too small for a row");
+    }
+    System.arraycopy(this.packed, row * this.width, dest, offset, this.width);
+  }
+
+  /**
+   * Copies part of a row of packed pixels, without checking the bounds, for the views in this
+   * package that read a rectangle of this image.
+   *
+   * @param row    the row
+   * @param col    the first column
+   * @param length the number of pixels
+   * @param dest   the buffer the pixels are copied into
+   * @param offset the index in the buffer of the first pixel
+   */
+  void copyPackedRange(int row, int col, int length, int[] dest, int offset) {
+    System.arraycopy(this.packed, row * this.width + col, dest, offset, length);
+  }
+
+  @Override
+  public void getChannelRow(int row, int[] dest, int offset) throws IllegalArgumentException {
+    getChannelRegion(row, 0, this.width, 1, dest, offset);
+  }
+
+  @Override
+  public void getChannelRegion(int row, int col, int regionWidth, int regionHeight,
+                               int[] dest, int offset) throws IllegalArgumentException {
+    if (regionWidth < 1 || regionHeight < 1 || row < 0 || col < 0
+            || row + regionHeight > getHeight() || col + regionWidth > getWidth()) {
+      throw new IllegalArgumentException("region is outside of the image");
+    }
+    if (dest == null || offset < 0
+            || offset + (long) regionWidth * regionHeight * 3 > dest.length) {
+      throw new IllegalArgumentException("buffer is null or too small for the region");
+    }
+
+    int index = offset;
+    for (int r = row; r < row + regionHeight; r++) {
+      int start = r * this.width + col;
+      for (int c = start; c < start + regionWidth; c++) {
+        int pixel = this.packed[c];
+        dest[index] = PackedPixels.red(pixel);
+        dest[index + 1] = PackedPixels.green(pixel);
+        dest[index + 2] = PackedPixels.blue(pixel);
+        index += 3;
+      }
+    }
   }
 
   @Override
@@ -77,42 +219,111 @@ public class ImageImpl implements IImage {
 
   @Override
   public Map<Integer, Integer> getHistogramValues(String type) {
-    List<Integer> allValues = new ArrayList<>();
-    Map<Integer, Integer> histogram = new HashMap<>();
-
-    for (int row = 0; row < getHeight(); row++) {
-      for (int column = 0; column < getWidth(); column++) {
-        switch (type) {
-          case "red":
-            allValues.add(this.wholeImage[row][column].getR());
-            break;
-          case "green":
-            allValues.add(this.wholeImage[row][column].getG());
-            break;
-          case "blue":
-            allValues.add(this.wholeImage[row][column].getB());
-            break;
-          case "intensity":
-            allValues.add((this.wholeImage[row][column].getR()
-                    + this.wholeImage[row][column].getG()
-                    + this.wholeImage[row][column].getB()) / 3);
-            break;
-          default:
-            break;
+    return getHistogram().toMap(type);
+  }
+
+  @Override
+  public Histogram getHistogram() {
+    Histogram result = this.histogram;
+    if (result == null) {
+      // two threads may both count the histograms, but they count the same thing
+      result = Histogram.of(this);
+      this.histogram = result;
+    }
+    return result;
+  }
+
+  @Override
+  public long getContentHash() {
+    long result = this.contentHash;
+    if (result == 0) {
+      result = hashContent(this.width, this.height, this.maxValue, this.packed);
+      this.contentHash = result;
+    }
+    return result;
+  }
+
+  /**
+   * Hashes the content of an image. Two lanes of pixels are mixed at once so the multiplies of
+   * one do not wait on the other, and the result is never 0 so that 0 can mean not hashed yet.
+   *
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param maxValue the max value of the image
+   * @param packed   the packed pixels of the image
+   * @return the hash
+   */
+  private static long hashContent(int width, int height, int maxValue, int[] packed) {
+    long even = EVEN_SEED;
+    long odd = ODD_SEED;
+    int i = 0;
+    for (; i + 1 < packed.length; i += 2) {
+      even = (even ^ packed[i]) * HASH_PRIME;
+      odd = (odd ^ packed[i + 1]) * HASH_PRIME;
+    }
+    if (i < packed.length) {
+      even = (even ^ packed[i]) * HASH_PRIME;
+    }
+    return finishHash(even, odd, width, height, maxValue);
+  }
+
+  /**
+   * Hashes the content of any image the same way hashContent hashes an ImageImpl, reading it a
+   * row at a time, so an image that is not stored as one array does not have to be copied.
+   *
+   * @param image the image
+   * @return the hash, the same as an ImageImpl with the same content has
+   */
+  static long hashRows(IImage image) {
+    int width = image.getWidth();
+    int[] row = new int[width];
+    long even = EVEN_SEED;
+    long odd = ODD_SEED;
+    long index = 0;
+    for (int r = 0; r < image.getHeight(); r++) {
+      image.getPackedRow(r, row, 0);
+      for (int c = 0; c < width; c++, index++) {
+        // the pixels take turns between the lanes, counted over the whole image
+        if ((index & 1) == 0) {
+          even = (even ^ row[c]) * HASH_PRIME;
+        } else {
+          odd = (odd ^ row[c]) * HASH_PRIME;
         }
       }
     }
-    // every pixel value
-    for (int pixelValues = 0; pixelValues < 256; pixelValues++) {
-      int count = 0;
-      for (int value = 0; value < allValues.size(); value++) {
-        if (pixelValues == allValues.get(value)) {
-          count++;
-        }
+    return finishHash(even, odd, width, image.getHeight(), image.getMaxValue());
+  }
+
+  // mixes the two lanes and the size of the image into the final hash, which is never 0
+  private static long finishHash(long even, long odd, int width, int height, int maxValue) {
+    long hash = even * 31 + Long.rotateLeft(odd, 29);
+    hash = (hash ^ ((long) width << 32 | height)) * HASH_PRIME;
+    hash = (hash ^ maxValue) * HASH_PRIME;
+    hash ^= hash >>> 31;
+    return hash == 0 ? 1 : hash;
+  }
+
+  @Override
+  public boolean hasSameContent(IImage other) {
+    if (other == this) {
+      return true;
+    }
+    if (other == null || other.getWidth() != this.width || other.getHeight() != this.height
+            || other.getMaxValue() != this.maxValue
+            || other.getContentHash() != getContentHash()) {
+      return false;
+    }
+    if (other instanceof ImageImpl) {
+      return Arrays.equals(this.packed, ((ImageImpl) other).packed);
+    }
+    int[] row = new int[this.width];
+    for (int r = 0; r < this.height; r++) {
+      other.getPackedRow(r, row, 0);
+      if (!Arrays.equals(this.packed, r * this.width, (r + 1) * this.width,
+              row, 0, this.width)) {
+        return false;
       }
-      histogram.put(pixelValues, count);
     }
-    return histogram;
+    return true;
   }
 }
-
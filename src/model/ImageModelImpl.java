@@ -1,31 +1,430 @@
 package model;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
+import model.plan.PlannedImage;
+
 
 /**
  * This class represents the hashmap of saved edits done by the user with their corresponding name.
+ *
+ * <p>Names whose images have the same content share one copy of the pixels. Each distinct image
+ * is found by its content hash and counts the names that refer to it, and it is dropped once no
+ * name does. Saving an image whose content is already stored keeps the stored copy, so getValue
+ * may give back an equal image instead of the same object. A PlannedImage whose pixels have not
+ * been made is kept as it is, without making them, and is only shared and counted in full once
+ * something has made it. A TransformedImage is kept as it is, without hashing it, and counted as
+ * if it had pixels of its own, since it keeps the image it was made from in memory. It is
+ * spilled like any other image, which writes out only its own pixels and lets go of the image
+ * it was made from once no other name refers to that.
+ *
+ * <p>The images kept in memory are limited to a budget of bytes. When saving an image goes over
+ * the budget, the images that were used least recently are written to temporary files and
+ * dropped from memory, and getValue reads them back the next time they are asked for. A spilled
+ * image keeps its file, so it is only written once however often it is dropped again. The most
+ * recently used image always stays in memory, even if it is larger than the budget on its own.
+ *
+ * <p>The default budget is a quarter of the largest heap the JVM will use, and can be set in
+ * bytes with -Dmodel.storeBytes. The counts of hits, reloads, spills and shared images, and the
+ * bytes in memory and on disk, can be read to size the heap.
  */
 public class ImageModelImpl implements ImageModel {
 
-  private final Map<String, IImage> existingImages;
+  // the bytes counted for an image on top of its pixels
+  private static final long IMAGE_OVERHEAD = 64;
+
+  // the stored images by name, names with the same content share an entry
+  private final Map<String, Entry> existingImages;
+  // the entries with each content hash
+  private final Map<Long, List<Entry>> contents;
+  // the entries whose image is in memory, from least to most recently used
+  private final LinkedHashMap<Entry, Boolean> resident;
+  private final long budget;
+  private final File spillDirectory;
+
+  private long residentBytes;
+  private long spilledBytes;
+  private long hits;
+  private long reloads;
+  private long spills;
+  private long shared;
 
   /**
    * This is the constructor for ImageModel. An ImageModel object stores Images
-   * in a hashmap that can be called from at any time.
+   * in a hashmap that can be called from at any time. It keeps at most the default budget of
+   * bytes in memory and spills the rest to the temporary directory.
    */
   public ImageModelImpl() {
+    this(Long.getLong("model.storeBytes", Runtime.getRuntime().maxMemory() / 4), null);
+  }
+
+  /**
+   * This is the constructor for an ImageModel that keeps at most the given number of bytes of
+   * images in memory.
+   *
+   * @param budget         the bytes of images that can be kept in memory
+   * @param spillDirectory the directory spilled images are written to, or null for the
+   *                       temporary directory
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public ImageModelImpl(long budget, File spillDirectory) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("budget cannot be negative");
+    }
     this.existingImages = new HashMap<>();
+    this.contents = new HashMap<>();
+    this.resident = new LinkedHashMap<>(16, 0.75f, true);
+    this.budget = budget;
+    this.spillDirectory = spillDirectory;
   }
 
   @Override
-  public void saveName(String desiredName, IImage image)  {
-    this.existingImages.put(desiredName, image);
+  public synchronized void saveName(String desiredName, IImage image)  {
+    Entry entry = null;
+    if (image != null) {
+      // the content of a planned image is not known until its pixels are made
+      entry = isDeferred(image) ? null : find(image);
+      if (entry == null) {
+        entry = new Entry(image);
+        if (!isDeferred(image)) {
+          index(entry);
+        }
+        this.resident.put(entry, Boolean.TRUE);
+        residentBytes += entry.size;
+      } else {
+        shared++;
+      }
+      entry.references++;
+    }
+    // the old entry is let go after the new one is found, in case they are the same
+    Entry old = entry == null ? this.existingImages.remove(desiredName)
+            : this.existingImages.put(desiredName, entry);
+    if (old != null) {
+      release(old);
+    }
+    evict();
   }
 
   @Override
-  public IImage getValue(String imageName) {
-    return this.existingImages.get(imageName);
+  public synchronized IImage getValue(String imageName) {
+    Entry entry = this.existingImages.get(imageName);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.image != null) {
+      hits++;
+      this.resident.get(entry);
+      return entry.image;
+    }
+    IImage image = reload(entry);
+    evict();
+    return image;
+  }
+
+  /**
+   * Gets the bytes of the images that are in memory. An image shared by several names is only
+   * counted once.
+   *
+   * @return the bytes in memory
+   */
+  public synchronized long getResidentBytes() {
+    return residentBytes;
+  }
+
+  /**
+   * Gets the bytes of the files that spilled images were written to.
+   *
+   * @return the bytes on disk
+   */
+  public synchronized long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  /**
+   * Gets the number of times getValue found its image in memory.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of times an image was read back from disk.
+   *
+   * @return the number of reloads
+   */
+  public synchronized long getReloads() {
+    return reloads;
+  }
+
+  /**
+   * Gets the number of images that have been written to disk.
+   *
+   * @return the number of spills
+   */
+  public synchronized long getSpills() {
+    return spills;
+  }
+
+  /**
+   * Gets the number of saves whose image had the same content as one already stored, and so
+   * shared its pixels instead of storing them again.
+   *
+   * @return the number of shared saves
+   */
+  public synchronized long getShared() {
+    return shared;
+  }
+
+  /**
+   * Gets the number of distinct images stored, in memory or on disk.
+   *
+   * @return the number of distinct images
+   */
+  public synchronized int getDistinctImages() {
+    return new HashSet<>(this.existingImages.values()).size();
+  }
+
+  /**
+   * Describes the use of memory and disk on one line, for logging.
+   *
+   * @return the description
+   */
+  public synchronized String getStatistics() {
+    return String.format("names: %d, distinct images: %d, shared saves: %d, in memory: %d "
+                    + "(%d of %d bytes), on disk: %d bytes, hits: %d, reloads: %d, spills: %d",
+            existingImages.size(), getDistinctImages(), shared, resident.size(), residentBytes,
+            budget, spilledBytes, hits, reloads, spills);
+  }
+
+  /**
+   * Finds the stored entry with the same content as an image. The hash narrows it down to
+   * almost always one entry, and its pixels are compared to be sure, reading them back from disk
+   * if they were spilled.
+   *
+   * @param image the image to be found
+   * @return the entry, or null if there is none
+   */
+  private Entry find(IImage image) {
+    List<Entry> entries = this.contents.get(image.getContentHash());
+    if (entries == null) {
+      return null;
+    }
+    for (Entry entry : entries) {
+      IImage stored = entry.image;
+      if (stored == null) {
+        stored = reload(entry);
+      } else {
+        this.resident.get(entry);
+      }
+      if (stored.hasSameContent(image)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  // adds an entry to the entries with its content hash, so saving equal content finds it
+  private void index(Entry entry) {
+    this.contents.computeIfAbsent(entry.hash, hash -> new ArrayList<>(1)).add(entry);
+  }
+
+  // whether an image is a planned image whose pixels have not been made
+  private static boolean isPlanned(IImage image) {
+    return image instanceof PlannedImage && !((PlannedImage) image).isMaterialized();
+  }
+
+  // whether an image is kept without hashing it: a planned image or a view of another image
+  private static boolean isDeferred(IImage image) {
+    return isPlanned(image) || image instanceof TransformedImage;
+  }
+
+  /**
+   * Reads the image of a spilled entry back into memory. The caller evicts afterwards.
+   *
+   * @param entry the entry whose image is on disk
+   * @return the image
+   */
+  private IImage reload(Entry entry) {
+    entry.image = read(entry.file);
+    reloads++;
+    this.resident.put(entry, Boolean.TRUE);
+    residentBytes += entry.size;
+    return entry.image;
+  }
+
+  /**
+   * Lets go of one name's reference to an entry, dropping the entry and deleting its file when
+   * no name refers to it anymore.
+   *
+   * @param entry the entry
+   */
+  private void release(Entry entry) {
+    entry.references--;
+    if (entry.references > 0) {
+      return;
+    }
+    List<Entry> entries = this.contents.get(entry.hash);
+    if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+      this.contents.remove(entry.hash);
+    }
+    if (entry.image != null) {
+      this.resident.remove(entry);
+      residentBytes -= entry.size;
+      entry.image = null;
+    }
+    if (entry.file != null) {
+      spilledBytes -= entry.file.length();
+      entry.file.delete();
+      entry.file = null;
+    }
+  }
+
+  /**
+   * Drops the least recently used images from memory until the rest fit in the budget, writing
+   * each one to disk first unless it already has a file. An image that cannot be written is kept
+   * in memory.
+   */
+  private void evict() {
+    for (Entry entry : this.resident.keySet()) {
+      if (entry.planned && !isPlanned(entry.image)) {
+        // a planned image has been made since it was saved, so it is counted and found in full
+        entry.planned = false;
+        residentBytes -= entry.size;
+        entry.size = sizeOf(entry.image);
+        residentBytes += entry.size;
+        entry.hash = entry.image.getContentHash();
+        index(entry);
+      }
+    }
+    Iterator<Entry> entries = this.resident.keySet().iterator();
+    // the most recently used image is the last one and is never dropped
+    for (int left = this.resident.size(); residentBytes > budget && left > 1; left--) {
+      Entry entry = entries.next();
+      if (entry.planned) {
+        // it only holds its input, making or copying it to write it out would cost more
+        continue;
+      }
+      if (entry.file == null) {
+        try {
+          entry.file = write(entry.image);
+          spilledBytes += entry.file.length();
+          spills++;
+        } catch (IOException e) {
+          continue;
+        }
+      }
+      residentBytes -= entry.size;
+      entry.image = null;
+      entries.remove();
+    }
+  }
+
+  /**
+   * Writes an image to a new temporary file as its width, height and max value followed by three
+   * bytes for each pixel.
+   *
+   * @param image the image to be written
+   * @return the file
+   * @throws IOException if the file cannot be written
+   */
+  private File write(IImage image) throws IOException {
+    File file = File.createTempFile("image", ".spill", spillDirectory);
+    file.deleteOnExit();
+    int width = image.getWidth();
+    int[] pixels = new int[width];
+    byte[] bytes = new byte[width * 3];
+    try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(width);
+      out.writeInt(image.getHeight());
+      out.writeInt(image.getMaxValue());
+      for (int row = 0; row < image.getHeight(); row++) {
+        image.getPackedRow(row, pixels, 0);
+        for (int col = 0, i = 0; col < width; col++, i += 3) {
+          bytes[i] = (byte) (pixels[col] >>> 16);
+          bytes[i + 1] = (byte) (pixels[col] >>> 8);
+          bytes[i + 2] = (byte) pixels[col];
+        }
+        out.write(bytes);
+      }
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+    return file;
+  }
+
+  /**
+   * Reads an image back from a file made by write.
+   *
+   * @param file the file to be read
+   * @return the image
+   * @throws IllegalStateException if the file cannot be read
+   */
+  private static IImage read(File file) throws IllegalStateException {
+    try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)))) {
+      int width = in.readInt();
+      int height = in.readInt();
+      int maxValue = in.readInt();
+      int[] pixels = new int[width * height];
+      byte[] bytes = new byte[width * 3];
+      for (int row = 0; row < height; row++) {
+        in.readFully(bytes);
+        int offset = row * width;
+        for (int col = 0, i = 0; col < width; col++, i += 3) {
+          pixels[offset + col] = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8
+                  | (bytes[i + 2] & 0xFF);
+        }
+      }
+      return ImageImpl.fromPacked(width, height, maxValue, pixels);
+    } catch (IOException e) {
+      throw new IllegalStateException("a spilled image could not be read back");
+    }
+  }
+
+  // the bytes counted for an image, four for each pixel
+  private static long sizeOf(IImage image) {
+    return 4L * image.getWidth() * image.getHeight() + IMAGE_OVERHEAD;
+  }
+
+  /**
+   * This class is one distinct image stored in the model, with the names that refer to it
+   * counted. Its image is null while it is only on disk, and its file is null until it is
+   * spilled. A planned image whose pixels have not been made is only counted for its overhead,
+   * is never spilled, and has no hash until it is made. A view has no hash either, but is
+   * counted in full and spilled like a dense image.
+   */
+  private static class Entry {
+
+    private long hash;
+    private long size;
+    private boolean planned;
+    private IImage image;
+    private File file;
+    private int references;
+
+    Entry(IImage image) {
+      this.planned = isPlanned(image);
+      this.hash = isDeferred(image) ? 0 : image.getContentHash();
+      this.size = this.planned ? IMAGE_OVERHEAD : sizeOf(image);
+      this.image = image;
+    }
   }
 }
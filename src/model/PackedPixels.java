@@ -0,0 +1,112 @@
+package model;
+
+/**
+ * This class contains utility methods to pack the red, green and blue values of a pixel into a
+ * single integer and to read them back out. A packed pixel is laid out as 0xRRGGBB, which is the
+ * format an ImageImpl uses to store its pixels.
+ */
+public final class PackedPixels {
+
+  private PackedPixels() {
+    // utility class, no instances
+  }
+
+  /**
+   * Packs the given red, green and blue values into one integer. Each value is clamped to the
+   * range 0 to 255 the same way the PixelImpl constructor does.
+   *
+   * @param r the red value of a pixel
+   * @param g the green value of a pixel
+   * @param b the blue value of a pixel
+   * @return the packed pixel
+   */
+  public static int pack(int r, int g, int b) {
+    return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+  }
+
+  /**
+   * Packs the values of the given pixel into one integer.
+   *
+   * @param pixel the pixel to be packed
+   * @return the packed pixel
+   * @throws IllegalArgumentException if the pixel is null
+   */
+  public static int pack(Pixel pixel) throws IllegalArgumentException {
+    if (pixel == null) {
+      throw new IllegalArgumentException("pixel is null");
+    }
+    return pack(pixel.getR(), pixel.getG(), pixel.getB());
+  }
+
+  /**
+   * Packs interleaved red, green and blue values into packed pixels. This is the reverse of
+   * IImage.getChannelRow, and clamps each value the same way pack does.
+   *
+   * @param channels      the interleaved channel values
+   * @param channelOffset the index of the red value of the first pixel
+   * @param dest          the buffer the packed pixels are written into
+   * @param destOffset    the index in dest of the first packed pixel
+   * @param count         the number of pixels to pack
+   */
+  public static void packRow(int[] channels, int channelOffset, int[] dest, int destOffset,
+                             int count) {
+    int index = channelOffset;
+    for (int i = destOffset; i < destOffset + count; i++) {
+      dest[i] = pack(channels[index], channels[index + 1], channels[index + 2]);
+      index += 3;
+    }
+  }
+
+  /**
+   * Gets the red value of a packed pixel.
+   *
+   * @param packed the packed pixel
+   * @return the red value of the pixel
+   */
+  public static int red(int packed) {
+    return (packed >> 16) & 0xFF;
+  }
+
+  /**
+   * Gets the green value of a packed pixel.
+   *
+   * @param packed the packed pixel
+   * @return the green value of the pixel
+   */
+  public static int green(int packed) {
+    return (packed >> 8) & 0xFF;
+  }
+
+  /**
+   * Gets the blue value of a packed pixel.
+   *
+   * @param packed the packed pixel
+   * @return the blue value of the pixel
+   */
+  public static int blue(int packed) {
+    return packed & 0xFF;
+  }
+
+  /**
+   * Creates a Pixel object with the values of a packed pixel.
+   *
+   * @param packed the packed pixel
+   * @return a new Pixel with the same values
+   */
+  public static Pixel toPixel(int packed) {
+    return new PixelImpl(red(packed), green(packed), blue(packed));
+  }
+
+  /**
+   * Clamps a pixel value to the range 0 to 255.
+   *
+   * @param value the value to be clamped
+   * @return the clamped value
+   */
+  public static int clamp(int value) {
+    if (value < 0) {
+      return 0;
+    }
+    return Math.min(value, 255);
+  }
+}
@@ -0,0 +1,258 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class is a view of another image: a rectangle of it, flipped horizontally, vertically, or
+ * both ways, which turns it by 180 degrees. A view does not copy any pixels. Each pixel is read
+ * from the image it was made from by working out where it came from, so making a view takes the
+ * same time and memory whatever the size of the image, and views of the same image share its
+ * pixels. A view of a view reads straight from the first image, so views never stack up.
+ *
+ * <p>Since the pixels of an image never change, a view always reads the same pixels. A view
+ * keeps the image it was made from in memory for as long as the view is, so materialize makes a
+ * dense copy of just the pixels of the view when the rest are no longer wanted.
+ */
+public class TransformedImage implements IImage {
+
+  // the image the pixels are read from, which is never a view itself
+  private final IImage source;
+  // the rectangle of the source that is seen
+  private final int top;
+  private final int left;
+  private final int width;
+  private final int height;
+  // whether the rows are seen bottom to top and the columns right to left
+  private final boolean flipRows;
+  private final boolean flipColumns;
+  // the histograms and content hash, worked out the first time they are asked for
+  private volatile Histogram histogram;
+  private volatile long contentHash;
+
+  // constructs a view of a rectangle of an image that has already been checked
+  private TransformedImage(IImage source, int top, int left, int width, int height,
+                           boolean flipRows, boolean flipColumns) {
+    this.source = source;
+    this.top = top;
+    this.left = left;
+    this.width = width;
+    this.height = height;
+    this.flipRows = flipRows;
+    this.flipColumns = flipColumns;
+  }
+
+  /**
+   * Makes a view of an image flipped horizontally, vertically, or both ways, which turns it by
+   * 180 degrees.
+   *
+   * @param image      the image
+   * @param horizontal true to flip the columns from left to right
+   * @param vertical   true to flip the rows from top to bottom
+   * @return the flipped view, or the image itself if it is not flipped either way
+   * @throws IllegalArgumentException if the image is null
+   */
+  public static IImage flip(IImage image, boolean horizontal, boolean vertical)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    if (image instanceof TransformedImage) {
+      TransformedImage view = (TransformedImage) image;
+      return of(view.source, view.top, view.left, view.width, view.height,
+              view.flipRows ^ vertical, view.flipColumns ^ horizontal);
+    }
+    return of(image, 0, 0, image.getWidth(), image.getHeight(), vertical, horizontal);
+  }
+
+  /**
+   * Makes a view of a rectangle of an image.
+   *
+   * @param image  the image
+   * @param row    the top row of the rectangle
+   * @param col    the left column of the rectangle
+   * @param width  the width of the rectangle
+   * @param height the height of the rectangle
+   * @return the cropped view, or the image itself if the rectangle is all of it
+   * @throws IllegalArgumentException if the image is null
+   * @throws IllegalArgumentException if the rectangle is empty or not inside the image
+   */
+  public static IImage crop(IImage image, int row, int col, int width, int height)
+          throws IllegalArgumentException {
+    if (image == null) {
+      throw new IllegalArgumentException("image is null");
+    }
+    if (width < 1 || height < 1 || row < 0 || col < 0
+            || (long) row + height > image.getHeight() || (long) col + width > image.getWidth()) {
+      throw new IllegalArgumentException("rectangle is outside of the image");
+    }
+    if (!(image instanceof TransformedImage)) {
+      return of(image, row, col, width, height, false, false);
+    }
+    // a flipped view counts its rows and columns from the other side of its rectangle
+    TransformedImage view = (TransformedImage) image;
+    int sourceRow = view.flipRows ? view.top + view.height - row - height : view.top + row;
+    int sourceCol = view.flipColumns ? view.left + view.width - col - width : view.left + col;
+    return of(view.source, sourceRow, sourceCol, width, height, view.flipRows,
+            view.flipColumns);
+  }
+
+  // makes a view, unless it would show all of its source the way it is
+  private static IImage of(IImage source, int top, int left, int width, int height,
+                           boolean flipRows, boolean flipColumns) {
+    if (!flipRows && !flipColumns && top == 0 && left == 0
+            && width == source.getWidth() && height == source.getHeight()) {
+      return source;
+    }
+    return new TransformedImage(source, top, left, width, height, flipRows, flipColumns);
+  }
+
+  /**
+   * Copies the pixels of this view into an image of its own, which does not keep the image the
+   * view was made from in memory.
+   *
+   * @return a dense copy of this view
+   */
+  public ImageImpl materialize() {
+    return ImageImpl.copyOf(this);
+  }
+
+  // the row of the source that a row of this view is read from
+  private int sourceRow(int row) {
+    return flipRows ? top + height - 1 - row : top + row;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) throws IllegalArgumentException {
+    return PackedPixels.toPixel(getPackedAt(row, col));
+  }
+
+  @Override
+  public int getPackedAt(int row, int col) throws IllegalArgumentException {
+    if (row >= height || col >= width || row < 0 || col < 0) {
+      throw new IllegalArgumentException("input is greater than bounds of the board");
+    }
+    int sourceCol = flipColumns ? left + width - 1 - col : left + col;
+    return source.getPackedAt(sourceRow(row), sourceCol);
+  }
+
+  @Override
+  public void getPackedRow(int row, int[] dest, int offset) throws IllegalArgumentException {
+    if (row >= height || row < 0) {
+      throw new IllegalArgumentException("row is outside of the image");
+    }
+    if (dest == null || offset < 0 || offset + this.width > dest.length) {
+      throw new IllegalArgumentException("buffer is null or too small for a row");
+    }
+    if (source instanceof ImageImpl) {
+      ((ImageImpl) source).copyPackedRange(sourceRow(row), left, width, dest, offset);
+    } else if (width == source.getWidth()) {
+      source.getPackedRow(sourceRow(row), dest, offset);
+    } else {
+      int[] whole = new int[source.getWidth()];
+      source.getPackedRow(sourceRow(row), whole, 0);
+      System.arraycopy(whole, left, dest, offset, width);
+    }
+    if (flipColumns) {
+      for (int l = offset, r = offset + width - 1; l < r; l++, r--) {
+        int temp = dest[l];
+        dest[l] = dest[r];
+        dest[r] = temp;
+      }
+    }
+  }
+
+  @Override
+  public void getChannelRow(int row, int[] dest, int offset) throws IllegalArgumentException {
+    getChannelRegion(row, 0, this.width, 1, dest, offset);
+  }
+
+  @Override
+  public void getChannelRegion(int row, int col, int regionWidth, int regionHeight,
+                               int[] dest, int offset) throws IllegalArgumentException {
+    if (regionWidth < 1 || regionHeight < 1 || row < 0 || col < 0
+            || row + regionHeight > height || col + regionWidth > width) {
+      throw new IllegalArgumentException("region is outside of the image");
+    }
+    if (dest == null || offset < 0
+            || offset + (long) regionWidth * regionHeight * 3 > dest.length) {
+      throw new IllegalArgumentException("buffer is null or too small for the region");
+    }
+
+    int[] packedRow = new int[width];
+    int index = offset;
+    for (int r = row; r < row + regionHeight; r++) {
+      getPackedRow(r, packedRow, 0);
+      for (int c = col; c < col + regionWidth; c++) {
+        int pixel = packedRow[c];
+        dest[index] = PackedPixels.red(pixel);
+        dest[index + 1] = PackedPixels.green(pixel);
+        dest[index + 2] = PackedPixels.blue(pixel);
+        index += 3;
+      }
+    }
+  }
+
+  @Override
+  public int getHeight() {
+    return this.height;
+  }
+
+  @Override
+  public int getWidth() {
+    return this.width;
+  }
+
+  @Override
+  public int getMaxValue() {
+    return source.getMaxValue();
+  }
+
+  @Override
+  public Map<Integer, Integer> getHistogramValues(String type) {
+    return getHistogram().toMap(type);
+  }
+
+  @Override
+  public Histogram getHistogram() {
+    Histogram result = this.histogram;
+    if (result == null) {
+      result = Histogram.of(this);
+      this.histogram = result;
+    }
+    return result;
+  }
+
+  @Override
+  public long getContentHash() {
+    long result = this.contentHash;
+    if (result == 0) {
+      // hashed a row at a time, so the hash is the same as a copy's without making one
+      result = ImageImpl.hashRows(this);
+      this.contentHash = result;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean hasSameContent(IImage other) {
+    if (other == this) {
+      return true;
+    }
+    if (other == null || other.getWidth() != this.width || other.getHeight() != this.height
+            || other.getMaxValue() != getMaxValue()
+            || other.getContentHash() != getContentHash()) {
+      return false;
+    }
+    int[] mine = new int[this.width];
+    int[] theirs = new int[this.width];
+    for (int r = 0; r < this.height; r++) {
+      getPackedRow(r, mine, 0);
+      other.getPackedRow(r, theirs, 0);
+      if (!Arrays.equals(mine, theirs)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,236 @@
+package model.commands;
+
+import java.util.Arrays;
+
+import model.IImage;
+import model.ImageImpl;
+import model.PackedPixels;
+
+/**
+ * This class blurs an image by averaging each pixel with the pixels in a square around it. Near
+ * the edges of the image only the pixels inside of the image are averaged, so the edges do not
+ * darken. The average is computed with running sums, adding the pixel that enters the square and
+ * taking away the one that leaves it, so the cost per pixel is the same for every radius.
+ *
+ * <p>Repeating a box blur a few times gives a close approximation of a Gaussian blur, which is
+ * what gaussian makes. Each pass blurs along the rows and then down the columns, with the result
+ * rounded to whole values after every pass.
+ */
+public class BoxBlur implements RowBandCommand, CacheableCommand {
+
+  private final int[] radii;
+
+  /**
+   * Constructs a BoxBlur that applies a box of the given radius the given number of times.
+   *
+   * @param radius the number of pixels on each side of the center of the box
+   * @param passes the number of times the box is applied
+   * @throws IllegalArgumentException if the radius is negative or there is not at least one pass
+   */
+  public BoxBlur(int radius, int passes) throws IllegalArgumentException {
+    if (passes < 1) {
+      throw new IllegalArgumentException("there must be at least one pass");
+    }
+    this.radii = new int[passes];
+    Arrays.fill(this.radii, radius);
+    checkRadii(this.radii);
+  }
+
+  /**
+   * Constructs a BoxBlur that applies one box for each of the given radii, in order.
+   *
+   * @param radii the radius of each pass
+   * @throws IllegalArgumentException if the radii are null or empty, or any radius is negative
+   */
+  public BoxBlur(int[] radii) throws IllegalArgumentException {
+    if (radii == null || radii.length == 0) {
+      throw new IllegalArgumentException("there must be at least one pass");
+    }
+    this.radii = radii.clone();
+    checkRadii(this.radii);
+  }
+
+  // makes sure no radius is negative
+  private static void checkRadii(int[] radii) throws IllegalArgumentException {
+    for (int radius : radii) {
+      if (radius < 0) {
+        throw new IllegalArgumentException("radius cannot be negative");
+      }
+    }
+  }
+
+  /**
+   * Makes a BoxBlur of three passes that approximates a Gaussian blur reaching the given radius.
+   * The standard deviation of the Gaussian is a third of the radius, so nearly all of its
+   * weight falls within the radius. The sizes of the three boxes are picked so that together
+   * they have the same variance as the Gaussian.
+   *
+   * @param radius the radius of the Gaussian blur
+   * @return the box blur
+   * @throws IllegalArgumentException if the radius is negative
+   */
+  public static BoxBlur gaussian(int radius) throws IllegalArgumentException {
+    if (radius < 0) {
+      throw new IllegalArgumentException("radius cannot be negative");
+    }
+    int passes = 3;
+    double sigma = radius / 3.0;
+
+    // the widest odd box that is not too wide, and the next odd box up
+    int lower = (int) Math.floor(Math.sqrt(12 * sigma * sigma / passes + 1));
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    // how many passes use the smaller box so the variances add up
+    int smaller = (int) Math.round((12 * sigma * sigma - passes * lower * lower
+            - 4 * passes * lower - 3 * passes) / (-4.0 * lower - 4));
+    smaller = Math.max(0, Math.min(passes, smaller));
+
+    int[] radii = new int[passes];
+    for (int pass = 0; pass < passes; pass++) {
+      radii[pass] = pass < smaller ? (lower - 1) / 2 : (upper - 1) / 2;
+    }
+    return new BoxBlur(radii);
+  }
+
+  /**
+   * Gets the radius of each pass.
+   *
+   * @return a copy of the radii
+   */
+  public int[] getRadii() {
+    return this.radii.clone();
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    int halo = 0;
+    for (int radius : this.radii) {
+      halo += radius;
+    }
+    return halo;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    // each vertical pass spreads wrong values in from a cut edge by its radius, so reading all
+    // of the halo rows keeps the rows of the band exact
+    int firstRow = Math.max(0, fromRow - getHaloRows());
+    int lastRow = Math.min(height, toRow + getHaloRows());
+    int rows = lastRow - firstRow;
+
+    int[][] planes = new int[3][width * rows];
+    int[] channels = new int[width * 3];
+    for (int row = firstRow; row < lastRow; row++) {
+      image.getChannelRow(row, channels, 0);
+      int start = (row - firstRow) * width;
+      for (int col = 0; col < width; col++) {
+        planes[0][start + col] = channels[col * 3];
+        planes[1][start + col] = channels[col * 3 + 1];
+        planes[2][start + col] = channels[col * 3 + 2];
+      }
+    }
+
+    int[] temp = new int[width * rows];
+    for (int channel = 0; channel < 3; channel++) {
+      int[] plane = planes[channel];
+      for (int radius : this.radii) {
+        horizontalPass(plane, temp, width, rows, radius);
+        verticalPass(temp, plane, width, rows, radius);
+      }
+    }
+
+    int offset = (fromRow - firstRow) * width;
+    for (int i = 0; i < (toRow - fromRow) * width; i++) {
+      newPixels[fromRow * width + i] = PackedPixels.pack(planes[0][offset + i],
+              planes[1][offset + i], planes[2][offset + i]);
+    }
+  }
+
+  /**
+   * Averages every value of a plane with the values beside it in the same row.
+   *
+   * @param source the plane to be blurred
+   * @param dest   the plane the result is written to
+   * @param width  the number of values in a row
+   * @param rows   the number of rows
+   * @param radius the number of values on each side that are averaged
+   */
+  private static void horizontalPass(int[] source, int[] dest, int width, int rows,
+                                     int radius) {
+    for (int row = 0; row < rows; row++) {
+      int start = row * width;
+      int sum = 0;
+      for (int col = 0; col < Math.min(radius, width - 1) + 1; col++) {
+        sum += source[start + col];
+      }
+      for (int col = 0; col < width; col++) {
+        int count = Math.min(width - 1, col + radius) - Math.max(0, col - radius) + 1;
+        dest[start + col] = (sum + count / 2) / count;
+        // slide the window one column to the right
+        if (col + radius + 1 < width) {
+          sum += source[start + col + radius + 1];
+        }
+        if (col - radius >= 0) {
+          sum -= source[start + col - radius];
+        }
+      }
+    }
+  }
+
+  /**
+   * Averages every value of a plane with the values above and below it in the same column. The
+   * columns are all slid down together, one row at a time, so the plane is read in order.
+   *
+   * @param source the plane to be blurred
+   * @param dest   the plane the result is written to
+   * @param width  the number of values in a row
+   * @param rows   the number of rows
+   * @param radius the number of values on each side that are averaged
+   */
+  private static void verticalPass(int[] source, int[] dest, int width, int rows, int radius) {
+    int[] sums = new int[width];
+    for (int row = 0; row < Math.min(radius, rows - 1) + 1; row++) {
+      for (int col = 0; col < width; col++) {
+        sums[col] += source[row * width + col];
+      }
+    }
+    for (int row = 0; row < rows; row++) {
+      int count = Math.min(rows - 1, row + radius) - Math.max(0, row - radius) + 1;
+      int start = row * width;
+      for (int col = 0; col < width; col++) {
+        dest[start + col] = (sums[col] + count / 2) / count;
+      }
+      // slide the window one row down
+      if (row + radius + 1 < rows) {
+        int entering = (row + radius + 1) * width;
+        for (int col = 0; col < width; col++) {
+          sums[col] += source[entering + col];
+        }
+      }
+      if (row - radius >= 0) {
+        int leaving = (row - radius) * width;
+        for (int col = 0; col < width; col++) {
+          sums[col] -= source[leaving + col];
+        }
+      }
+    }
+  }
+
+  @Override
+  public String getDescriptor() {
+    return "box " + Arrays.toString(radii);
+  }
+}
@@ -2,16 +2,16 @@ package model.commands;
 
 import model.IImage;
 import model.ImageImpl;
-import model.Pixel;
-import model.PixelImpl;
 
 /**
  * This is the class Brightness that brightens or darkens an image that is retrieved from a hashmap.
  * The class brightens or darkens an image based on the user's specification.
+ * Whole rows are brightened with the saturating add of PackedKernels when it is enabled.
  */
-public class Brightness implements ImageProcessingCommands {
+public class Brightness implements LookupTableOperation, CacheableCommand {
 
   private final int increment;
+  private final ChannelLookupTable lookupTable;
 
   /**
    * This is the constructor for Brightness. A Brightness object
@@ -20,32 +20,60 @@ public class Brightness implements ImageProcessingCommands {
    */
   public Brightness(int increment) {
     this.increment = increment;
+    // every value from 0 to 255 brightens to a fixed value, so work them all out once
+    int[] table = ChannelLookupTable.offsetTable(increment);
+    this.lookupTable = new ChannelLookupTable(new int[] {0, 1, 2},
+            new int[][] {table, table, table});
+  }
+
+  /**
+   * Gets the increment of this brightness.
+   *
+   * @return the increment the image is brightened or darkened by
+   */
+  public int getIncrement() {
+    return increment;
   }
 
   @Override
   public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
 
-    Pixel[][] newPixels = new Pixel[image.getHeight()][image.getWidth()];
-
-    for (int row = 0; row < image.getHeight(); row++) {
-      for (int col = 0; col < image.getWidth(); col++) {
-        //make copy pixel
-        Pixel p = image.getPixelAt(row, col);
-        Pixel pCopy = p.copyPixel();
-        int rValue = pCopy.getR();
-        int gValue = pCopy.getG();
-        int bValue = pCopy.getB();
-
-        rValue = p.getR() + increment;
+  @Override
+  public ChannelLookupTable toLookupTable() {
+    return lookupTable;
+  }
 
-        gValue = p.getG() + increment;
+  @Override
+  public int applyTo(int packed) {
+    return lookupTable.applyTo(packed);
+  }
 
-        bValue = p.getB() + increment;
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
 
-        newPixels[row][col] = new PixelImpl(rValue, gValue, bValue);
-      }
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    if (!PackedKernels.isEnabled()) {
+      lookupTable.processRows(image, newPixels, fromRow, toRow);
+      return;
+    }
+    int width = image.getWidth();
+    for (int row = fromRow; row < toRow; row++) {
+      int start = row * width;
+      image.getPackedRow(row, newPixels, start);
+      PackedKernels.addSaturating(newPixels, start, start + width, increment);
     }
+  }
 
-    return new ImageImpl(image.getWidth(), image.getHeight(), image.getMaxValue(), newPixels);
+  @Override
+  public String getDescriptor() {
+    return "brightness " + increment;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package model.commands;
+
+/**
+ * This is the interface for commands whose results can be kept by a CommandCache. Two commands
+ * with the same descriptor always give the same image for the same input, so the descriptor has
+ * to hold the kind of command and every parameter that changes its result.
+ */
+public interface CacheableCommand extends ImageProcessingCommands {
+
+  /**
+   * Gets the descriptor of this command, such as "brightness 10" or "grayscale luma".
+   *
+   * @return the descriptor
+   */
+  String getDescriptor();
+}
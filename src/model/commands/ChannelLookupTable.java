@@ -0,0 +1,139 @@
+package model.commands;
+
+import model.IImage;
+import model.ImageImpl;
+import model.PackedPixels;
+
+/**
+ * This class is a point operation that is stored as one 256 entry table per channel. Each channel
+ * of the edited pixel is read from its table, indexed by one channel of the original pixel, so
+ * it can copy a channel into others as well as remap its values. Two tables can be composed into
+ * one table that does the work of both, which makes a chain of adjustments cost the same as a
+ * single one.
+ */
+public class ChannelLookupTable implements PointOperation {
+
+  private final int[] sources;
+  private final int[][] tables;
+
+  /**
+   * Constructs a ChannelLookupTable. Channels are numbered 0 for red, 1 for green and 2 for blue.
+   * The tables are copied, so later changes to them do not change this lookup table.
+   *
+   * @param sources the channel of the original pixel each edited channel is read from
+   * @param tables  the 256 entry table of each edited channel, with values from 0 to 255
+   * @throws IllegalArgumentException if there are not three sources and three tables of 256
+   *                                  entries, or any source or entry is out of range
+   */
+  public ChannelLookupTable(int[] sources, int[][] tables) throws IllegalArgumentException {
+    if (sources == null || tables == null || sources.length != 3 || tables.length != 3) {
+      throw new IllegalArgumentException("there must be three sources and three tables");
+    }
+    this.sources = new int[3];
+    this.tables = new int[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      if (sources[channel] < 0 || sources[channel] > 2) {
+        throw new IllegalArgumentException("source channel must be 0, 1 or 2");
+      }
+      if (tables[channel] == null || tables[channel].length != 256) {
+        throw new IllegalArgumentException("every table must have 256 entries");
+      }
+      for (int value : tables[channel]) {
+        if (value < 0 || value > 255) {
+          throw new IllegalArgumentException("table entries must be from 0 to 255");
+        }
+      }
+      this.sources[channel] = sources[channel];
+      this.tables[channel] = tables[channel].clone();
+    }
+  }
+
+  /**
+   * Makes a lookup table that changes nothing.
+   *
+   * @return the identity lookup table
+   */
+  public static ChannelLookupTable identity() {
+    int[] table = new int[256];
+    for (int value = 0; value < 256; value++) {
+      table[value] = value;
+    }
+    return new ChannelLookupTable(new int[] {0, 1, 2}, new int[][] {table, table, table});
+  }
+
+  /**
+   * Makes one lookup table that gives the same result as applying this table and then the given
+   * table.
+   *
+   * @param after the table applied after this one
+   * @return the composed lookup table
+   * @throws IllegalArgumentException if the given table is null
+   */
+  public ChannelLookupTable andThen(ChannelLookupTable after) throws IllegalArgumentException {
+    if (after == null) {
+      throw new IllegalArgumentException("lookup table is null");
+    }
+    int[] newSources = new int[3];
+    int[][] newTables = new int[3][256];
+    for (int channel = 0; channel < 3; channel++) {
+      // the channel of this table's result that the next table reads
+      int middle = after.sources[channel];
+      newSources[channel] = this.sources[middle];
+      for (int value = 0; value < 256; value++) {
+        newTables[channel][value] = after.tables[channel][this.tables[middle][value]];
+      }
+    }
+    return new ChannelLookupTable(newSources, newTables);
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    for (int row = fromRow; row < toRow; row++) {
+      int start = row * width;
+      image.getPackedRow(row, newPixels, start);
+      for (int i = start; i < start + width; i++) {
+        newPixels[i] = applyTo(newPixels[i]);
+      }
+    }
+  }
+
+  @Override
+  public int applyTo(int packed) {
+    return (tables[0][channel(packed, sources[0])] << 16)
+            | (tables[1][channel(packed, sources[1])] << 8)
+            | tables[2][channel(packed, sources[2])];
+  }
+
+  // gets one channel of a packed pixel, 0 for red, 1 for green and 2 for blue
+  private static int channel(int packed, int channel) {
+    return (packed >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  /**
+   * Makes a table that adds the given increment to a value and clamps it to 0 to 255.
+   *
+   * @param increment the increment to be added
+   * @return the 256 entry table
+   */
+  static int[] offsetTable(int increment) {
+    int[] table = new int[256];
+    for (int value = 0; value < 256; value++) {
+      table[value] = PackedPixels.clamp(value + increment);
+    }
+    return table;
+  }
+}
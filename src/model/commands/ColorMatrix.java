@@ -0,0 +1,162 @@
+package model.commands;
+
+import java.util.Arrays;
+
+import model.IImage;
+import model.ImageImpl;
+
+/**
+ * This class applies a color matrix to every pixel of an image. Each new channel is a weighted sum
+ * of the red, green and blue values of the original pixel, plus an optional offset, clamped to
+ * 0 to 255. Each term of the sum is truncated to an integer on its own, which is how the sepia
+ * and luma filters have always been computed.
+ *
+ * <p>The matrix is resolved once, when the ColorMatrix is made: every product of a coefficient
+ * with one of the 256 possible channel values is worked out ahead of time, so processing a pixel
+ * only adds up integers read from small tables and makes no objects. When every product can
+ * also be written as a fixed point multiply and shift that truncates the same way, whole rows
+ * are processed by PackedKernels.matrix instead, which needs no tables.
+ */
+public class ColorMatrix implements PointOperation, CacheableCommand {
+
+  /**
+   * The matrix of the sepia filter.
+   */
+  public static final ColorMatrix SEPIA = new ColorMatrix(new double[][]{
+          {0.393, 0.769, 0.189},
+          {0.349, 0.686, 0.168},
+          {0.272, 0.534, 0.131}});
+
+  /**
+   * The matrix of the luma filter.
+   */
+  public static final ColorMatrix LUMA = new ColorMatrix(new double[][]{
+          {0.2126, 0.7152, 0.0722},
+          {0.2126, 0.7152, 0.0722},
+          {0.2126, 0.7152, 0.0722}});
+
+  private final double[][] matrix;
+  // products[out * 3 + in][value] is the truncated coefficient times value
+  private final int[][] products;
+  private final int[] offsets;
+  // the same products in fixed point for PackedKernels.matrix, or a shift of -1 if there is none
+  private final int[] multipliers;
+  private final int[] negate;
+  private final int shift;
+
+  /**
+   * Constructs a ColorMatrix. The matrix has three rows, one for each new channel. A row has
+   * three coefficients for the red, green and blue values of the original pixel, and may have a
+   * fourth value that is added as an offset.
+   *
+   * @param matrix the 3x3 or 3x4 matrix
+   * @throws IllegalArgumentException if the matrix is null, is not 3x3 or 3x4,
+   *                                  or holds a value that is not finite
+   */
+  public ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix == null || matrix.length != 3) {
+      throw new IllegalArgumentException("matrix must have three rows");
+    }
+    int columns = matrix[0] == null ? 0 : matrix[0].length;
+    if (columns != 3 && columns != 4) {
+      throw new IllegalArgumentException("matrix must have three or four columns");
+    }
+
+    this.matrix = new double[3][4];
+    this.products = new int[9][256];
+    this.offsets = new int[3];
+    for (int out = 0; out < 3; out++) {
+      if (matrix[out] == null || matrix[out].length != columns) {
+        throw new IllegalArgumentException("every row of the matrix must be the same length");
+      }
+      for (int in = 0; in < columns; in++) {
+        if (Double.isNaN(matrix[out][in]) || Double.isInfinite(matrix[out][in])) {
+          throw new IllegalArgumentException("matrix values must be finite");
+        }
+        this.matrix[out][in] = matrix[out][in];
+      }
+      for (int in = 0; in < 3; in++) {
+        for (int value = 0; value < 256; value++) {
+          this.products[out * 3 + in][value] = (int) (matrix[out][in] * (double) value);
+        }
+      }
+      this.offsets[out] = (int) this.matrix[out][3];
+    }
+
+    double[] coefficients = new double[9];
+    for (int i = 0; i < 9; i++) {
+      coefficients[i] = this.matrix[i / 3][i % 3];
+    }
+    this.shift = PackedKernels.fixedPointShift(coefficients);
+    this.multipliers = new int[9];
+    this.negate = new int[9];
+    for (int i = 0; i < 9 && this.shift >= 0; i++) {
+      this.multipliers[i] = PackedKernels.fixedPoint(coefficients[i], this.shift);
+      this.negate[i] = coefficients[i] < 0 ? -1 : 0;
+    }
+  }
+
+  /**
+   * Gets a copy of the matrix as 3x4, with the offsets in the last column.
+   *
+   * @return the matrix
+   */
+  public double[][] getMatrix() {
+    double[][] copy = new double[3][];
+    for (int out = 0; out < 3; out++) {
+      copy[out] = this.matrix[out].clone();
+    }
+    return copy;
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(),
+            image.getMaxValue(), newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    for (int row = fromRow; row < toRow; row++) {
+      int start = row * width;
+      image.getPackedRow(row, newPixels, start);
+      if (PackedKernels.isEnabled() && shift >= 0) {
+        PackedKernels.matrix(newPixels, start, start + width, multipliers, negate, shift,
+                offsets);
+        continue;
+      }
+      for (int i = start; i < start + width; i++) {
+        newPixels[i] = applyTo(newPixels[i]);
+      }
+    }
+  }
+
+  @Override
+  public int applyTo(int packed) {
+    int r = (packed >> 16) & 0xFF;
+    int g = (packed >> 8) & 0xFF;
+    int b = packed & 0xFF;
+    int newR = products[0][r] + products[1][g] + products[2][b] + offsets[0];
+    int newG = products[3][r] + products[4][g] + products[5][b] + offsets[1];
+    int newB = products[6][r] + products[7][g] + products[8][b] + offsets[2];
+    return (clamp(newR) << 16) | (clamp(newG) << 8) | clamp(newB);
+  }
+
+  // clamps a channel value to 0 to 255 without a call to PackedPixels in the inner loop
+  private static int clamp(int value) {
+    return value < 0 ? 0 : (value > 255 ? 255 : value);
+  }
+
+  @Override
+  public String getDescriptor() {
+    return "matrix " + Arrays.deepToString(matrix);
+  }
+}
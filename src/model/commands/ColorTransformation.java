@@ -2,17 +2,17 @@ package model.commands;
 
 import model.IImage;
 import model.ImageImpl;
-import model.Pixel;
-import model.PixelImpl;
 
 /**
  * This is the class that applies filters to an image. It transforms each
  * individual pixel on an image that is retrieved from a hashmap.
  * The filter that is applied is up to the user's specification.
+ * The filters are predefined ColorMatrix instances, which do the actual work.
  */
-public class ColorTransformation implements ImageProcessingCommands {
+public class ColorTransformation implements PointOperation, CacheableCommand {
 
   private final String type;
+  private final ColorMatrix matrix;
 
   /**
    * This is the constructor for ColorTransformation. The constructor gets the contents
@@ -23,55 +23,48 @@ public class ColorTransformation implements ImageProcessingCommands {
   public ColorTransformation(String type) {
 
     this.type = type;
+    this.matrix = getMatrix(type);
   }
 
-  @Override
-  public ImageImpl process(IImage image) {
-    double[][] matrix = new double[3][3];
-    int[] colors;
-    int[] accumulators;
-    Pixel[][] newPixels = new Pixel[image.getHeight()][image.getWidth()];
-
-    for (int iRow = 0; iRow < image.getHeight(); iRow++) {
-      for (int iCol = 0; iCol < image.getWidth(); iCol++) {
-        int red = 0;
-        int green = 0;
-        int blue = 0;
-
-        colors = new int[] {image.getPixelAt(iRow,iCol).getR(),
-                image.getPixelAt(iRow,iCol).getG(),
-                image.getPixelAt(iRow,iCol).getB()};
-
-        accumulators = new int[] {red,green,blue};
+  /**
+   * Gets the color matrix of the given type of filter.
+   *
+   * @param type the type of filter
+   * @return the matrix, or a matrix of zeros if the type is not luma or sepia
+   */
+  private static ColorMatrix getMatrix(String type) {
+    if (type.equals("luma")) {
+      return ColorMatrix.LUMA;
+    }
 
-        for (int mRow = 0; mRow < matrix.length; mRow++) {
-          for (int mCol = 0; mCol < matrix.length; mCol++) {
+    if (type.equals("sepia")) {
+      return ColorMatrix.SEPIA;
+    }
+    return new ColorMatrix(new double[3][3]);
+  }
 
-            if (type.equals("luma")) {
-              matrix = new double[][]{
-                      {0.2126, 0.7152, 0.0722},
-                      {0.2126, 0.7152, 0.0722},
-                      {0.2126, 0.7152, 0.0722}};
-            }
+  @Override
+  public ImageImpl process(IImage image) {
+    return matrix.process(image);
+  }
 
-            if (type.equals("sepia")) {
-              matrix = new double[][]{
-                      {0.393, 0.769, 0.189},
-                      {0.349, 0.686, 0.168},
-                      {0.272, 0.534, 0.131}};
-            }
-            //for each pixel, r' = [0][0]r + [0][1]g + [0][2]b
-            //for each three doubles,
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
 
-            accumulators[mRow] += matrix[mRow][mCol] * (double) colors[mCol];
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    matrix.processRows(image, newPixels, fromRow, toRow);
+  }
 
-          }
-        }
-        newPixels[iRow][iCol] = new PixelImpl(accumulators[0], accumulators[1], accumulators[2]);
-      }
-    }
+  @Override
+  public int applyTo(int packed) {
+    return matrix.applyTo(packed);
+  }
 
-    return new ImageImpl(image.getWidth(), image.getHeight(),
-            image.getMaxValue(), newPixels);
+  @Override
+  public String getDescriptor() {
+    return "filter " + type;
   }
 }
@@ -0,0 +1,218 @@
+package model.commands;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+import model.IImage;
+
+/**
+ * This class keeps the results of commands so that running the same command on the same image
+ * again gives back the image it made the first time instead of making it again. A result is
+ * found by the content hash of the input image together with the descriptor of the command, so
+ * only CacheableCommands are kept, and an equal image under another name finds the same result.
+ * Since two different images can have the same hash, a result is only given back once the pixels
+ * of the image are compared with the input it was made from, the same way the model finds equal
+ * images. The inputs are only weakly kept, so caching a result does not hold on to its input,
+ * and a result whose input is gone can no longer be checked and is dropped.
+ *
+ * <p>The results are limited to a budget of bytes, and the least recently used results are
+ * dropped to stay under it. A result larger than the whole budget is not kept. The default budget
+ * is an eighth of the largest heap the JVM will use, and can be set in bytes with
+ * -Dmodel.cacheBytes. A cache can be shared by many threads. Two threads that miss on the same
+ * result at once both make it, and the second one is kept.
+ */
+public class CommandCache {
+
+  // the bytes counted for a result on top of its pixels
+  private static final long RESULT_OVERHEAD = 64;
+
+  // the results, from least to most recently used
+  private final LinkedHashMap<Key, Result> results;
+  private final long budget;
+
+  private long bytes;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs a CommandCache with the default budget.
+   */
+  public CommandCache() {
+    this(Long.getLong("model.cacheBytes", Runtime.getRuntime().maxMemory() / 8));
+  }
+
+  /**
+   * Constructs a CommandCache that keeps at most the given number of bytes of results.
+   *
+   * @param budget the bytes of results that can be kept
+   * @throws IllegalArgumentException if the budget is negative
+   */
+  public CommandCache(long budget) throws IllegalArgumentException {
+    if (budget < 0) {
+      throw new IllegalArgumentException("budget cannot be negative");
+    }
+    this.results = new LinkedHashMap<>(16, 0.75f, true);
+    this.budget = budget;
+  }
+
+  /**
+   * Runs a command on an image, or gives back the result of running it before. Commands that
+   * are not CacheableCommands are always run.
+   *
+   * @param cmd      the command to be run
+   * @param image    the image to be edited
+   * @param executor the executor the command is run on, or null to run it on this thread
+   * @return the edited image
+   */
+  public IImage process(ImageProcessingCommands cmd, IImage image, ParallelExecutor executor) {
+    if (!(cmd instanceof CacheableCommand) || image == null) {
+      return run(cmd, image, executor);
+    }
+    Key key = new Key(((CacheableCommand) cmd).getDescriptor(), image);
+    Result found;
+    synchronized (this) {
+      found = this.results.get(key);
+    }
+    // the pixels are compared outside the lock, so other threads are not held up
+    IImage input = found == null ? null : found.input.get();
+    boolean hit = input != null && (input == image || input.hasSameContent(image));
+    synchronized (this) {
+      if (hit) {
+        hits++;
+        return found.image;
+      }
+      misses++;
+    }
+    IImage result = run(cmd, image, executor);
+    put(key, image, result);
+    return result;
+  }
+
+  /**
+   * Gets the number of times process found its result in the cache.
+   *
+   * @return the number of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of times process had to run a CacheableCommand.
+   *
+   * @return the number of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Gets the bytes of the results that are kept.
+   *
+   * @return the bytes of the results
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the number of results that are kept.
+   *
+   * @return the number of results
+   */
+  public synchronized int size() {
+    return this.results.size();
+  }
+
+  // runs a command, in parallel if there is an executor
+  private static IImage run(ImageProcessingCommands cmd, IImage image,
+                            ParallelExecutor executor) {
+    if (executor == null) {
+      return cmd.process(image);
+    }
+    return executor.execute(cmd, image);
+  }
+
+  /**
+   * Keeps a result and drops the least recently used results until the rest fit in the budget.
+   *
+   * @param key    the key of the result
+   * @param input  the image the result was made from
+   * @param result the result
+   */
+  private synchronized void put(Key key, IImage input, IImage result) {
+    long size = sizeOf(result);
+    if (result == null || size > budget) {
+      return;
+    }
+    // a result with the same key replaces one whose input is gone or had other pixels
+    Result old = this.results.put(key, new Result(input, result));
+    if (old != null) {
+      bytes -= sizeOf(old.image);
+    }
+    bytes += size;
+    Iterator<Result> values = this.results.values().iterator();
+    while (bytes > budget) {
+      bytes -= sizeOf(values.next().image);
+      values.remove();
+    }
+  }
+
+  // the bytes counted for a result, four for each pixel
+  private static long sizeOf(IImage image) {
+    return image == null ? 0 : 4L * image.getWidth() * image.getHeight() + RESULT_OVERHEAD;
+  }
+
+  /**
+   * This class is a result together with the input it was made from, which is only weakly kept
+   * so that a hit can be checked against it.
+   */
+  private static final class Result {
+
+    private final WeakReference<IImage> input;
+    private final IImage image;
+
+    Result(IImage input, IImage image) {
+      this.input = new WeakReference<>(input);
+      this.image = image;
+    }
+  }
+
+  /**
+   * This class is the key of a result: the descriptor of the command and the content of the
+   * input image, given by its hash, size and max value.
+   */
+  private static final class Key {
+
+    private final String descriptor;
+    private final long contentHash;
+    private final int width;
+    private final int height;
+    private final int maxValue;
+
+    Key(String descriptor, IImage image) {
+      this.descriptor = descriptor;
+      this.contentHash = image.getContentHash();
+      this.width = image.getWidth();
+      this.height = image.getHeight();
+      this.maxValue = image.getMaxValue();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return contentHash == key.contentHash && width == key.width && height == key.height
+              && maxValue == key.maxValue && descriptor.equals(key.descriptor);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(descriptor, contentHash, width, height, maxValue);
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package model.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import model.IImage;
+import model.ImageImpl;
+
+/**
+ * This class runs a chain of image processing commands, one after the other. Consecutive point
+ * operations in the chain are fused into one FusedPointOperation, so they take a single pass
+ * over the image and make no images in between. Within such a run, neighbouring operations that
+ * compile to lookup tables are first composed into a single ChannelLookupTable. A pipeline is
+ * made with its Builder.
+ */
+public class CommandPipeline implements ImageProcessingCommands {
+
+  private final List<ImageProcessingCommands> stages;
+
+  /**
+   * Constructs a CommandPipeline from stages that have already been fused.
+   *
+   * @param stages the stages in the order they are run
+   */
+  private CommandPipeline(List<ImageProcessingCommands> stages) {
+    this.stages = Collections.unmodifiableList(stages);
+  }
+
+  /**
+   * Gets the stages this pipeline runs after fusing, in order.
+   *
+   * @return an unmodifiable list of the stages
+   */
+  public List<ImageProcessingCommands> getStages() {
+    return this.stages;
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    IImage current = image;
+    for (ImageProcessingCommands stage : this.stages) {
+      current = stage.process(current);
+    }
+    if (current instanceof ImageImpl) {
+      return (ImageImpl) current;
+    }
+
+    // an empty pipeline gives an unchanged copy of the image
+    int[] pixels = new int[current.getWidth() * current.getHeight()];
+    for (int row = 0; row < current.getHeight(); row++) {
+      current.getPackedRow(row, pixels, row * current.getWidth());
+    }
+    return ImageImpl.fromPacked(current.getWidth(), current.getHeight(),
+            current.getMaxValue(), pixels);
+  }
+
+  /**
+   * This class builds a CommandPipeline one command at a time.
+   */
+  public static class Builder {
+
+    private final List<ImageProcessingCommands> commands;
+
+    /**
+     * Constructs a Builder with no commands.
+     */
+    public Builder() {
+      this.commands = new ArrayList<>();
+    }
+
+    /**
+     * Adds a command to the end of the pipeline.
+     *
+     * @param cmd the command to be added
+     * @return this builder
+     * @throws IllegalArgumentException if the command is null
+     */
+    public Builder then(ImageProcessingCommands cmd) throws IllegalArgumentException {
+      if (cmd == null) {
+        throw new IllegalArgumentException("command is null");
+      }
+      this.commands.add(cmd);
+      return this;
+    }
+
+    /**
+     * Builds the pipeline, fusing every run of consecutive point operations.
+     *
+     * @return the pipeline
+     */
+    public CommandPipeline build() {
+      List<ImageProcessingCommands> stages = new ArrayList<>();
+      List<PointOperation> run = new ArrayList<>();
+
+      for (ImageProcessingCommands cmd : this.commands) {
+        if (cmd instanceof PointOperation) {
+          run.add((PointOperation) cmd);
+        } else {
+          addRun(stages, run);
+          stages.add(cmd);
+        }
+      }
+      addRun(stages, run);
+      return new CommandPipeline(stages);
+    }
+
+    // adds a run of point operations as one stage, and empties the run
+    private static void addRun(List<ImageProcessingCommands> stages, List<PointOperation> run) {
+      composeTables(run);
+      if (run.size() == 1) {
+        stages.add(run.get(0));
+      } else if (run.size() > 1) {
+        stages.add(new FusedPointOperation(run));
+      }
+      run.clear();
+    }
+
+    // replaces every group of neighbouring lookup table operations in the run with one table
+    private static void composeTables(List<PointOperation> run) {
+      List<PointOperation> composed = new ArrayList<>();
+      ChannelLookupTable table = null;
+
+      for (PointOperation operation : run) {
+        ChannelLookupTable next = null;
+        if (operation instanceof LookupTableOperation) {
+          next = ((LookupTableOperation) operation).toLookupTable();
+        }
+        if (next == null) {
+          if (table != null) {
+            composed.add(table);
+            table = null;
+          }
+          composed.add(operation);
+        } else {
+          table = table == null ? next : table.andThen(next);
+        }
+      }
+      if (table != null) {
+        composed.add(table);
+      }
+      run.clear();
+      run.addAll(composed);
+    }
+  }
+}
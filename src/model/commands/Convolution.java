@@ -0,0 +1,344 @@
+package model.commands;
+
+import java.util.Arrays;
+
+import model.IImage;
+import model.ImageImpl;
+import model.PackedPixels;
+
+/**
+ * This class convolves an image with a kernel of any odd size. Every new channel value is the sum
+ * of the kernel weights times the channel values around the pixel, rounded and clamped to 0 to
+ * 255. Taps that fall outside of the image are skipped, the same way Quality has always done it.
+ *
+ * <p>A kernel that is the outer product of a column and a row, like a Gaussian blur, is separable
+ * and is run as a pass along each row followed by a pass down each column, which costs
+ * height + width taps per pixel instead of height * width. Separable kernels are found
+ * automatically, or can be given as their two halves. Both passes run one kernel tap at a time
+ * over a whole row, so the inner loops have no bounds checks: the columns a tap would read
+ * outside of the image are left out of the loop range instead.
+ */
+public class Convolution implements RowBandCommand, CacheableCommand {
+
+  // how close a kernel has to be to an outer product to be run as two passes
+  private static final double SEPARABLE_TOLERANCE = 1e-12;
+
+  private final double[][] kernel;
+  private final double[] vertical;
+  private final double[] horizontal;
+  private final int halfHeight;
+  private final int halfWidth;
+
+  /**
+   * Constructs a Convolution with the given kernel. The kernel is copied, and is run as two
+   * passes if it is separable.
+   *
+   * @param kernel the kernel, with an odd number of rows and of columns
+   * @throws IllegalArgumentException if the kernel is null, has an even number of rows or
+   *                                  columns, has rows of different lengths,
+   *                                  or holds a value that is not finite
+   */
+  public Convolution(double[][] kernel) throws IllegalArgumentException {
+    this.kernel = copyKernel(kernel);
+    this.halfHeight = kernel.length / 2;
+    this.halfWidth = kernel[0].length / 2;
+
+    double[][] factors = separate(this.kernel);
+    this.vertical = factors == null ? null : factors[0];
+    this.horizontal = factors == null ? null : factors[1];
+  }
+
+  /**
+   * Constructs a separable Convolution from its two halves. The kernel is the outer product of
+   * the two, so the weight at (row, col) is vertical[row] * horizontal[col].
+   *
+   * @param vertical   the weights down a column, an odd number of them
+   * @param horizontal the weights along a row, an odd number of them
+   * @throws IllegalArgumentException if either half is null, has an even length,
+   *                                  or holds a value that is not finite
+   */
+  public Convolution(double[] vertical, double[] horizontal) throws IllegalArgumentException {
+    if (vertical == null || horizontal == null
+            || vertical.length % 2 == 0 || horizontal.length % 2 == 0) {
+      throw new IllegalArgumentException("kernel must have an odd number of rows and columns");
+    }
+    checkFinite(vertical);
+    checkFinite(horizontal);
+    this.vertical = vertical.clone();
+    this.horizontal = horizontal.clone();
+    this.kernel = new double[vertical.length][horizontal.length];
+    for (int row = 0; row < vertical.length; row++) {
+      for (int col = 0; col < horizontal.length; col++) {
+        this.kernel[row][col] = vertical[row] * horizontal[col];
+      }
+    }
+    this.halfHeight = vertical.length / 2;
+    this.halfWidth = horizontal.length / 2;
+  }
+
+  /**
+   * Checks a kernel and makes a copy of it.
+   *
+   * @param kernel the kernel, with an odd number of rows and of columns
+   * @return the copy
+   * @throws IllegalArgumentException if the kernel is null, has an even number of rows or
+   *                                  columns, has rows of different lengths,
+   *                                  or holds a value that is not finite
+   */
+  static double[][] copyKernel(double[][] kernel) throws IllegalArgumentException {
+    if (kernel == null || kernel.length % 2 == 0 || kernel[0] == null
+            || kernel[0].length % 2 == 0) {
+      throw new IllegalArgumentException("kernel must have an odd number of rows and columns");
+    }
+    double[][] copy = new double[kernel.length][];
+    for (int row = 0; row < kernel.length; row++) {
+      if (kernel[row] == null || kernel[row].length != kernel[0].length) {
+        throw new IllegalArgumentException("every row of the kernel must be the same length");
+      }
+      checkFinite(kernel[row]);
+      copy[row] = kernel[row].clone();
+    }
+    return copy;
+  }
+
+  // makes sure every weight is a finite number
+  private static void checkFinite(double[] weights) throws IllegalArgumentException {
+    for (double weight : weights) {
+      if (Double.isNaN(weight) || Double.isInfinite(weight)) {
+        throw new IllegalArgumentException("kernel values must be finite");
+      }
+    }
+  }
+
+  /**
+   * Splits a kernel into a column and a row whose outer product is the kernel.
+   *
+   * @param kernel the kernel to be split
+   * @return the column and the row, or null if the kernel is not separable
+   */
+  private static double[][] separate(double[][] kernel) {
+    // use the largest weight as the pivot so the division is as accurate as it can be
+    int pivotRow = 0;
+    int pivotCol = 0;
+    for (int row = 0; row < kernel.length; row++) {
+      for (int col = 0; col < kernel[0].length; col++) {
+        if (Math.abs(kernel[row][col]) > Math.abs(kernel[pivotRow][pivotCol])) {
+          pivotRow = row;
+          pivotCol = col;
+        }
+      }
+    }
+    double pivot = kernel[pivotRow][pivotCol];
+    if (pivot == 0 || kernel.length * kernel[0].length == 1) {
+      return null;
+    }
+
+    double[] column = new double[kernel.length];
+    double[] row = new double[kernel[0].length];
+    for (int r = 0; r < kernel.length; r++) {
+      column[r] = kernel[r][pivotCol];
+    }
+    for (int c = 0; c < kernel[0].length; c++) {
+      row[c] = kernel[pivotRow][c] / pivot;
+    }
+
+    double tolerance = Math.abs(pivot) * SEPARABLE_TOLERANCE;
+    for (int r = 0; r < kernel.length; r++) {
+      for (int c = 0; c < kernel[0].length; c++) {
+        if (Math.abs(column[r] * row[c] - kernel[r][c]) > tolerance) {
+          return null;
+        }
+      }
+    }
+    return new double[][] {column, row};
+  }
+
+  /**
+   * Tells whether this convolution is run as a row pass and a column pass.
+   *
+   * @return true if the kernel is separable
+   */
+  public boolean isSeparable() {
+    return this.vertical != null;
+  }
+
+  /**
+   * Gets a copy of the kernel.
+   *
+   * @return the kernel
+   */
+  public double[][] getKernel() {
+    double[][] copy = new double[kernel.length][];
+    for (int row = 0; row < kernel.length; row++) {
+      copy[row] = kernel[row].clone();
+    }
+    return copy;
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    return this.halfHeight;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    // read the band and its halo rows once, split into one plane per channel
+    int firstRow = Math.max(0, fromRow - halfHeight);
+    int lastRow = Math.min(height, toRow + halfHeight);
+    int[][] planes = new int[3][width * (lastRow - firstRow)];
+    int[] channels = new int[width * 3];
+    for (int row = firstRow; row < lastRow; row++) {
+      image.getChannelRow(row, channels, 0);
+      int start = (row - firstRow) * width;
+      for (int col = 0; col < width; col++) {
+        planes[0][start + col] = channels[col * 3];
+        planes[1][start + col] = channels[col * 3 + 1];
+        planes[2][start + col] = channels[col * 3 + 2];
+      }
+    }
+
+    int[][] results = new int[3][];
+    for (int channel = 0; channel < 3; channel++) {
+      if (isSeparable()) {
+        results[channel] = separableHelper(planes[channel], firstRow, lastRow, fromRow, toRow,
+                width);
+      } else {
+        results[channel] = directHelper(planes[channel], firstRow, lastRow, fromRow, toRow,
+                width);
+      }
+    }
+
+    int offset = fromRow * width;
+    for (int i = 0; i < results[0].length; i++) {
+      newPixels[offset + i] = PackedPixels.pack(results[0][i], results[1][i], results[2][i]);
+    }
+  }
+
+  /**
+   * This is the helper that convolves one channel with the whole kernel. The taps of each pixel
+   * are added in the same order as Quality's original loop, row by row and then column by
+   * column, so the result is the same down to the last bit.
+   *
+   * @param plane    one channel of the rows from firstRow to lastRow
+   * @param firstRow the first row held in the plane
+   * @param lastRow  the row after the last row held in the plane
+   * @param fromRow  the first row to be computed
+   * @param toRow    the row after the last row to be computed
+   * @param width    the width of the image
+   * @return the rounded new values of the rows from fromRow to toRow
+   */
+  private int[] directHelper(int[] plane, int firstRow, int lastRow, int fromRow, int toRow,
+                             int width) {
+    int[] result = new int[width * (toRow - fromRow)];
+    double[] accumulators = new double[width];
+
+    for (int row = fromRow; row < toRow; row++) {
+      Arrays.fill(accumulators, 0);
+      for (int kRow = -halfHeight; kRow <= halfHeight; kRow++) {
+        int sourceRow = row + kRow;
+        if (sourceRow < firstRow || sourceRow >= lastRow) {
+          continue;
+        }
+        int start = (sourceRow - firstRow) * width;
+        double[] weights = kernel[kRow + halfHeight];
+        for (int kCol = -halfWidth; kCol <= halfWidth; kCol++) {
+          addTap(plane, start, weights[kCol + halfWidth], kCol, accumulators, width);
+        }
+      }
+      roundRow(accumulators, result, (row - fromRow) * width);
+    }
+    return result;
+  }
+
+  /**
+   * This is the helper that convolves one channel with a separable kernel, first along the rows
+   * and then down the columns.
+   *
+   * @param plane    one channel of the rows from firstRow to lastRow
+   * @param firstRow the first row held in the plane
+   * @param lastRow  the row after the last row held in the plane
+   * @param fromRow  the first row to be computed
+   * @param toRow    the row after the last row to be computed
+   * @param width    the width of the image
+   * @return the rounded new values of the rows from fromRow to toRow
+   */
+  private int[] separableHelper(int[] plane, int firstRow, int lastRow, int fromRow, int toRow,
+                                int width) {
+    // the row pass, for the band and its halo rows
+    double[] rowPass = new double[plane.length];
+    double[] accumulators = new double[width];
+    for (int row = firstRow; row < lastRow; row++) {
+      Arrays.fill(accumulators, 0);
+      int start = (row - firstRow) * width;
+      for (int kCol = -halfWidth; kCol <= halfWidth; kCol++) {
+        addTap(plane, start, horizontal[kCol + halfWidth], kCol, accumulators, width);
+      }
+      System.arraycopy(accumulators, 0, rowPass, start, width);
+    }
+
+    // the column pass, for the band only
+    int[] result = new int[width * (toRow - fromRow)];
+    for (int row = fromRow; row < toRow; row++) {
+      Arrays.fill(accumulators, 0);
+      int from = Math.max(firstRow, row - halfHeight);
+      int to = Math.min(lastRow - 1, row + halfHeight);
+      for (int sourceRow = from; sourceRow <= to; sourceRow++) {
+        double weight = vertical[sourceRow - row + halfHeight];
+        int start = (sourceRow - firstRow) * width;
+        for (int col = 0; col < width; col++) {
+          accumulators[col] += rowPass[start + col] * weight;
+        }
+      }
+      roundRow(accumulators, result, (row - fromRow) * width);
+    }
+    return result;
+  }
+
+  /**
+   * Adds one kernel tap to every pixel of a row. The columns whose tap would land outside of the
+   * image are left out of the loop, so the loop itself has no checks.
+   *
+   * @param plane        one channel of the source rows
+   * @param start        the index in the plane of the first value of the source row
+   * @param weight       the weight of the tap
+   * @param kCol         the column offset of the tap
+   * @param accumulators the sums of the row being computed
+   * @param width        the width of the image
+   */
+  private static void addTap(int[] plane, int start, double weight, int kCol,
+                             double[] accumulators, int width) {
+    int fromCol = Math.max(0, -kCol);
+    int toCol = Math.min(width, width - kCol);
+    int source = start + kCol;
+    for (int col = fromCol; col < toCol; col++) {
+      accumulators[col] += plane[source + col] * weight;
+    }
+  }
+
+  // rounds a row of sums into the result, starting at the given offset
+  private static void roundRow(double[] accumulators, int[] result, int offset) {
+    for (int col = 0; col < accumulators.length; col++) {
+      result[offset + col] = (int) Math.round(accumulators[col]);
+    }
+  }
+
+  @Override
+  public String getDescriptor() {
+    // a separable kernel is run from its two halves, so they are what decide the result
+    if (vertical != null) {
+      return "convolution " + Arrays.toString(vertical) + " " + Arrays.toString(horizontal);
+    }
+    return "convolution " + Arrays.deepToString(kernel);
+  }
+}
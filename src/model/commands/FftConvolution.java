@@ -0,0 +1,329 @@
+package model.commands;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.IImage;
+import model.ImageImpl;
+import model.PackedPixels;
+
+/**
+ * This class convolves an image with a kernel using the fast Fourier transform, which makes the
+ * cost per pixel grow with the logarithm of the kernel size instead of with its area. It gives
+ * the same result as Convolution for the same kernel, up to rounding: taps outside of the image
+ * are skipped, and every sum is rounded and clamped to 0 to 255.
+ *
+ * <p>The image is cut into blocks that are padded with zeros to a power of two tile, transformed,
+ * multiplied by the transform of the kernel and transformed back. Each block spreads into its
+ * neighbours by the size of the kernel, so the tiles are added together where they overlap. Only
+ * a few rows of tiles are held at a time, so huge images need little extra memory. The channels
+ * are real numbers, so two of them are transformed at once, one as the real part and one as the
+ * imaginary part, which halves the number of transforms.
+ *
+ * <p>For small kernels the direct loops of Convolution are faster, and forKernel picks between
+ * the two by estimating the work each would do.
+ */
+public class FftConvolution implements RowBandCommand, CacheableCommand {
+
+  // the smallest tile, so small kernels still get blocks of a useful size
+  private static final int MIN_TILE = 32;
+  // the work of one butterfly of the transform, counted in multiply adds of the direct loops
+  private static final double BUTTERFLY_COST = 6;
+
+  private final double[][] kernel;
+  private final int halfHeight;
+  private final int halfWidth;
+  // the transforms of the kernel, keyed by the tile size they were made for
+  private final Map<Long, double[][]> spectra = new ConcurrentHashMap<>();
+
+  /**
+   * Constructs a FftConvolution with the given kernel, in the same format Quality and
+   * Convolution use. The kernel is copied.
+   *
+   * @param kernel the kernel, with an odd number of rows and of columns
+   * @throws IllegalArgumentException if the kernel is null, has an even number of rows or
+   *                                  columns, has rows of different lengths,
+   *                                  or holds a value that is not finite
+   */
+  public FftConvolution(double[][] kernel) throws IllegalArgumentException {
+    this.kernel = Convolution.copyKernel(kernel);
+    this.halfHeight = kernel.length / 2;
+    this.halfWidth = kernel[0].length / 2;
+  }
+
+  /**
+   * Makes the fastest command for convolving with the given kernel: a Convolution for small or
+   * separable kernels, and a FftConvolution for large ones.
+   *
+   * @param kernel the kernel, with an odd number of rows and of columns
+   * @return the command that convolves with the kernel
+   * @throws IllegalArgumentException if the kernel is not valid
+   */
+  public static RowBandCommand forKernel(double[][] kernel) throws IllegalArgumentException {
+    Convolution direct = new Convolution(kernel);
+    if (prefersFft(kernel.length, kernel[0].length, direct.isSeparable())) {
+      return new FftConvolution(kernel);
+    }
+    return direct;
+  }
+
+  /**
+   * Tells whether a kernel of the given size is cheaper to run with the Fourier transform. The
+   * direct cost is one multiply add per tap, or per row and column tap for a separable kernel.
+   * The transform cost is the butterflies and products of one tile, shared by the pixels of
+   * its block and by the two channels transformed together.
+   *
+   * @param kernelHeight the number of rows in the kernel
+   * @param kernelWidth  the number of columns in the kernel
+   * @param separable    whether the kernel is separable
+   * @return true if the Fourier transform should be used
+   */
+  public static boolean prefersFft(int kernelHeight, int kernelWidth, boolean separable) {
+    double direct = separable ? kernelHeight + kernelWidth
+            : (double) kernelHeight * kernelWidth;
+
+    int tileHeight = tileSize(kernelHeight);
+    int tileWidth = tileSize(kernelWidth);
+    double tile = (double) tileHeight * tileWidth;
+    double log = Math.log(tile) / Math.log(2);
+    double block = (double) (tileHeight - kernelHeight + 1) * (tileWidth - kernelWidth + 1);
+    double transform = (tile * log * BUTTERFLY_COST + tile * 6) / 2 / block;
+    return transform < direct;
+  }
+
+  /**
+   * Picks the size of a tile along one side. It is the power of two that fits four kernels, so
+   * that most of the tile is the block and not its padding.
+   *
+   * @param kernelSize the size of the kernel along that side
+   * @return the size of the tile
+   */
+  private static int tileSize(int kernelSize) {
+    return FourierTransform.nextPowerOfTwo(Math.max(MIN_TILE, 4 * kernelSize));
+  }
+
+  /**
+   * Picks the size of a tile along one side of an image, which is smaller than usual when the
+   * whole image fits in a smaller tile.
+   *
+   * @param kernelSize the size of the kernel along that side
+   * @param imageSize  the size of the image along that side
+   * @return the size of the tile
+   */
+  private static int tileSize(int kernelSize, int imageSize) {
+    return Math.min(tileSize(kernelSize),
+            FourierTransform.nextPowerOfTwo(imageSize + kernelSize - 1));
+  }
+
+  /**
+   * Gets a copy of the kernel.
+   *
+   * @return the kernel
+   */
+  public double[][] getKernel() {
+    double[][] copy = new double[kernel.length][];
+    for (int row = 0; row < kernel.length; row++) {
+      copy[row] = kernel[row].clone();
+    }
+    return copy;
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    return this.halfHeight;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    int kernelHeight = kernel.length;
+    int kernelWidth = kernel[0].length;
+
+    // the source rows that reach the band
+    int firstRow = Math.max(0, fromRow - halfHeight);
+    int lastRow = Math.min(image.getHeight(), toRow + halfHeight);
+
+    int tileHeight = tileSize(kernelHeight, lastRow - firstRow);
+    int tileWidth = tileSize(kernelWidth, width);
+    int blockHeight = tileHeight - kernelHeight + 1;
+    int blockWidth = tileWidth - kernelWidth + 1;
+    int blocksPerRow = (width + blockWidth - 1) / blockWidth;
+    double[][] spectrum = getSpectrum(tileHeight, tileWidth);
+
+    // the sums of the output rows from base on, with halfWidth columns of padding on each side
+    int sumWidth = width + kernelWidth - 1;
+    int sumRows = blockHeight + kernelHeight - 1;
+    double[][] sums = new double[3][sumRows * sumWidth];
+    int base = firstRow - halfHeight;
+
+    double[] re = new double[tileHeight * tileWidth];
+    double[] im = new double[tileHeight * tileWidth];
+    int[] channels = new int[blockWidth * blockHeight * 3];
+
+    for (int blockRow = firstRow; blockRow < lastRow; blockRow += blockHeight) {
+      int rows = Math.min(blockHeight, lastRow - blockRow);
+
+      // every channel of every block in this row of blocks is one real input, taken in pairs
+      int inputs = blocksPerRow * 3;
+      for (int first = 0; first < inputs; first += 2) {
+        Arrays.fill(re, 0);
+        Arrays.fill(im, 0);
+        fillTile(image, re, first, blockRow, rows, blockWidth, tileWidth, channels);
+        if (first + 1 < inputs) {
+          fillTile(image, im, first + 1, blockRow, rows, blockWidth, tileWidth, channels);
+        }
+
+        FourierTransform.transform2d(re, im, tileHeight, tileWidth, rows, false);
+        multiply(re, im, spectrum[0], spectrum[1]);
+        FourierTransform.transform2d(re, im, tileHeight, tileWidth, tileHeight, true);
+
+        int sumRow = blockRow - halfHeight - base;
+        addTile(re, sums, first, sumRow, rows, blockWidth, width, tileWidth, sumWidth);
+        if (first + 1 < inputs) {
+          addTile(im, sums, first + 1, sumRow, rows, blockWidth, width, tileWidth, sumWidth);
+        }
+      }
+
+      // no later block reaches the first blockHeight rows of sums, so they are finished
+      boolean last = blockRow + blockHeight >= lastRow;
+      int finished = last ? sumRows : blockHeight;
+      writeRows(sums, newPixels, base, finished, fromRow, toRow, width, sumWidth);
+      for (double[] plane : sums) {
+        System.arraycopy(plane, blockHeight * sumWidth, plane, 0,
+                (sumRows - blockHeight) * sumWidth);
+        Arrays.fill(plane, (sumRows - blockHeight) * sumWidth, plane.length, 0);
+      }
+      base += blockHeight;
+    }
+  }
+
+  /**
+   * Copies one channel of one block into the top left corner of a tile. The rest of the tile
+   * must already be zero.
+   *
+   * @param image      the image being convolved
+   * @param tile       the real or imaginary parts of the tile
+   * @param input      the block number times three plus the channel
+   * @param blockRow   the top row of the block
+   * @param rows       the number of rows in the block
+   * @param blockWidth the number of columns in a full block
+   * @param tileWidth  the number of columns in a tile
+   * @param channels   a buffer big enough for the channel values of a block
+   */
+  private static void fillTile(IImage image, double[] tile, int input, int blockRow, int rows,
+                               int blockWidth, int tileWidth, int[] channels) {
+    int blockCol = (input / 3) * blockWidth;
+    int channel = input % 3;
+    int cols = Math.min(blockWidth, image.getWidth() - blockCol);
+    image.getChannelRegion(blockRow, blockCol, cols, rows, channels, 0);
+    for (int row = 0; row < rows; row++) {
+      int source = row * cols * 3 + channel;
+      int dest = row * tileWidth;
+      for (int col = 0; col < cols; col++) {
+        tile[dest + col] = channels[source + col * 3];
+      }
+    }
+  }
+
+  /**
+   * Adds the convolved tile of one channel of one block into the running sums. Row y of the tile
+   * lands on output row blockRow + y - halfHeight, and the same for columns.
+   *
+   * @param tile       the real or imaginary parts of the convolved tile
+   * @param sums       the running sums of each channel
+   * @param input      the block number times three plus the channel
+   * @param sumRow     the row of the sums that row zero of the tile lands on
+   * @param rows       the number of rows in the block
+   * @param blockWidth the number of columns in a full block
+   * @param width      the width of the image
+   * @param tileWidth  the number of columns in a tile
+   * @param sumWidth   the number of columns in the sums
+   */
+  private void addTile(double[] tile, double[][] sums, int input, int sumRow, int rows,
+                       int blockWidth, int width, int tileWidth, int sumWidth) {
+    int blockCol = (input / 3) * blockWidth;
+    double[] plane = sums[input % 3];
+    int cols = Math.min(blockWidth, width - blockCol) + kernel[0].length - 1;
+    for (int row = 0; row < rows + kernel.length - 1; row++) {
+      int source = row * tileWidth;
+      int dest = (sumRow + row) * sumWidth + blockCol;
+      for (int col = 0; col < cols; col++) {
+        plane[dest + col] += tile[source + col];
+      }
+    }
+  }
+
+  /**
+   * Rounds and packs the finished rows of the sums that fall inside of the band.
+   *
+   * @param sums      the running sums of each channel
+   * @param newPixels the buffer for the packed pixels of the edited image
+   * @param base      the output row held in the first row of the sums
+   * @param finished  the number of finished rows
+   * @param fromRow   the first row of the band
+   * @param toRow     the row after the last row of the band
+   * @param width     the width of the image
+   * @param sumWidth  the number of columns in the sums
+   */
+  private void writeRows(double[][] sums, int[] newPixels, int base, int finished, int fromRow,
+                         int toRow, int width, int sumWidth) {
+    for (int row = Math.max(base, fromRow); row < Math.min(base + finished, toRow); row++) {
+      int source = (row - base) * sumWidth + halfWidth;
+      int dest = row * width;
+      for (int col = 0; col < width; col++) {
+        newPixels[dest + col] = PackedPixels.pack((int) Math.round(sums[0][source + col]),
+                (int) Math.round(sums[1][source + col]),
+                (int) Math.round(sums[2][source + col]));
+      }
+    }
+  }
+
+  /**
+   * Gets the transform of the kernel for tiles of the given size, making it the first time.
+   * The kernel is turned around both ways, since a convolution by the transform runs the kernel
+   * backwards, and the tiles keep the taps in the same order as Convolution.
+   *
+   * @param tileHeight the number of rows in a tile
+   * @param tileWidth  the number of columns in a tile
+   * @return the real and imaginary parts of the transform
+   */
+  private double[][] getSpectrum(int tileHeight, int tileWidth) {
+    long key = ((long) tileHeight << 32) | tileWidth;
+    return spectra.computeIfAbsent(key, size -> {
+      double[] re = new double[tileHeight * tileWidth];
+      double[] im = new double[tileHeight * tileWidth];
+      int rows = kernel.length;
+      int cols = kernel[0].length;
+      for (int row = 0; row < rows; row++) {
+        for (int col = 0; col < cols; col++) {
+          re[row * tileWidth + col] = kernel[rows - 1 - row][cols - 1 - col];
+        }
+      }
+      FourierTransform.transform2d(re, im, tileHeight, tileWidth, rows, false);
+      return new double[][] {re, im};
+    });
+  }
+
+  // multiplies the values of a tile by the transform of the kernel
+  private static void multiply(double[] re, double[] im, double[] kernelRe, double[] kernelIm) {
+    for (int i = 0; i < re.length; i++) {
+      double r = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+      im[i] = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+      re[i] = r;
+    }
+  }
+
+  @Override
+  public String getDescriptor() {
+    return "fft " + Arrays.deepToString(kernel);
+  }
+}
@@ -2,13 +2,15 @@ package model.commands;
 
 import model.IImage;
 import model.ImageImpl;
-import model.Pixel;
+import model.TransformedImage;
 
 /**
  * This is the class Flip that flips an image that is retrieved from a hashmap. The type of flip
- * that occurs is up to the user's specification.
+ * that occurs is up to the user's specification: horizontal, vertical, or both, which flips the
+ * image both ways at once and so turns it by 180 degrees. A flip can also be seen as a view of
+ * the image, which does not copy its pixels.
  */
-public class Flip implements ImageProcessingCommands {
+public class Flip implements RowBandCommand, CacheableCommand, ViewCommand {
 
   private final String type;
 
@@ -24,24 +26,66 @@ public class Flip implements ImageProcessingCommands {
 
   @Override
   public ImageImpl process(IImage image) {
-    Pixel[][] newPixels = new Pixel[image.getHeight()][image.getWidth()];
-
-    for (int row = 0; row < image.getHeight(); row++) {
-      for (int col = 0; col < image.getWidth(); col++) {
-
-        switch (type) {
-          case "horizontal":
-            newPixels[row][col] = image.getPixelAt(row, image.getWidth() - col - 1);
-            break;
-          case "vertical":
-            newPixels[row][col] = image.getPixelAt(image.getHeight() - row - 1, col);
-            break;
-          default:
-            break;
-        }
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public IImage view(IImage image) {
+    switch (type) {
+      case "horizontal":
+        return TransformedImage.flip(image, true, false);
+      case "vertical":
+        return TransformedImage.flip(image, false, true);
+      case "both":
+        return TransformedImage.flip(image, true, true);
+      default:
+        return process(image);
+    }
+  }
+
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    int height = image.getHeight();
+
+    for (int row = fromRow; row < toRow; row++) {
+      switch (type) {
+        case "horizontal":
+          image.getPackedRow(row, newPixels, row * width);
+          reverse(newPixels, row * width, width);
+          break;
+        case "vertical":
+          image.getPackedRow(height - row - 1, newPixels, row * width);
+          break;
+        case "both":
+          image.getPackedRow(height - row - 1, newPixels, row * width);
+          reverse(newPixels, row * width, width);
+          break;
+        default:
+          break;
       }
     }
+  }
+
+  // reverses the given number of values in place, starting at the given offset
+  private static void reverse(int[] values, int offset, int length) {
+    for (int left = offset, right = offset + length - 1; left < right; left++, right--) {
+      int temp = values[left];
+      values[left] = values[right];
+      values[right] = temp;
+    }
+  }
 
-    return new ImageImpl(image.getWidth(), image.getHeight(), image.getMaxValue(), newPixels);
+  @Override
+  public String getDescriptor() {
+    return "flip " + type;
   }
 }
@@ -0,0 +1,139 @@
+package model.commands;
+
+/**
+ * This class contains the fast Fourier transform used by FftConvolution. It transforms complex
+ * values held as two arrays, one of real parts and one of imaginary parts, in place. Sizes must
+ * be powers of two.
+ */
+final class FourierTransform {
+
+  private FourierTransform() {
+    // utility class, no instances
+  }
+
+  /**
+   * Transforms a grid of complex values in place, first every row and then every column. The
+   * inverse transform is scaled, so running the forward and then the inverse transform gives
+   * back the original values.
+   *
+   * @param re      the real parts, row by row
+   * @param im      the imaginary parts, row by row
+   * @param rows    the number of rows, a power of two
+   * @param cols    the number of columns, a power of two
+   * @param used    the number of rows from the top that can be nonzero, the rest are skipped
+   *                by the row transforms since they stay zero
+   * @param inverse true for the inverse transform
+   */
+  static void transform2d(double[] re, double[] im, int rows, int cols, int used,
+                          boolean inverse) {
+    double[][] rowTwiddles = twiddles(cols, inverse);
+    for (int row = 0; row < Math.min(used, rows); row++) {
+      transform(re, im, row * cols, cols, rowTwiddles[0], rowTwiddles[1]);
+    }
+
+    // columns are copied out so the transform reads them in order
+    double[][] colTwiddles = twiddles(rows, inverse);
+    double[] colRe = new double[rows];
+    double[] colIm = new double[rows];
+    for (int col = 0; col < cols; col++) {
+      for (int row = 0; row < rows; row++) {
+        colRe[row] = re[row * cols + col];
+        colIm[row] = im[row * cols + col];
+      }
+      transform(colRe, colIm, 0, rows, colTwiddles[0], colTwiddles[1]);
+      for (int row = 0; row < rows; row++) {
+        re[row * cols + col] = colRe[row];
+        im[row * cols + col] = colIm[row];
+      }
+    }
+
+    if (inverse) {
+      double scale = 1.0 / ((double) rows * cols);
+      for (int i = 0; i < rows * cols; i++) {
+        re[i] *= scale;
+        im[i] *= scale;
+      }
+    }
+  }
+
+  // the cosines and sines of the angles a transform of the given size multiplies by
+  private static double[][] twiddles(int n, boolean inverse) {
+    double[] cos = new double[Math.max(1, n / 2)];
+    double[] sin = new double[Math.max(1, n / 2)];
+    double sign = inverse ? 1 : -1;
+    for (int i = 0; i < n / 2; i++) {
+      double angle = 2 * Math.PI * i / n;
+      cos[i] = Math.cos(angle);
+      sin[i] = sign * Math.sin(angle);
+    }
+    return new double[][] {cos, sin};
+  }
+
+  /**
+   * Transforms n complex values that are next to each other in the arrays, using the iterative
+   * radix two algorithm.
+   *
+   * @param re     the real parts
+   * @param im     the imaginary parts
+   * @param offset the index of the first value
+   * @param n      the number of values, a power of two
+   * @param cos    the cosines from twiddles
+   * @param sin    the sines from twiddles
+   */
+  private static void transform(double[] re, double[] im, int offset, int n,
+                                double[] cos, double[] sin) {
+    // put the values in bit reversed order
+    for (int i = 1, j = 0; i < n; i++) {
+      int bit = n >> 1;
+      while ((j & bit) != 0) {
+        j ^= bit;
+        bit >>= 1;
+      }
+      j |= bit;
+      if (i < j) {
+        swap(re, offset + i, offset + j);
+        swap(im, offset + i, offset + j);
+      }
+    }
+
+    for (int size = 2; size <= n; size <<= 1) {
+      int half = size >> 1;
+      int step = n / size;
+      for (int start = offset; start < offset + n; start += size) {
+        for (int k = 0; k < half; k++) {
+          int even = start + k;
+          int odd = even + half;
+          double wr = cos[k * step];
+          double wi = sin[k * step];
+          double tr = re[odd] * wr - im[odd] * wi;
+          double ti = re[odd] * wi + im[odd] * wr;
+          re[odd] = re[even] - tr;
+          im[odd] = im[even] - ti;
+          re[even] += tr;
+          im[even] += ti;
+        }
+      }
+    }
+  }
+
+  // swaps two values of an array
+  private static void swap(double[] values, int a, int b) {
+    double temp = values[a];
+    values[a] = values[b];
+    values[b] = temp;
+  }
+
+  /**
+   * Finds the smallest power of two that is at least the given value.
+   *
+   * @param value the value, at least one
+   * @return the power of two
+   */
+  static int nextPowerOfTwo(int value) {
+    int power = 1;
+    while (power < value) {
+      power <<= 1;
+    }
+    return power;
+  }
+}
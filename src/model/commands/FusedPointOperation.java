@@ -0,0 +1,87 @@
+package model.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.IImage;
+import model.ImageImpl;
+
+/**
+ * This class applies a chain of point operations in one pass over an image. Each pixel goes
+ * through every operation in order before the next pixel is read, so no image is made between
+ * the operations.
+ */
+public class FusedPointOperation implements PointOperation {
+
+  private final PointOperation[] operations;
+
+  /**
+   * Constructs a FusedPointOperation. Operations that are themselves fused are flattened into
+   * this one.
+   *
+   * @param operations the operations in the order they are applied
+   * @throws IllegalArgumentException if the list is null or empty, or holds a null operation
+   */
+  public FusedPointOperation(List<PointOperation> operations) throws IllegalArgumentException {
+    if (operations == null || operations.isEmpty()) {
+      throw new IllegalArgumentException("there must be at least one operation");
+    }
+    List<PointOperation> flat = new ArrayList<>();
+    for (PointOperation operation : operations) {
+      if (operation == null) {
+        throw new IllegalArgumentException("operation is null");
+      }
+      if (operation instanceof FusedPointOperation) {
+        for (PointOperation inner : ((FusedPointOperation) operation).operations) {
+          flat.add(inner);
+        }
+      } else {
+        flat.add(operation);
+      }
+    }
+    this.operations = flat.toArray(new PointOperation[0]);
+  }
+
+  /**
+   * Gets the number of operations that are applied in the single pass.
+   *
+   * @return the number of operations
+   */
+  public int size() {
+    return this.operations.length;
+  }
+
+  @Override
+  public ImageImpl process(IImage image) {
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
+
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    int width = image.getWidth();
+    for (int row = fromRow; row < toRow; row++) {
+      int start = row * width;
+      image.getPackedRow(row, newPixels, start);
+      for (int i = start; i < start + width; i++) {
+        newPixels[i] = applyTo(newPixels[i]);
+      }
+    }
+  }
+
+  @Override
+  public int applyTo(int packed) {
+    int result = packed;
+    for (PointOperation operation : this.operations) {
+      result = operation.applyTo(result);
+    }
+    return result;
+  }
+}
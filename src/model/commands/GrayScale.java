@@ -2,16 +2,17 @@ package model.commands;
 
 import model.IImage;
 import model.ImageImpl;
-import model.Pixel;
-import model.PixelImpl;
+import model.PackedPixels;
 
 /**
  * This is the class GrayScale that grayscales an image that is retrieved from a hashmap. The
  * type of grayscale that occurs is up to the user's specification.
+ * The value and intensity grayscales use the loops of PackedKernels when they are enabled.
  */
-public class GrayScale implements ImageProcessingCommands {
+public class GrayScale implements LookupTableOperation, CacheableCommand {
 
   private final String type;
+  private final ChannelLookupTable lookupTable;
 
   /**
    * This is the constructor for grayscale. The constructor gets the contents that are passed into
@@ -21,48 +22,132 @@ public class GrayScale implements ImageProcessingCommands {
    */
   public GrayScale( String type) {
     this.type = type;
+    this.lookupTable = copyChannelTable(type);
+  }
+
+  /**
+   * Makes the lookup table for a grayscale that copies one channel into all three.
+   *
+   * @param type the type of grayscale
+   * @return the lookup table, or null if the type is not red, green or blue
+   */
+  private static ChannelLookupTable copyChannelTable(String type) {
+    int channel;
+    switch (type) {
+      case "red":
+        channel = 0;
+        break;
+      case "green":
+        channel = 1;
+        break;
+      case "blue":
+        channel = 2;
+        break;
+      default:
+        return null;
+    }
+    int[] table = ChannelLookupTable.offsetTable(0);
+    return new ChannelLookupTable(new int[] {channel, channel, channel},
+            new int[][] {table, table, table});
   }
 
   @Override
   public ImageImpl process(IImage image) {
-    Pixel[][] newPixels = new Pixel[image.getHeight()][image.getWidth()];
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
 
-    for (int row = 0; row < image.getHeight(); row++) {
-      for (int col = 0; col < image.getWidth(); col++) {
+  @Override
+  public int getHaloRows() {
+    return 0;
+  }
 
-        Pixel p;
-        int pixelValue;
-        p = image.getPixelAt(row, col);
+  @Override
+  public ChannelLookupTable toLookupTable() {
+    return lookupTable;
+  }
 
-        switch (type) {
-          case "red":
-            newPixels[row][col] = new PixelImpl(p.getR(), p.getR(), p.getR());
-            break;
-          case "green":
-            newPixels[row][col] = new PixelImpl(p.getG(), p.getG(), p.getG());
-            break;
-          case "blue":
-            newPixels[row][col] = new PixelImpl(p.getB(), p.getB(), p.getB());
-            break;
-          case "value":
-            pixelValue = Math.max(p.getR(), Math.max(p.getB(), p.getG()));
-            newPixels[row][col] = new PixelImpl(pixelValue, pixelValue, pixelValue);
-            break;
-          case "intensity":
-            pixelValue = (p.getR() + p.getG() + p.getB()) / 3;
-            newPixels[row][col] = new PixelImpl(pixelValue, pixelValue, pixelValue);
-            break;
-          case "luma":
-            pixelValue = (int) (Math.round(0.2126 * p.getR()
-                    + 0.7152 * p.getG() + 0.0722 * p.getB()));
-            newPixels[row][col] = new PixelImpl(pixelValue, pixelValue, pixelValue);
-            break;
-          default:
-            break;
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    if (lookupTable != null) {
+      lookupTable.processRows(image, newPixels, fromRow, toRow);
+      return;
+    }
+    int width = image.getWidth();
+    if (PackedKernels.isEnabled() && (type.equals("value") || type.equals("intensity"))) {
+      for (int row = fromRow; row < toRow; row++) {
+        int start = row * width;
+        image.getPackedRow(row, newPixels, start);
+        if (type.equals("value")) {
+          PackedKernels.channelMax(newPixels, start, start + width);
+        } else {
+          PackedKernels.channelAverage(newPixels, start, start + width);
         }
       }
+      return;
+    }
+    int[] channels = new int[width * 3];
+
+    for (int row = fromRow; row < toRow; row++) {
+      image.getChannelRow(row, channels, 0);
+
+      for (int col = 0; col < width; col++) {
+        newPixels[row * width + col] = grayHelper(channels[col * 3], channels[col * 3 + 1],
+                channels[col * 3 + 2]);
+      }
+    }
+  }
+
+  @Override
+  public int applyTo(int packed) {
+    if (lookupTable != null) {
+      return lookupTable.applyTo(packed);
     }
+    return grayHelper(PackedPixels.red(packed), PackedPixels.green(packed),
+            PackedPixels.blue(packed));
+  }
 
-    return new ImageImpl(image.getWidth(), image.getHeight(), image.getMaxValue(), newPixels);
+  /**
+   * This is the helper that works out the gray value of one pixel for the type of this
+   * grayscale.
+   *
+   * @param r the red value of the pixel
+   * @param g the green value of the pixel
+   * @param b the blue value of the pixel
+   * @return the gray pixel, packed, or black if the type is unknown
+   */
+  private int grayHelper(int r, int g, int b) {
+    int pixelValue;
+
+    switch (type) {
+      case "red":
+        pixelValue = r;
+        break;
+      case "green":
+        pixelValue = g;
+        break;
+      case "blue":
+        pixelValue = b;
+        break;
+      case "value":
+        pixelValue = Math.max(r, Math.max(b, g));
+        break;
+      case "intensity":
+        pixelValue = (r + g + b) / 3;
+        break;
+      case "luma":
+        pixelValue = (int) (Math.round(0.2126 * r + 0.7152 * g + 0.0722 * b));
+        break;
+      default:
+        return 0;
+    }
+    return PackedPixels.pack(pixelValue, pixelValue, pixelValue);
+  }
+
+  @Override
+  public String getDescriptor() {
+    return "grayscale " + type;
   }
 }
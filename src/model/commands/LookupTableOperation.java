@@ -0,0 +1,18 @@
+package model.commands;
+
+/**
+ * This is the interface for point operations that can be compiled into a ChannelLookupTable.
+ * A chain of these operations can be composed into one table, so the whole chain costs one table
+ * lookup per channel.
+ */
+public interface LookupTableOperation extends PointOperation {
+
+  /**
+   * Gets the lookup table that gives the same result as this operation. Some operations can only
+   * be compiled for some of their types, for example a grayscale that copies one channel can be
+   * compiled but a luma grayscale mixes channels and cannot.
+   *
+   * @return the lookup table, or null if this operation cannot be expressed as one
+   */
+  ChannelLookupTable toLookupTable();
+}
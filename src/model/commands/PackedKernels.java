@@ -0,0 +1,248 @@
+package model.commands;
+
+/**
+ * This class contains loops that edit a run of packed pixels in place, written so that the JIT
+ * compiler can turn them into SIMD instructions. Each loop only uses integer adds, multiplies,
+ * shifts and masks, with no table lookups or branches inside of it, which is what HotSpot needs
+ * to process several pixels per instruction. Channels are read with unsigned shifts and
+ * compared with bit tricks instead of Math.max for the same reason. The saturating add works on
+ * the red and blue channels of a pixel together, with a spare bit between them to catch the
+ * carry.
+ *
+ * <p>Every loop gives exactly the same pixels as the scalar code of the command it speeds up, and
+ * the commands only use these loops when isEnabled returns true. Running with
+ * -Dmodel.scalarKernels=true switches them off, which picks the scalar path at runtime.
+ */
+public final class PackedKernels {
+
+  private static final boolean ENABLED = !Boolean.getBoolean("model.scalarKernels");
+
+  // the largest shift used for fixed point coefficients
+  private static final int MAX_SHIFT = 22;
+
+  private PackedKernels() {
+    // utility class, no instances
+  }
+
+  /**
+   * Tells whether the commands should use these loops instead of their scalar code.
+   *
+   * @return true unless the scalar path was picked with -Dmodel.scalarKernels=true
+   */
+  public static boolean isEnabled() {
+    return ENABLED;
+  }
+
+  /**
+   * Adds the given increment to every channel of every pixel from index from up to but not
+   * including index to, clamping each channel to 0 to 255. This is the same as Brightness.
+   *
+   * @param pixels    the packed pixels, edited in place
+   * @param from      the index of the first pixel
+   * @param to        the index after the last pixel
+   * @param increment the value added to each channel
+   */
+  public static void addSaturating(int[] pixels, int from, int to, int increment) {
+    // anything past 255 either way already saturates every channel
+    int amount = Math.max(-255, Math.min(255, increment));
+    if (amount >= 0) {
+      int redBlue = amount * 0x010001;
+      int green = amount << 8;
+      for (int i = from; i < to; i++) {
+        int p = pixels[i];
+        int rb = (p & 0xFF00FF) + redBlue;
+        int g = (p & 0x00FF00) + green;
+        // a channel that went past 255 carried into the bit above it, spread that to all 8 bits
+        int rbCarry = rb & 0x01000100;
+        int gCarry = g & 0x00010000;
+        rb = (rb | (rbCarry - (rbCarry >>> 8))) & 0xFF00FF;
+        g = (g | (gCarry - (gCarry >>> 8))) & 0x00FF00;
+        pixels[i] = rb | g;
+      }
+    } else {
+      int redBlue = -amount * 0x010001;
+      int green = -amount << 8;
+      for (int i = from; i < to; i++) {
+        int p = pixels[i];
+        // the bit above each channel lends to it, and is gone if the channel went below 0
+        int rb = ((p & 0xFF00FF) | 0x01000100) - redBlue;
+        int g = ((p & 0x00FF00) | 0x00010000) - green;
+        int rbKeep = rb & 0x01000100;
+        int gKeep = g & 0x00010000;
+        rb &= rbKeep - (rbKeep >>> 8);
+        g &= gKeep - (gKeep >>> 8);
+        pixels[i] = rb | g;
+      }
+    }
+  }
+
+  /**
+   * Turns every pixel into a gray with the largest of its three channels, the same as the
+   * value grayscale.
+   *
+   * @param pixels the packed pixels, edited in place
+   * @param from   the index of the first pixel
+   * @param to     the index after the last pixel
+   */
+  public static void channelMax(int[] pixels, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int p = pixels[i];
+      int max = max(p >>> 16, max((p >>> 8) & 0xFF, p & 0xFF));
+      pixels[i] = max * 0x010101;
+    }
+  }
+
+  /**
+   * Turns every pixel into a gray with the average of its three channels rounded down, the same
+   * as the intensity grayscale. The division by three is done as a multiply and a shift, which
+   * is exact for every sum of three channels.
+   *
+   * @param pixels the packed pixels, edited in place
+   * @param from   the index of the first pixel
+   * @param to     the index after the last pixel
+   */
+  public static void channelAverage(int[] pixels, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int p = pixels[i];
+      int sum = (p >>> 16) + ((p >>> 8) & 0xFF) + (p & 0xFF);
+      pixels[i] = ((sum * 0xAAAB) >>> 17) * 0x010101;
+    }
+  }
+
+  /**
+   * Multiplies every pixel by a color matrix given in fixed point, the same as
+   * ColorMatrix.applyTo. Each product of a coefficient and a channel value is
+   * (value * multiplier) >>> shift, negated when the coefficient is negative, which has to match
+   * the product truncated toward zero for every value. fixedPoint finds multipliers like that.
+   *
+   * @param pixels      the packed pixels, edited in place
+   * @param from        the index of the first pixel
+   * @param to          the index after the last pixel
+   * @param multipliers the nine fixed point coefficients, row by row, without their signs
+   * @param negate      -1 for each coefficient that is negative and 0 for the rest
+   * @param shift       the shift of every fixed point coefficient
+   * @param offsets     the value added to each edited channel
+   */
+  public static void matrix(int[] pixels, int from, int to, int[] multipliers, int[] negate,
+                            int shift, int[] offsets) {
+    // copied into locals so the loop does not read the arrays for every pixel
+    int m0 = multipliers[0];
+    int m1 = multipliers[1];
+    int m2 = multipliers[2];
+    int m3 = multipliers[3];
+    int m4 = multipliers[4];
+    int m5 = multipliers[5];
+    int m6 = multipliers[6];
+    int m7 = multipliers[7];
+    int m8 = multipliers[8];
+    int n0 = negate[0];
+    int n1 = negate[1];
+    int n2 = negate[2];
+    int n3 = negate[3];
+    int n4 = negate[4];
+    int n5 = negate[5];
+    int n6 = negate[6];
+    int n7 = negate[7];
+    int n8 = negate[8];
+    int o0 = offsets[0];
+    int o1 = offsets[1];
+    int o2 = offsets[2];
+
+    for (int i = from; i < to; i++) {
+      int p = pixels[i];
+      int r = p >>> 16;
+      int g = (p >>> 8) & 0xFF;
+      int b = p & 0xFF;
+      // (x ^ n) - n negates x when n is -1 and leaves it alone when n is 0
+      int newR = ((((r * m0) >>> shift) ^ n0) - n0) + ((((g * m1) >>> shift) ^ n1) - n1)
+              + ((((b * m2) >>> shift) ^ n2) - n2) + o0;
+      int newG = ((((r * m3) >>> shift) ^ n3) - n3) + ((((g * m4) >>> shift) ^ n4) - n4)
+              + ((((b * m5) >>> shift) ^ n5) - n5) + o1;
+      int newB = ((((r * m6) >>> shift) ^ n6) - n6) + ((((g * m7) >>> shift) ^ n7) - n7)
+              + ((((b * m8) >>> shift) ^ n8) - n8) + o2;
+      pixels[i] = (clamp(newR) << 16) | (clamp(newG) << 8) | clamp(newB);
+    }
+  }
+
+  /**
+   * Gets the larger of two values without a branch or Math.max, both of which stop HotSpot
+   * from vectorizing a loop.
+   *
+   * @param a the first value
+   * @param b the second value
+   * @return the larger value
+   */
+  private static int max(int a, int b) {
+    int difference = a - b;
+    return a - (difference & (difference >> 31));
+  }
+
+  /**
+   * Clamps a value to 0 to 255 without a branch. Negative values are masked to zero, and values
+   * past 255 are filled with ones and then cut down to eight bits.
+   *
+   * @param value the value to be clamped
+   * @return the clamped value
+   */
+  private static int clamp(int value) {
+    int positive = value & ~(value >> 31);
+    return (positive | ((255 - positive) >> 31)) & 0xFF;
+  }
+
+  /**
+   * Finds a fixed point multiplier for the size of a coefficient, so that
+   * (value * multiplier) >> shift is the product of the size and value truncated toward zero,
+   * for every value from 0 to 255. Every multiplier is checked against all 256 values.
+   *
+   * @param coefficient the coefficient, whose sign is ignored
+   * @param shift       the shift the multiplier is for
+   * @return the multiplier, or -1 if there is none for this shift
+   */
+  public static int fixedPoint(double coefficient, int shift) {
+    double size = Math.abs(coefficient);
+    double scaled = Math.ceil(size * (1 << shift));
+    // the product of 255 and the multiplier has to fit in an int
+    if (scaled > Integer.MAX_VALUE / 255) {
+      return -1;
+    }
+    for (int multiplier = (int) scaled - 1; multiplier <= (int) scaled + 1; multiplier++) {
+      if (multiplier >= 0 && matches(size, multiplier, shift)) {
+        return multiplier;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the largest shift no greater than MAX_SHIFT for which every coefficient has a fixed
+   * point multiplier.
+   *
+   * @param coefficients the coefficients
+   * @return the shift, or -1 if there is none
+   */
+  public static int fixedPointShift(double[] coefficients) {
+    for (int shift = MAX_SHIFT; shift >= 0; shift--) {
+      boolean found = true;
+      for (double coefficient : coefficients) {
+        if (fixedPoint(coefficient, shift) < 0) {
+          found = false;
+          break;
+        }
+      }
+      if (found) {
+        return shift;
+      }
+    }
+    return -1;
+  }
+
+  // checks a fixed point multiplier against the truncated product for every value
+  private static boolean matches(double size, int multiplier, int shift) {
+    for (int value = 0; value < 256; value++) {
+      if ((value * multiplier) >> shift != (int) (size * (double) value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,162 @@
+package model.commands;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import model.IImage;
+import model.ImageImpl;
+
+/**
+ * This class runs image processing commands over bands of rows in parallel on a ForkJoinPool.
+ * Commands that implement RowBandCommand are split into bands that are computed at the same time,
+ * every other command is run by its own process method. Because each band is computed by the
+ * same code as the sequential path, the result is the same as calling process directly.
+ *
+ * <p>An executor made with a number of threads has a pool of its own, whose threads are stopped
+ * by close. The default executor runs on the common pool of the JVM, which is never closed.
+ */
+public class ParallelExecutor implements AutoCloseable {
+
+  /**
+   * The band height used when none is given.
+   */
+  public static final int DEFAULT_BAND_HEIGHT = 64;
+
+  private final ForkJoinPool pool;
+  private final int parallelism;
+  private final int bandHeight;
+  // whether the pool is the common pool, which is not this executor's to shut down
+  private final boolean shared;
+
+  /**
+   * Constructs a ParallelExecutor that uses the parallelism of the common pool and the default
+   * band height. It runs on the common pool, together with the thread that calls execute, so it
+   * does not start any threads of its own.
+   */
+  public ParallelExecutor() {
+    this.pool = ForkJoinPool.commonPool();
+    this.parallelism = ForkJoinPool.getCommonPoolParallelism();
+    this.bandHeight = DEFAULT_BAND_HEIGHT;
+    this.shared = true;
+  }
+
+  /**
+   * Constructs a ParallelExecutor with its own pool of worker threads, which are stopped by
+   * close.
+   *
+   * @param parallelism the number of worker threads
+   * @param bandHeight  the largest number of rows one task computes
+   * @throws IllegalArgumentException if the parallelism or band height is less than one
+   */
+  public ParallelExecutor(int parallelism, int bandHeight) throws IllegalArgumentException {
+    if (parallelism < 1 || bandHeight < 1) {
+      throw new IllegalArgumentException("parallelism and band height must be at least one");
+    }
+    this.pool = new ForkJoinPool(parallelism);
+    this.parallelism = parallelism;
+    this.bandHeight = bandHeight;
+    this.shared = false;
+  }
+
+  /**
+   * Gets the number of worker threads of this executor.
+   *
+   * @return the parallelism as an integer
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * Gets the largest number of rows one task computes.
+   *
+   * @return the band height as an integer
+   */
+  public int getBandHeight() {
+    return this.bandHeight;
+  }
+
+  /**
+   * Runs the given command on the given image, splitting it into bands of rows when the command
+   * supports it.
+   *
+   * @param cmd   the command to be run
+   * @param image the image that is to be edited
+   * @return a new edited Image
+   */
+  public ImageImpl execute(ImageProcessingCommands cmd, IImage image) {
+    if (!(cmd instanceof RowBandCommand)) {
+      return cmd.process(image);
+    }
+    RowBandCommand bandCmd = (RowBandCommand) cmd;
+    int height = image.getHeight();
+
+    // every band re-reads the halo rows around it, so keep bands tall compared to the halo
+    int minHeight = Math.max(this.bandHeight, 4 * bandCmd.getHaloRows());
+    if (height <= minHeight || this.parallelism == 1) {
+      return cmd.process(image);
+    }
+
+    int[] newPixels = new int[image.getWidth() * height];
+    this.pool.invoke(new BandTask(bandCmd, image, newPixels, 0, height, minHeight));
+    return ImageImpl.fromPacked(image.getWidth(), height, image.getMaxValue(), newPixels);
+  }
+
+  /**
+   * Wraps a command so that every call to its process method goes through this executor.
+   *
+   * @param cmd the command to be wrapped
+   * @return a command that runs the given command in parallel
+   */
+  public ImageProcessingCommands parallel(ImageProcessingCommands cmd) {
+    return image -> execute(cmd, image);
+  }
+
+  /**
+   * Stops the worker threads of this executor once the tasks they are running are done. An
+   * executor that runs on the common pool is left as it is.
+   */
+  @Override
+  public void close() {
+    if (!shared) {
+      this.pool.shutdown();
+    }
+  }
+
+  /**
+   * This class is one task of the pool. It computes its band of rows if it is small enough, and
+   * otherwise splits it in half.
+   */
+  private static class BandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RowBandCommand cmd;
+    private final IImage image;
+    private final int[] newPixels;
+    private final int fromRow;
+    private final int toRow;
+    private final int bandHeight;
+
+    BandTask(RowBandCommand cmd, IImage image, int[] newPixels, int fromRow, int toRow,
+             int bandHeight) {
+      this.cmd = cmd;
+      this.image = image;
+      this.newPixels = newPixels;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+      this.bandHeight = bandHeight;
+    }
+
+    @Override
+    protected void compute() {
+      if (toRow - fromRow <= bandHeight) {
+        cmd.processRows(image, newPixels, fromRow, toRow);
+        return;
+      }
+      int middle = (fromRow + toRow) >>> 1;
+      invokeAll(new BandTask(cmd, image, newPixels, fromRow, middle, bandHeight),
+              new BandTask(cmd, image, newPixels, middle, toRow, bandHeight));
+    }
+  }
+}
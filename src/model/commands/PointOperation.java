@@ -0,0 +1,18 @@
+package model.commands;
+
+/**
+ * This is the interface for image processing commands where each new pixel only depends on the
+ * pixel at the same place in the original image. Chains of these commands can be applied one
+ * pixel at a time in a single pass over an image.
+ */
+public interface PointOperation extends RowBandCommand {
+
+  /**
+   * Applies this command to one pixel. The result is the pixel that process would put at the
+   * same place in the edited image.
+   *
+   * @param packed the original pixel, packed as 0xRRGGBB
+   * @return the edited pixel, packed as 0xRRGGBB
+   */
+  int applyTo(int packed);
+}
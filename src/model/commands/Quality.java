@@ -2,18 +2,19 @@ package model.commands;
 
 import model.IImage;
 import model.ImageImpl;
-import model.Pixel;
-import model.PixelImpl;
 
 
 /**
  * This is the class that changes the quality of an image. It transforms each
  * individual pixel on an image that is retrieved from a hashmap.
  * The edit that is applied is up to the user's specification.
+ * The kernel of each type is run by a Convolution, which runs the blur kernel as two passes
+ * because it is separable.
  */
-public class Quality implements ImageProcessingCommands {
+public class Quality implements RowBandCommand, CacheableCommand {
 
   private final String type;
+  private final Convolution convolution;
 
   /**
    * This is the constructor for Quality. The constructor gets the contents that are passed into
@@ -23,77 +24,60 @@ public class Quality implements ImageProcessingCommands {
    */
   public Quality( String type) {
     this.type = type;
+    double[][] kernel = getKernel(type);
+    this.convolution = kernel == null ? null : new Convolution(kernel);
   }
 
   @Override
   public ImageImpl process(IImage image) {
-    double[][] kernel;
+    int[] newPixels = new int[image.getWidth() * image.getHeight()];
+    processRows(image, newPixels, 0, image.getHeight());
+    return ImageImpl.fromPacked(image.getWidth(), image.getHeight(), image.getMaxValue(),
+            newPixels);
+  }
+
+  @Override
+  public int getHaloRows() {
+    if (convolution == null) {
+      return 0;
+    }
+    return convolution.getHaloRows();
+  }
 
-    Pixel[][] newPixels = new Pixel[image.getHeight()][image.getWidth()];
+  @Override
+  public void processRows(IImage image, int[] newPixels, int fromRow, int toRow) {
+    if (convolution != null) {
+      convolution.processRows(image, newPixels, fromRow, toRow);
+    }
+  }
 
+  /**
+   * Gets the kernel for the given type of quality edit.
+   *
+   * @param type the type of operation
+   * @return the kernel, or null if the type is not blur or sharpen
+   */
+  private static double[][] getKernel(String type) {
     if (type.equals("blur")) {
-      kernel = new double[][]{
+      return new double[][]{
               {0.0625, 0.125, 0.0625},
               {0.125, 0.25, 0.125},
               {0.0625, 0.125, 0.0625}};
-      kernelHelper(kernel, newPixels, image);
     }
 
     if (type.equals("sharpen")) {
-      kernel = new double[][]{
+      return new double[][]{
               {-0.125, -0.125, -0.125, -0.125, -0.125},
               {-0.125, 0.25, 0.25, 0.25, -0.125},
               {-0.125, 0.25, 1, 0.25, -0.125},
               {-0.125, 0.25, 0.25, 0.25, -0.125},
               {-0.125, -0.125, -0.125, -0.125, -0.125}};
-      kernelHelper(kernel, newPixels, image);
     }
-
-    return new ImageImpl(image.getWidth(), image.getHeight(), image.getMaxValue(), newPixels);
+    return null;
   }
 
-  /**
-   * This is the helper that iterates through the kernel and through the picture and applies the
-   * filter to each pixel.
-   *
-   * @param kernel the kernel that represent a specific filter data
-   * @param newPixels a 2d array of pixels
-   * @param image an image
-   */
-  private void kernelHelper(double[][] kernel, Pixel[][] newPixels, IImage image) {
-
-    // for loop for image row
-    // for loop for image col
-    for (int iRow = 0; iRow < image.getHeight(); iRow++) {
-      for (int iCol = 0; iCol < image.getWidth(); iCol++) {
-
-        // accumulator
-        double redAccumulator = 0;
-        double greenAccumulator = 0;
-        double blueAccumulator = 0;
-
-        // for loop for kernel row
-        // for loop for kernel col
-        for (int kRow = kernel.length / -2; kRow < kernel.length / 2 + 1; kRow++) {
-          for (int kCol = kernel.length / -2; kCol < kernel.length / 2 + 1; kCol++) {
-
-            if (iRow + kRow > -1 && iCol + kCol > -1
-                    && iRow + kRow < image.getHeight() && iCol + kCol < image.getWidth()) {
-              redAccumulator += image.getPixelAt(iRow + kRow, iCol + kCol).getR()
-                      * kernel[kRow + kernel.length / 2][kCol + kernel.length / 2];
-              greenAccumulator += image.getPixelAt(iRow + kRow, iCol + kCol).getG()
-                      * kernel[kRow + kernel.length / 2][kCol + kernel.length / 2];
-              blueAccumulator += image.getPixelAt(iRow + kRow, iCol + kCol).getB()
-                      * kernel[kRow + kernel.length / 2][kCol + kernel.length / 2];
-            }
-          }
-        }
-
-        // set pixel value equal to iterated accumulator
-        newPixels[iRow][iCol] = new PixelImpl((int) Math.round(redAccumulator),
-                (int) Math.round(greenAccumulator), (int) Math.round(blueAccumulator));
-      }
-    }
+  @Override
+  public String getDescriptor() {
+    return "quality " + type;
   }
 }
-
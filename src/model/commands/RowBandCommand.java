@@ -0,0 +1,33 @@
+package model.commands;
+
+import model.IImage;
+
+/**
+ * This is the interface for image processing commands that can compute any band of rows of their
+ * result on its own. Commands that implement it can be split up and run in parallel by a
+ * ParallelExecutor, and their process method gives the same result as computing every band.
+ */
+public interface RowBandCommand extends ImageProcessingCommands {
+
+  /**
+   * Gets the number of rows above and below an output row that this command reads to compute
+   * that row. A command that only looks at one source row for each output row returns zero,
+   * while a 3x3 kernel returns one.
+   *
+   * @return the number of halo rows on each side of a band
+   */
+  int getHaloRows();
+
+  /**
+   * Computes the rows from fromRow up to but not including toRow of the edited image, and writes
+   * them as packed pixels into newPixels. The buffer holds the whole edited image row by row, so
+   * the pixel at (row, col) goes to index row * width + col. No other rows of the buffer are
+   * changed, so different bands can be computed at the same time.
+   *
+   * @param image     the image that is to be edited
+   * @param newPixels the buffer for the packed pixels of the edited image
+   * @param fromRow   the first row to be computed
+   * @param toRow     the row after the last row to be computed
+   */
+  void processRows(IImage image, int[] newPixels, int fromRow, int toRow);
+}
@@ -0,0 +1,20 @@
+package model.commands;
+
+import model.IImage;
+
+/**
+ * This is the interface for commands that only move pixels around, so their result can be a
+ * TransformedImage that reads the pixels of the input where they are instead of a copy. The view
+ * has the same pixels that process gives.
+ */
+public interface ViewCommand extends ImageProcessingCommands {
+
+  /**
+   * Gets the result of this command as a view of the image, which takes the same time and
+   * memory whatever the size of the image.
+   *
+   * @param image the image that is to be edited
+   * @return the edited image, which can share the pixels of the given image
+   */
+  IImage view(IImage image);
+}
@@ -0,0 +1,124 @@
+package model.plan;
+
+import java.util.Arrays;
+
+import model.IImage;
+import model.commands.Brightness;
+import model.commands.ChannelLookupTable;
+import model.commands.CommandCache;
+import model.commands.FusedPointOperation;
+import model.commands.ImageProcessingCommands;
+import model.commands.LookupTableOperation;
+import model.commands.ParallelExecutor;
+import model.commands.PointOperation;
+
+/**
+ * This class plans edits like a PlannedImage does, but first looks at the edit the image being
+ * edited is still waiting on, and puts the two together when one pass gives the same pixels:
+ *
+ * <ul>
+ *   <li>two brightness edits that go the same way add up, since the first one can only clamp
+ *       values that the second one would clamp anyway;</li>
+ *   <li>two brightness edits that go opposite ways do not add up, since +20 and then -20 turns
+ *       250 into 235, so they make one lookup table that clamps at the same place they did;</li>
+ *   <li>other edits that can be written as lookup tables, like a grayscale that copies one
+ *       channel, make one lookup table as well;</li>
+ *   <li>any other two point operations make one FusedPointOperation, which runs both on each
+ *       pixel in a single pass without making the image in between.</li>
+ * </ul>
+ *
+ * <p>The new edit is put together with the one before it for as long as that works, so a chain
+ * of point operations becomes at most one pass. Only edits that are still planned are put
+ * together: once an image is made, its edit is gone and a new edit runs on its pixels. Flips are
+ * not planned at all, since a Controller makes them as views that copy no pixels, and a view of
+ * a view reads straight from the first image.
+ */
+public final class PlanOptimizer {
+
+  // the result of putting together two edits that undo each other
+  private static final ImageProcessingCommands IDENTITY = image -> null;
+
+  private PlanOptimizer() {
+    // utility class, no instances
+  }
+
+  /**
+   * Plans an edit of an image, put together with the edits the image is still waiting on.
+   *
+   * @param command  the edit to be planned
+   * @param input    the image it is run on
+   * @param executor the executor the edit is run on, or null to run it on the reading thread
+   * @param cache    the cache the result is looked up in, or null to always run the edit
+   * @return the planned image, or an image from earlier in the chain if the edits cancel
+   * @throws IllegalArgumentException if the command or the input is null
+   */
+  public static IImage plan(ImageProcessingCommands command, IImage input,
+                            ParallelExecutor executor, CommandCache cache)
+          throws IllegalArgumentException {
+    if (command == null || input == null) {
+      throw new IllegalArgumentException("command and input cannot be null");
+    }
+    while (input instanceof PlannedImage) {
+      PlannedImage planned = (PlannedImage) input;
+      ImageProcessingCommands previous;
+      IImage source;
+      // both are read at once so the image cannot be made in between
+      synchronized (planned) {
+        previous = planned.getCommand();
+        source = planned.getInput();
+      }
+      if (previous == null) {
+        break;
+      }
+      ImageProcessingCommands combined = combine(previous, command);
+      if (combined == null) {
+        break;
+      }
+      if (combined == IDENTITY) {
+        return source;
+      }
+      command = combined;
+      input = source;
+    }
+    return new PlannedImage(command, input, executor, cache);
+  }
+
+  /**
+   * Puts together two edits into one that gives the same pixels as running them in order.
+   *
+   * @param first  the edit that runs first
+   * @param second the edit that runs on its result
+   * @return the edit that does both, IDENTITY if they cancel, or null if they cannot be put
+   *         together
+   */
+  private static ImageProcessingCommands combine(ImageProcessingCommands first,
+                                                 ImageProcessingCommands second) {
+    if (first instanceof Brightness && second instanceof Brightness) {
+      int a = ((Brightness) first).getIncrement();
+      int b = ((Brightness) second).getIncrement();
+      if ((a >= 0 && b >= 0) || (a <= 0 && b <= 0)) {
+        // every value is clamped past 255 either way, which also keeps the sum from overflowing
+        int sum = (int) Math.max(-255, Math.min(255, (long) a + b));
+        return sum == 0 ? IDENTITY : new Brightness(sum);
+      }
+    }
+    ChannelLookupTable firstTable = lookupTable(first);
+    ChannelLookupTable secondTable = lookupTable(second);
+    if (firstTable != null && secondTable != null) {
+      return firstTable.andThen(secondTable);
+    }
+    if (first instanceof PointOperation && second instanceof PointOperation) {
+      return new FusedPointOperation(Arrays.asList((PointOperation) first,
+              (PointOperation) second));
+    }
+    return null;
+  }
+
+  // the table of an edit that can be written as one, or of edits put together before, or null
+  private static ChannelLookupTable lookupTable(ImageProcessingCommands command) {
+    if (command instanceof LookupTableOperation) {
+      return ((LookupTableOperation) command).toLookupTable();
+    }
+    return command instanceof ChannelLookupTable ? (ChannelLookupTable) command : null;
+  }
+}
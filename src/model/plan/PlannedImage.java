@@ -0,0 +1,189 @@
+package model.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import model.Histogram;
+import model.IImage;
+import model.Pixel;
+import model.commands.CommandCache;
+import model.commands.ImageProcessingCommands;
+import model.commands.ParallelExecutor;
+
+/**
+ * This class is an image that has not been made yet: a command and the image it is to be run on.
+ * The size and max value of the image are known right away, since every command keeps those of
+ * its input, but the pixels are only made the first time something reads them, such as a save.
+ * An image that is never read is never made. The input can be another PlannedImage, so a script
+ * builds up a chain of them, and reading the last one makes the whole chain from the oldest
+ * image up, one command at a time. Once its pixels are made, a PlannedImage lets go of its
+ * command and input.
+ */
+public class PlannedImage implements IImage {
+
+  private final int width;
+  private final int height;
+  private final int maxValue;
+  private final ParallelExecutor executor;
+  private final CommandCache cache;
+  // the command and the image it runs on, both null once the pixels are made
+  private ImageProcessingCommands command;
+  private IImage input;
+  private volatile IImage result;
+
+  /**
+   * Constructs a PlannedImage of a command run on an image.
+   *
+   * @param command  the command to be run
+   * @param input    the image it is run on
+   * @param executor the executor the command is run on, or null to run it on the reading thread
+   * @param cache    the cache the result is looked up in, or null to always run the command
+   * @throws IllegalArgumentException if the command or the input is null
+   */
+  public PlannedImage(ImageProcessingCommands command, IImage input, ParallelExecutor executor,
+                      CommandCache cache) throws IllegalArgumentException {
+    if (command == null || input == null) {
+      throw new IllegalArgumentException("command and input cannot be null");
+    }
+    this.width = input.getWidth();
+    this.height = input.getHeight();
+    this.maxValue = input.getMaxValue();
+    this.command = command;
+    this.input = input;
+    this.executor = executor;
+    this.cache = cache;
+  }
+
+  /**
+   * Tells whether the pixels of this image have been made.
+   *
+   * @return true if the pixels have been made
+   */
+  public boolean isMaterialized() {
+    return result != null;
+  }
+
+  /**
+   * Gets the command of this image.
+   *
+   * @return the command, or null if the pixels have been made
+   */
+  public synchronized ImageProcessingCommands getCommand() {
+    return command;
+  }
+
+  /**
+   * Gets the image the command of this image runs on.
+   *
+   * @return the input, or null if the pixels have been made
+   */
+  public synchronized IImage getInput() {
+    return input;
+  }
+
+  /**
+   * Makes the pixels of this image, and of every PlannedImage before it in its chain that has not
+   * been made yet, unless they have been made already.
+   *
+   * @return the image with the pixels
+   */
+  public IImage materialize() {
+    IImage done = result;
+    if (done != null) {
+      return done;
+    }
+    // walked from this image back to the first one that is made, so long chains do not recurse
+    List<PlannedImage> chain = new ArrayList<>();
+    IImage current = this;
+    while (current instanceof PlannedImage && !((PlannedImage) current).isMaterialized()) {
+      PlannedImage planned = (PlannedImage) current;
+      chain.add(planned);
+      current = planned.getInput();
+    }
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      chain.get(i).make();
+    }
+    return result;
+  }
+
+  // runs the command on its input, which is already made, unless another thread got here first
+  private synchronized void make() {
+    if (result != null) {
+      return;
+    }
+    IImage source = input instanceof PlannedImage ? ((PlannedImage) input).materialize() : input;
+    IImage made;
+    if (cache != null) {
+      made = cache.process(command, source, executor);
+    } else if (executor != null) {
+      made = executor.execute(command, source);
+    } else {
+      made = command.process(source);
+    }
+    result = made;
+    command = null;
+    input = null;
+  }
+
+  @Override
+  public Pixel getPixelAt(int row, int col) {
+    return materialize().getPixelAt(row, col);
+  }
+
+  @Override
+  public int getPackedAt(int row, int col) {
+    return materialize().getPackedAt(row, col);
+  }
+
+  @Override
+  public void getPackedRow(int row, int[] dest, int offset) {
+    materialize().getPackedRow(row, dest, offset);
+  }
+
+  @Override
+  public void getChannelRow(int row, int[] dest, int offset) {
+    materialize().getChannelRow(row, dest, offset);
+  }
+
+  @Override
+  public void getChannelRegion(int row, int col, int regionWidth, int regionHeight,
+                               int[] dest, int offset) {
+    materialize().getChannelRegion(row, col, regionWidth, regionHeight, dest, offset);
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getMaxValue() {
+    return maxValue;
+  }
+
+  @Override
+  public Map<Integer, Integer> getHistogramValues(String type) {
+    return materialize().getHistogramValues(type);
+  }
+
+  @Override
+  public Histogram getHistogram() {
+    return materialize().getHistogram();
+  }
+
+  @Override
+  public long getContentHash() {
+    return materialize().getContentHash();
+  }
+
+  @Override
+  public boolean hasSameContent(IImage other) {
+    return materialize().hasSameContent(other);
+  }
+}
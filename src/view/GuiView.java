@@ -3,7 +3,6 @@ package view;
 import java.awt.event.ActionListener;
 
 import model.IImage;
-import model.ImageImpl;
 
 /**
  * This interface represents the methods used to make our GUI view.
@@ -46,7 +45,20 @@ public interface GuiView {
    * @param image the image that is represented in our histogram
    * @param type  the type of histogram that will be printed
    */
-  void setHistogramPanel(ImageImpl image, String type);
+  void setHistogramPanel(IImage image, String type);
+
+  /**
+   * Shows that an edit is running in the background, with a way for the user to cancel it, which
+   * sends the action command "cancel" to the listener.
+   *
+   * @param task what the edit is called, such as "blurring"
+   */
+  void showProgress(String task);
+
+  /**
+   * Hides the progress of the edit once it is done or cancelled.
+   */
+  void hideProgress();
 
   /**
    * Determines which type of grayscale will be used to edit an image. The type is determined by
@@ -15,11 +15,11 @@ import javax.swing.JComboBox;
 import javax.swing.JButton;
 import javax.swing.JTextArea;
 import javax.swing.JLabel;
+import javax.swing.JProgressBar;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 
 import model.IImage;
-import model.ImageImpl;
 
 /**
  * GuiViewImpl class represents the implementation of GUI view,
@@ -41,6 +41,8 @@ public class GuiViewImpl extends JFrame implements GuiView {
   private JTextArea console;
   private JButton load;
   private JButton save;
+  private JProgressBar progress;
+  private JButton cancel;
   private JButton brighten;
   private JButton darken;
   private final Dimension screenSize;
@@ -115,6 +117,17 @@ public class GuiViewImpl extends JFrame implements GuiView {
     load.setActionCommand("load");
     topPanel.add(load);
 
+    // shown while an edit runs in the background
+    progress = new JProgressBar();
+    progress.setIndeterminate(true);
+    progress.setStringPainted(true);
+    progress.setVisible(false);
+    topPanel.add(progress);
+    cancel = new JButton("cancel");
+    cancel.setActionCommand("cancel");
+    cancel.setVisible(false);
+    topPanel.add(cancel);
+
   }
 
   //makes the right panel that contains the combobox and the histogram
@@ -287,7 +300,7 @@ public class GuiViewImpl extends JFrame implements GuiView {
    * @param image the image that is represented in our histogram
    * @param type  the type of histogram that will be printed
    */
-  public void setHistogramPanel(ImageImpl image, String type) {
+  public void setHistogramPanel(IImage image, String type) {
     if (histogramPanel != null) {
       histogramInfo.remove(histogramPanel);
     }
@@ -307,6 +320,21 @@ public class GuiViewImpl extends JFrame implements GuiView {
     return (String) grayscaleTypes.getSelectedItem();
   }
 
+  @Override
+  public void showProgress(String task) {
+    progress.setString(task);
+    progress.setVisible(true);
+    cancel.setVisible(true);
+    topPanel.revalidate();
+  }
+
+  @Override
+  public void hideProgress() {
+    progress.setVisible(false);
+    cancel.setVisible(false);
+    topPanel.revalidate();
+  }
+
   @Override
   public void setVisibility(Boolean b) {
     super.setVisible(b);
@@ -326,6 +354,7 @@ public class GuiViewImpl extends JFrame implements GuiView {
   public void setListener(ActionListener listener) {
     save.addActionListener(listener);
     load.addActionListener(listener);
+    cancel.addActionListener(listener);
     blur.addActionListener(listener);
     sharpen.addActionListener(listener);
     horizontal.addActionListener(listener);
@@ -4,19 +4,19 @@ import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Toolkit;
 import java.awt.Color;
-import java.util.Map;
 import java.util.Objects;
 
 import javax.swing.JPanel;
 
-import model.ImageImpl;
+import model.Histogram;
+import model.IImage;
 
 /**
  * This class represents a panel built for histogram, which is going to be shown on our GUI view.
  */
 public class HistogramPanel extends JPanel {
 
-  private final ImageImpl image;
+  private final IImage image;
   private final String type;
   private double maxValue;
   private final Dimension screenSize;
@@ -27,7 +27,7 @@ public class HistogramPanel extends JPanel {
    * @param image an image that represent a histogram.
    * @param type there are 3 types of histograms, red/green/blue.
    */
-  public HistogramPanel(ImageImpl image, String type) {
+  public HistogramPanel(IImage image, String type) {
     this.image = Objects.requireNonNull(image);
     this.type = Objects.requireNonNull(type);
 
@@ -48,21 +48,20 @@ public class HistogramPanel extends JPanel {
 
   @Override
   protected void paintComponent(Graphics g) {
-    Map<Integer,Integer> values = image.getHistogramValues(type);
+    // the image keeps its histograms, so repainting does not count the pixels again
+    Histogram histogram = image.getHistogram();
+    int[] values = histogram.getCounts(type);
     int y1;
     int y2;
 
-    for (int x = 0; x < values.size(); x++) {
-      int current = values.get(x);
-      if (maxValue < current) {
-        maxValue = current;
-      }
+    if (maxValue < histogram.getMaxCount(type)) {
+      maxValue = histogram.getMaxCount(type);
     }
 
-    for (int i = 0; i < values.size() - 1; i++) {
+    for (int i = 0; i < values.length - 1; i++) {
       double scale = (double) 300 / maxValue;
-      y1 = values.get(i);
-      y2 = values.get(i + 1);
+      y1 = values[i];
+      y2 = values[i + 1];
       g.drawLine(i, (screenSize.height / 3) - (int) (scale * y1),
               i + 1,(screenSize.height / 3) - (int) (scale * y2));
     }
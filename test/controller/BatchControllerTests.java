@@ -0,0 +1,137 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import control.BatchController;
+import control.PPMUtil;
+import model.IImage;
+import model.commands.Brightness;
+import view.ImageViewImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that a batch runs its template on every image in a directory on its own.
+ */
+public class BatchControllerTests {
+
+  private static final String TEMPLATE = "load {input} img brightness 10 img out"
+          + " save out {output} ppm";
+
+  // makes a directory with two good images, one broken image, one image a Controller cannot
+  // load because of the case of its extension, and a file that is not an image
+  private static File inputDirectory() throws IOException {
+    File directory = Files.createTempDirectory("batchin").toFile();
+    Files.copy(new File("test/test.ppm").toPath(), new File(directory, "a.ppm").toPath());
+    Files.copy(new File("test/watermelon.ppm").toPath(), new File(directory, "c.ppm").toPath());
+    Files.write(new File(directory, "b.ppm").toPath(), "P3 not an image".getBytes());
+    Files.copy(new File("test/test.ppm").toPath(), new File(directory, "d.PPM").toPath());
+    Files.write(new File(directory, "notes.txt").toPath(), "skipped".getBytes());
+    return directory;
+  }
+
+  // deletes a directory and the files in it
+  private static void delete(File directory) {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testBatch() throws IOException {
+    File input = inputDirectory();
+    File output = new File(Files.createTempDirectory("batchout").toFile(), "made");
+    StringBuilder messages = new StringBuilder();
+    new BatchController(TEMPLATE, input, output, new ImageViewImpl(messages), 2, false).run();
+
+    String[] lines = messages.toString().split("\n");
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].matches("a\\.ppm done in \\d+ ms"));
+    assertTrue(lines[1].startsWith("b.ppm failed in "));
+    assertTrue(lines[1].contains("load unsuccessful"));
+    assertTrue(lines[2].matches("c\\.ppm done in \\d+ ms"));
+    assertTrue(lines[3].startsWith("batch finished: 2 succeeded, 1 failed, in "));
+
+    for (String name : Arrays.asList("a", "c")) {
+      IImage original = PPMUtil.readPPM(new File(input, name + ".ppm").getPath());
+      IImage made = PPMUtil.readPPM(new File(output, name + ".ppm").getPath());
+      assertTrue(new Brightness(10).process(original).hasSameContent(made));
+    }
+    assertFalse(new File(output, "b.ppm").exists());
+    assertFalse(new File(output, "d.ppm").exists());
+
+    delete(input);
+    delete(output);
+    output.getParentFile().delete();
+  }
+
+  @Test
+  public void testSaveThatCannotBeWritten() throws IOException {
+    File input = inputDirectory();
+    File missing = new File(Files.createTempDirectory("batchout").toFile(), "missing");
+    StringBuilder messages = new StringBuilder();
+    // the directory the template saves into is never made, so writing the files fails
+    new BatchController("load {input} img save img " + missing.getPath() + "/{name} ppm",
+            input, input, new ImageViewImpl(messages), 2, false).run();
+
+    String[] lines = messages.toString().split("\n");
+    assertTrue(lines[0].matches("a\\.ppm failed in \\d+ ms: an exception occurred"));
+    assertTrue(lines[2].matches("c\\.ppm failed in \\d+ ms: an exception occurred"));
+    assertTrue(lines[3].startsWith("batch finished: 0 succeeded, 3 failed, in "));
+
+    delete(input);
+    missing.getParentFile().delete();
+  }
+
+  @Test
+  public void testFromArguments() throws IOException {
+    File input = inputDirectory();
+    File output = Files.createTempDirectory("batchout").toFile();
+    File template = File.createTempFile("template", ".txt");
+    Files.write(template.toPath(), TEMPLATE.getBytes());
+    StringBuilder messages = new StringBuilder();
+    BatchController.fromArguments(Arrays.asList(template.getPath(), input.getPath(),
+            output.getPath(), "-threads", "1", "-lazy"), new ImageViewImpl(messages)).run();
+    assertTrue(messages.toString().contains("2 succeeded, 1 failed"));
+    assertTrue(new File(output, "c.ppm").exists());
+
+    template.delete();
+    delete(input);
+    delete(output);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingArguments() {
+    BatchController.fromArguments(Collections.singletonList("template"),
+            new ImageViewImpl(new StringBuilder()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoThreads() throws IOException {
+    File input = Files.createTempDirectory("batchin").toFile();
+    try {
+      new BatchController(TEMPLATE, input, input, new ImageViewImpl(new StringBuilder()), 0,
+              false);
+    } finally {
+      input.delete();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingDirectory() {
+    new BatchController(TEMPLATE, new File("no/such/directory"), new File("out"),
+            new ImageViewImpl(new StringBuilder()), 1, false);
+  }
+}
@@ -2,7 +2,10 @@ package controller;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.StringReader;
+import java.nio.file.Files;
 
 import control.Controller;
 import control.IController;
@@ -10,11 +13,13 @@ import control.PPMUtil;
 import model.IImage;
 import model.ImageModelImpl;
 import model.Pixel;
+import model.commands.CommandCache;
 import view.ImageView;
 import view.ImageViewImpl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * This class tests if controller runs the correct methods rather than
@@ -630,6 +635,104 @@ public class ControllerTests {
 
   }
   
+  @Test
+  public void testFilterMatrix() {
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " filter matrix 0 0 1 0 1 0 1 0 0 hi swapped"
+            + " filter matrix-offset 1 0 0 10 0 1 0 0 0 0 1 -10 hi offset q");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "hi was successfully filtered\n"
+            + "hi was successfully filtered\n"
+            + "you quit the program.\n", appendable.toString());
+
+    Pixel swapped = model.getValue("swapped").getPixelAt(0, 0);
+    Pixel offset = model.getValue("offset").getPixelAt(0, 0);
+
+    // red and blue are swapped
+    assertEquals(3, swapped.getR());
+    assertEquals(2, swapped.getG());
+    assertEquals(1, swapped.getB());
+
+    // red gains ten and blue is clamped at zero
+    assertEquals(11, offset.getR());
+    assertEquals(2, offset.getG());
+    assertEquals(0, offset.getB());
+  }
+
+  @Test
+  public void testFilterMatrixNotNumbers() {
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " filter matrix 1 0 x 0 1 0 0 0 1 hi bad brightness 10 hi bright q");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "filter unsuccessful: the matrix must have 9 numbers\n"
+            + "hi was successfully brightened by 10\n"
+            + "you quit the program.\n", appendable.toString());
+    assertEquals(null, model.getValue("bad"));
+  }
+
+  @Test
+  public void testQualityBoxAndGaussian() {
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " quality box 1 hi box quality gaussian 3 hi soft q");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "hi was successfully blurred/sharpened\n"
+            + "hi was successfully blurred/sharpened\n"
+            + "you quit the program.\n", appendable.toString());
+
+    // a box of radius one covers the whole 2x2 image, so every pixel is the average
+    Pixel box = model.getValue("box").getPixelAt(1, 1);
+    assertEquals(6, box.getR());
+    assertEquals(7, box.getG());
+    assertEquals(8, box.getB());
+    assertEquals(2, model.getValue("soft").getWidth());
+  }
+
+  @Test
+  public void testQualityKernel() {
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " quality kernel 1 3 0 0.5 0 hi half quality kernel 2 1 1 1 hi bad q");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "hi was successfully blurred/sharpened\n"
+            + "quality unsuccessful: the kernel must have an odd number of rows and columns\n"
+            + "you quit the program.\n", appendable.toString());
+
+    // a kernel with only a center weight of one half halves every value
+    Pixel half = model.getValue("half").getPixelAt(1, 1);
+    assertEquals(5, half.getR());
+    assertEquals(6, half.getG());
+    assertEquals(6, half.getB());
+  }
+
+  @Test
+  public void testQualityKernelNotNumbers() {
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " quality kernel 3 3 1 x 1 1 1 1 1 1 1 hi bad q");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "quality unsuccessful: the kernel must have 9 numbers\n"
+            + "you quit the program.\n", appendable.toString());
+    assertEquals(null, model.getValue("bad"));
+  }
+
   @Test
   public void testLoadOntoExisting() {
     Readable readable = new StringReader("load test/test.ppm hi load test/watermelon.ppm hi q");
@@ -691,6 +794,85 @@ public class ControllerTests {
             "same file name exists save failed\n", appendable.toString());
   }
 
+  @Test
+  public void testSaveBinary() throws IOException {
+    File directory = Files.createTempDirectory("binary").toFile();
+    String desired = new File(directory, "hi").getPath();
+    Readable readable = new StringReader("load test/test.ppm hi"
+            + " save hi " + desired + " binary ppm"
+            + " save hi " + desired + " pgm"
+            + " load " + desired + ".ppm again");
+
+    IController controller = new Controller(model, view, readable, "");
+
+    controller.run();
+    assertEquals("hi was successfully loaded\n"
+            + "hi was successfully saved to " + desired + ".ppm\n"
+            + "hi was successfully saved to " + desired + ".pgm\n"
+            + "again was successfully loaded\n", appendable.toString());
+
+    // two by two pixels of three bytes after an 11 byte header
+    assertEquals(11 + 12, new File(desired + ".ppm").length());
+    assertEquals(10, model.getValue("again").getPixelAt(1, 1).getR());
+
+    new File(desired + ".ppm").delete();
+    new File(desired + ".pgm").delete();
+    directory.delete();
+  }
+
+  @Test
+  public void testSharedCommandCache() {
+    CommandCache cache = new CommandCache();
+    new Controller(model, view, new StringReader("load test/test.ppm hi"
+            + " grayscale luma hi gray brightness 10 hi bright flip vertical hi upside"),
+            "", null, cache).run();
+    // the flip is a view of its image, so it is never run or cached
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    // a second script on the same pixels under another name reuses every result
+    new Controller(model, view, new StringReader("load test/test.ppm other"
+            + " grayscale luma other gray2 brightness 10 other bright2"
+            + " brightness 20 other brighter"), "", null, cache).run();
+    assertEquals(2, cache.getHits());
+    assertEquals(3, cache.getMisses());
+    assertSame(model.getValue("gray"), model.getValue("gray2"));
+    assertSame(model.getValue("bright"), model.getValue("bright2"));
+    assertNotEquals(model.getValue("bright"), model.getValue("brighter"));
+  }
+
+  @Test
+  public void testLazy() throws IOException {
+    File directory = Files.createTempDirectory("plans").toFile();
+    String script = "load test/test.ppm a brightness 10 a b flip vertical b c"
+            + " grayscale luma a unused quality blur unused unused2 save c "
+            + new File(directory, "lazy").getPath() + " ppm"
+            + " save c " + new File(directory, "eager").getPath() + " ppm";
+    String lazyScript = script.substring(0, script.lastIndexOf(" save"));
+    String eagerScript = script.substring(0, script.indexOf(" save"))
+            + script.substring(script.lastIndexOf(" save"));
+
+    StringBuilder eagerMessages = new StringBuilder();
+    CommandCache eagerCache = new CommandCache();
+    new Controller(new ImageModelImpl(), new ImageViewImpl(eagerMessages),
+            new StringReader(eagerScript), "", null, eagerCache, false).run();
+    CommandCache lazyCache = new CommandCache();
+    new Controller(model, view, new StringReader(lazyScript), "", null, lazyCache, true)
+            .run();
+
+    // the two edits that were never saved were not run, and the flip is only a view
+    assertEquals(3, eagerCache.getMisses());
+    assertEquals(1, lazyCache.getMisses());
+    IImage eager = PPMUtil.readPPM(new File(directory, "eager.ppm").getPath());
+    IImage lazy = PPMUtil.readPPM(new File(directory, "lazy.ppm").getPath());
+    assertEquals(true, eager.hasSameContent(lazy));
+    assertEquals(eagerMessages.toString(), appendable.toString().replace("lazy", "eager"));
+
+    new File(directory, "eager.ppm").delete();
+    new File(directory, "lazy.ppm").delete();
+    directory.delete();
+  }
+
   @Test
   public void testSaveImageExtensionInvalid() {
     Readable readable = new StringReader("load test/test.ppm hi"
@@ -0,0 +1,123 @@
+package controller;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import control.GuiTaskRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This class tests that a GuiTaskRunner runs one edit at a time and hands over only the results
+ * that are still wanted.
+ */
+public class GuiTaskRunnerTests {
+
+  /**
+   * This class is an executor that keeps its tasks until the test runs them.
+   */
+  private static final class QueuedExecutor implements Executor {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    // runs the tasks that are waiting, in order
+    void runAll() {
+      List<Runnable> waiting = new ArrayList<>(tasks);
+      tasks.clear();
+      for (Runnable task : waiting) {
+        task.run();
+      }
+    }
+  }
+
+  @Test
+  public void testDirect() {
+    GuiTaskRunner runner = GuiTaskRunner.direct();
+    List<String> results = new ArrayList<>();
+    runner.submit(() -> "done", results::add, e -> results.add("failed"));
+    assertEquals(List.of("done"), results);
+    assertFalse(runner.isBusy());
+  }
+
+  @Test
+  public void testResultIsPublishedAfterWork() {
+    QueuedExecutor background = new QueuedExecutor();
+    QueuedExecutor publisher = new QueuedExecutor();
+    GuiTaskRunner runner = new GuiTaskRunner(background, publisher);
+    List<String> results = new ArrayList<>();
+    runner.submit(() -> "done", results::add, e -> results.add("failed"));
+    assertTrue(runner.isBusy());
+    background.runAll();
+    assertTrue(results.isEmpty());
+    publisher.runAll();
+    assertEquals(List.of("done"), results);
+    assertFalse(runner.isBusy());
+  }
+
+  @Test
+  public void testCancel() {
+    QueuedExecutor background = new QueuedExecutor();
+    QueuedExecutor publisher = new QueuedExecutor();
+    GuiTaskRunner runner = new GuiTaskRunner(background, publisher);
+    List<String> results = new ArrayList<>();
+    runner.submit(() -> "first", results::add, e -> results.add("failed"));
+    assertTrue(runner.cancel());
+    assertFalse(runner.isBusy());
+    assertFalse(runner.cancel());
+
+    // a new edit can start while the cancelled one is still running, and only it is handed over
+    runner.submit(() -> "second", results::add, e -> results.add("failed"));
+    background.runAll();
+    publisher.runAll();
+    assertEquals(List.of("second"), results);
+  }
+
+  @Test
+  public void testFailure() {
+    GuiTaskRunner runner = GuiTaskRunner.direct();
+    List<String> results = new ArrayList<>();
+    runner.<String>submit(() -> {
+      throw new IllegalStateException("broken");
+    }, results::add, e -> results.add(e.getMessage()));
+    assertEquals(List.of("broken"), results);
+    assertFalse(runner.isBusy());
+  }
+
+  @Test
+  public void testErrorIsPublished() {
+    QueuedExecutor background = new QueuedExecutor();
+    QueuedExecutor publisher = new QueuedExecutor();
+    GuiTaskRunner runner = new GuiTaskRunner(background, publisher);
+    List<String> results = new ArrayList<>();
+    runner.<String>submit(() -> {
+      throw new OutOfMemoryError("full");
+    }, results::add, e -> results.add(e.getMessage()));
+    background.runAll();
+    publisher.runAll();
+    assertEquals(List.of("full"), results);
+    // the runner is free for the next edit
+    assertFalse(runner.isBusy());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testOneAtATime() {
+    GuiTaskRunner runner = new GuiTaskRunner(new QueuedExecutor(), new QueuedExecutor());
+    runner.submit(() -> "first", result -> { }, e -> { });
+    runner.submit(() -> "second", result -> { }, e -> { });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullExecutor() {
+    new GuiTaskRunner(null, Runnable::run);
+  }
+}
@@ -0,0 +1,102 @@
+package controller;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import control.ImageUtil;
+import model.IImage;
+import model.ImageImpl;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class tests copying images to and from BufferedImages with ImageUtil.
+ */
+public class ImageUtilTests {
+
+  // makes a BufferedImage of the given type with random colors
+  private static BufferedImage randomImage(int type, int width, int height) {
+    Random random = new Random(type);
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        image.setRGB(col, row, random.nextInt());
+      }
+    }
+    return image;
+  }
+
+  // checks that an image has the same colors as getRGB gives for a BufferedImage
+  private static void assertSameColors(BufferedImage expected, IImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int col = 0; col < expected.getWidth(); col++) {
+        assertEquals(expected.getRGB(col, row) & 0xFFFFFF, actual.getPackedAt(row, col));
+      }
+    }
+  }
+
+  @Test
+  public void testRasterLayouts() {
+    int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB,
+      BufferedImage.TYPE_3BYTE_BGR};
+    for (int type : types) {
+      BufferedImage image = randomImage(type, 13, 7);
+      assertSameColors(image, ImageUtil.fromBufferedImage(image));
+    }
+  }
+
+  @Test
+  public void testOtherLayouts() {
+    int[] types = {BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+      BufferedImage.TYPE_USHORT_565_RGB, BufferedImage.TYPE_BYTE_GRAY};
+    for (int type : types) {
+      BufferedImage image = randomImage(type, 9, 5);
+      assertSameColors(image, ImageUtil.fromBufferedImage(image));
+    }
+  }
+
+  @Test
+  public void testSubimage() {
+    BufferedImage image = randomImage(BufferedImage.TYPE_3BYTE_BGR, 20, 20);
+    BufferedImage part = image.getSubimage(3, 5, 10, 8);
+    assertSameColors(part, ImageUtil.fromBufferedImage(part));
+
+    image = randomImage(BufferedImage.TYPE_INT_RGB, 20, 20);
+    part = image.getSubimage(4, 2, 11, 9);
+    assertSameColors(part, ImageUtil.fromBufferedImage(part));
+  }
+
+  @Test
+  public void testSaveImage() {
+    Random random = new Random(3);
+    int[] pixels = new int[17 * 6];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    IImage image = ImageImpl.fromPacked(17, 6, 255, pixels);
+    BufferedImage saved = ImageUtil.saveImage(image);
+    assertEquals(BufferedImage.TYPE_INT_RGB, saved.getType());
+    assertSameColors(saved, image);
+    assertSameColors(saved, ImageUtil.fromBufferedImage(saved));
+  }
+
+  @Test
+  public void testLoadFiles() throws IOException {
+    for (String file : new String[] {"test/test.png", "test/test.bmp", "test/test.jpg"}) {
+      assertSameColors(ImageIO.read(new File(file)), ImageUtil.loadImage(file));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    ImageUtil.fromBufferedImage(null);
+  }
+}
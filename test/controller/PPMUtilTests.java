@@ -0,0 +1,236 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import control.PPMUtil;
+import model.IImage;
+import model.ImageImpl;
+import model.PackedPixels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * This class tests reading PPM files with the streaming tokenizer.
+ */
+public class PPMUtilTests {
+
+  // reads an image from the given text
+  private static IImage read(String text) {
+    return PPMUtil.readPPM(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testReadFile() {
+    IImage image = PPMUtil.readPPM("test/test.ppm");
+    assertEquals(2, image.getWidth());
+    assertEquals(2, image.getHeight());
+    assertEquals(255, image.getMaxValue());
+    assertEquals(PackedPixels.pack(1, 2, 3), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(10, 11, 12), image.getPackedAt(1, 1));
+  }
+
+  @Test
+  public void testComments() {
+    IImage image = read("# made by hand\nP3 # the magic number\n1 2#width and height\n"
+            + "255\n# the first pixel\n1 2 3\r\n4 5 6# the last pixel");
+    assertEquals(1, image.getWidth());
+    assertEquals(2, image.getHeight());
+    assertEquals(PackedPixels.pack(1, 2, 3), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(4, 5, 6), image.getPackedAt(1, 0));
+  }
+
+  @Test
+  public void testValuesAreClamped() {
+    IImage image = read("P3 1 1 255 -5 300 +7");
+    assertEquals(PackedPixels.pack(0, 255, 7), image.getPackedAt(0, 0));
+  }
+
+  @Test
+  public void testSixteenBitText() {
+    IImage image = read("P3 1 1 65535 65535 32768 257");
+    assertEquals(65535, image.getMaxValue());
+    assertEquals(PackedPixels.pack(255, 128, 1), image.getPackedAt(0, 0));
+  }
+
+  @Test
+  public void testLargerThanBuffer() {
+    Random random = new Random(21);
+    int width = 300;
+    int height = 200;
+    int[] expected = new int[width * height];
+    StringBuilder text = new StringBuilder("P3\n" + width + " " + height + "\n255\n");
+    for (int i = 0; i < expected.length; i++) {
+      int r = random.nextInt(256);
+      int g = random.nextInt(256);
+      int b = random.nextInt(256);
+      expected[i] = PackedPixels.pack(r, g, b);
+      text.append(r).append(' ').append(g).append(' ').append(b).append('\n');
+    }
+
+    IImage image = read(text.toString());
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], image.getPackedAt(i / width, i % width));
+    }
+  }
+
+  @Test
+  public void testUnsupportedFormat() {
+    assertNull(read("P2 1 1 255 1"));
+  }
+
+  @Test
+  public void testMalformed() {
+    // ends early
+    assertNull(read("P3 2 1 255 1 2 3 4"));
+    // not a number
+    assertNull(read("P3 1 1 255 1 two 3"));
+    // a bad size
+    assertNull(read("P3 0 1 255"));
+    assertNull(read(""));
+  }
+
+  @Test
+  public void testMissingFile() {
+    assertNull(PPMUtil.readPPM("test/missing.ppm"));
+  }
+
+  // writes the given header and bytes into one stream
+  private static ByteArrayInputStream binary(String header, int... samples) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(header.getBytes(StandardCharsets.US_ASCII));
+    for (int sample : samples) {
+      out.write(sample);
+    }
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  @Test
+  public void testReadP6() {
+    IImage image = PPMUtil.readPPM(binary("P6\n# binary\n2 1\n255\n", 1, 2, 3, 250, 10, 0));
+    assertEquals(2, image.getWidth());
+    assertEquals(PackedPixels.pack(1, 2, 3), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(250, 10, 0), image.getPackedAt(0, 1));
+  }
+
+  @Test
+  public void testReadSixteenBit() {
+    // two byte samples are scaled from 0 to 65535 down to 0 to 255
+    IImage image = PPMUtil.readPPM(binary("P6 2 1 65535\n", 0xFF, 0xFF, 0, 0, 0x80, 0x00,
+            0x01, 0x01, 0x02, 0x02, 0x03, 0x03));
+    assertEquals(65535, image.getMaxValue());
+    assertEquals(PackedPixels.pack(255, 0, 128), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(1, 2, 3), image.getPackedAt(0, 1));
+
+    // other max values scale the same way, and samples over the max value are clamped
+    image = PPMUtil.readPPM(binary("P5 2 1 1000\n", 0x01, 0xF4, 0x07, 0xD0));
+    assertEquals(PackedPixels.pack(128, 128, 128), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(255, 255, 255), image.getPackedAt(0, 1));
+  }
+
+  @Test
+  public void testWriteSixteenBit() throws IOException {
+    IImage image = ImageImpl.fromPacked(1, 1, 65535, new int[] {PackedPixels.pack(255, 0, 1)});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PPMUtil.saveBinaryPPM(out, image);
+    byte[] bytes = out.toByteArray();
+    int start = "P6\n1 1\n65535\n".length();
+    assertEquals(start + 6, bytes.length);
+    // 255 is the max value, and 1 is 65535 / 255 = 257
+    assertEquals(0xFFFF, sample(bytes, start));
+    assertEquals(0, sample(bytes, start + 2));
+    assertEquals(257, sample(bytes, start + 4));
+  }
+
+  // the two byte sample at an index, most significant byte first
+  private static int sample(byte[] bytes, int index) {
+    return ((bytes[index] & 0xFF) << 8) | (bytes[index + 1] & 0xFF);
+  }
+
+  @Test
+  public void testReadP5() {
+    IImage image = PPMUtil.readPPM(binary("P5 3 1 255\n", 0, 128, 255));
+    assertEquals(PackedPixels.pack(0, 0, 0), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(128, 128, 128), image.getPackedAt(0, 1));
+    assertEquals(PackedPixels.pack(255, 255, 255), image.getPackedAt(0, 2));
+  }
+
+  @Test
+  public void testBinaryEndsEarly() {
+    assertNull(PPMUtil.readPPM(binary("P6 2 1 255\n", 1, 2, 3, 4)));
+    assertNull(PPMUtil.readPPM(binary("P6 1 1 70000\n", 1, 2, 3, 4, 5, 6)));
+  }
+
+  @Test
+  public void testBinaryRoundTrip() throws IOException {
+    Random random = new Random(4);
+    int[] pixels = new int[70 * 50];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    int[] maxValues = {255, 1000};
+    for (int maxValue : maxValues) {
+      IImage image = ImageImpl.fromPacked(70, 50, maxValue, pixels);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PPMUtil.saveBinaryPPM(out, image);
+      // two bytes per sample once the max value is over 255
+      int bytesPerSample = maxValue > 255 ? 2 : 1;
+      assertEquals(("P6\n70 50\n" + maxValue + "\n").length()
+              + pixels.length * 3 * bytesPerSample, out.size());
+
+      IImage read = PPMUtil.readPPM(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals(maxValue, read.getMaxValue());
+      for (int i = 0; i < pixels.length; i++) {
+        assertEquals(pixels[i], read.getPackedAt(i / 70, i % 70));
+      }
+    }
+  }
+
+  @Test
+  public void testPgmRoundTrip() throws IOException {
+    IImage image = ImageImpl.fromPacked(2, 1, 255,
+            new int[] {PackedPixels.pack(30, 60, 90), PackedPixels.pack(7, 7, 7)});
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    PPMUtil.saveBinaryPGM(out, image);
+
+    IImage read = PPMUtil.readPPM(new ByteArrayInputStream(out.toByteArray()));
+    // the intensity of each pixel is kept
+    assertEquals(PackedPixels.pack(60, 60, 60), read.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(7, 7, 7), read.getPackedAt(0, 1));
+  }
+
+  @Test
+  public void testStreamMatchesAppendable() throws IOException {
+    Random random = new Random(8);
+    int[] pixels = new int[40 * 30];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    pixels[0] = 0;
+    pixels[1] = PackedPixels.pack(9, 10, 100);
+    pixels[2] = 0xFFFFFF;
+    // values are scaled up to a max value over 255, which the reader scales back down
+    int[] maxValues = {255, 65535};
+    for (int maxValue : maxValues) {
+      IImage image = ImageImpl.fromPacked(40, 30, maxValue, pixels);
+
+      StringBuilder expected = new StringBuilder();
+      PPMUtil.savePPM(expected, image);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      PPMUtil.savePPM(out, image);
+      assertEquals(expected.toString(), out.toString(StandardCharsets.US_ASCII));
+
+      IImage read = PPMUtil.readPPM(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals(maxValue, read.getMaxValue());
+      for (int i = 0; i < pixels.length; i++) {
+        assertEquals(pixels[i], read.getPackedAt(i / 40, i % 40));
+      }
+    }
+  }
+}
@@ -0,0 +1,151 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import control.Controller;
+import control.ParallelScriptController;
+import model.ImageModelImpl;
+import model.plan.PlannedImage;
+import view.ImageViewImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This class tests that running a script in parallel gives the same messages and images as
+ * running it with a Controller.
+ */
+public class ParallelScriptControllerTests {
+
+  private static final String[] NAMES = {"a", "b", "c", "d", "e", "f", "g"};
+
+  // runs a script both ways and checks that the messages and images are the same
+  private static void assertSameAsController(String script) {
+    ImageModelImpl expectedModel = new ImageModelImpl();
+    StringBuilder expected = new StringBuilder();
+    new Controller(expectedModel, new ImageViewImpl(expected), new StringReader(script), "")
+            .run();
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      for (int run = 0; run < 5; run++) {
+        ImageModelImpl model = new ImageModelImpl();
+        StringBuilder messages = new StringBuilder();
+        new ParallelScriptController(model, new ImageViewImpl(messages),
+                new StringReader(script), pool, null).run();
+        assertEquals(expected.toString(), messages.toString());
+        for (String name : NAMES) {
+          if (expectedModel.getValue(name) == null) {
+            assertEquals(null, model.getValue(name));
+          } else {
+            assertTrue(expectedModel.getValue(name).hasSameContent(model.getValue(name)));
+          }
+        }
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testIndependentAndDependentSteps() {
+    assertSameAsController("load test/test.ppm a\n"
+            + "flip vertical a b\n"
+            + "brightness 10 b c\n"
+            + "grayscale luma a d\n"
+            + "quality blur c e\n"
+            + "load test/test.png a\n"
+            + "flip horizontal a f\n"
+            + "filter matrix 1 0 0 0 0.5 0 0 0 1 f g\n"
+            + "save f nowhere/missing/folder/f ppm\n"
+            + "unknown\n"
+            + "brightness -5 d d\n");
+  }
+
+  @Test
+  public void testQuit() {
+    assertSameAsController("load test/test.ppm a flip vertical a b q flip vertical b c");
+  }
+
+  @Test
+  public void testRestRunInOrder() {
+    // a kernel with a value that is not a number cannot be split, so the rest is run in order
+    assertSameAsController("load test/test.ppm a grayscale red a b"
+            + " quality kernel 3 3 1 x load test/test.ppm c flip vertical c d");
+  }
+
+  @Test
+  public void testSaveAfterSaveThatExists() throws IOException {
+    File directory = Files.createTempDirectory("saves").toFile();
+    File taken = new File(directory, "taken.ppm");
+    File made = new File(directory, "made.ppm");
+    assertTrue(taken.createNewFile());
+    String script = "load test/test.ppm a save a " + directory + "/taken ppm"
+            + " save a " + directory + "/made ppm";
+    try {
+      StringBuilder expected = new StringBuilder();
+      new Controller(new ImageModelImpl(), new ImageViewImpl(expected),
+              new StringReader(script), "").run();
+      // the save that found a file there does not keep the next one from saying it was saved
+      assertTrue(expected.toString().endsWith(
+              "a was successfully saved to " + directory + "/made.ppm\n"));
+      assertTrue(made.delete());
+
+      StringBuilder messages = new StringBuilder();
+      new ParallelScriptController(new ImageModelImpl(), new ImageViewImpl(messages),
+              new StringReader(script)).run();
+      assertEquals(expected.toString(), messages.toString());
+    } finally {
+      made.delete();
+      taken.delete();
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void testFailedStep() {
+    StringBuilder messages = new StringBuilder();
+    ImageModelImpl model = new ImageModelImpl();
+    try {
+      new ParallelScriptController(model, new ImageViewImpl(messages), new StringReader(
+              "load test/test.ppm a flip vertical missing b brightness 5 b c"
+                      + " grayscale luma a d")).run();
+      fail("the exception of the failed step should have been thrown");
+    } catch (RuntimeException e) {
+      assertEquals("a was successfully loaded\n", messages.toString());
+      // the step after the failed one depends on it and was skipped, the last one was not
+      assertEquals(null, model.getValue("c"));
+      assertTrue(model.getValue("d") != null);
+    }
+  }
+
+  @Test
+  public void testLazy() {
+    String script = "load test/test.ppm a brightness 10 a b grayscale luma a c brightness 5 b d";
+    ImageModelImpl expected = new ImageModelImpl();
+    new Controller(expected, new ImageViewImpl(new StringBuilder()), new StringReader(script),
+            "").run();
+    ImageModelImpl model = new ImageModelImpl();
+    new ParallelScriptController(model, new ImageViewImpl(new StringBuilder()),
+            new StringReader(script), true).run();
+    // nothing was saved, so the edits are only planned
+    assertTrue(model.getValue("d") instanceof PlannedImage);
+    for (String name : new String[] {"b", "c", "d"}) {
+      assertTrue(expected.getValue(name).hasSameContent(model.getValue(name)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullModel() {
+    new ParallelScriptController(null, new ImageViewImpl(new StringBuilder()),
+            new StringReader(""));
+  }
+}
@@ -0,0 +1,106 @@
+package gui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import control.GuiControllerImpl;
+import control.GuiTaskRunner;
+import model.ImageImpl;
+import model.ImageModel;
+import model.ImageModelImpl;
+import model.commands.CommandCache;
+import model.commands.Quality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the GUI controller saves the result of an edit on the background thread and shows it
+ * only once the runner hands it over, turns away other edits while one runs, and drops the result
+ * of a cancelled edit.
+ */
+public class BackgroundGuiControllerTest {
+
+  /**
+   * This class is an executor that keeps its tasks until the test runs them.
+   */
+  private static final class QueuedExecutor implements Executor {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    // runs the tasks that are waiting, in order
+    void runAll() {
+      List<Runnable> waiting = new ArrayList<>(tasks);
+      tasks.clear();
+      for (Runnable task : waiting) {
+        task.run();
+      }
+    }
+  }
+
+  private final QueuedExecutor background = new QueuedExecutor();
+  private final QueuedExecutor publisher = new QueuedExecutor();
+  private final StringBuilder appendable = new StringBuilder();
+  private final ImageModel model = new ImageModelImpl();
+  private final ImageImpl image = ImageImpl.fromPacked(3, 3, 255,
+          new int[] {0, 0x102030, 0x405060, 0x708090, 0xA0B0C0, 0xD0E0F0, 1, 2, 3});
+
+  // makes a controller with one image loaded, whose edits wait for the test to run them
+  private GuiControllerImpl controller() {
+    model.saveName("1", image);
+    GuiControllerImpl controller = new GuiControllerImpl(model, new FakeView(appendable),
+            new CommandCache(), new GuiTaskRunner(background, publisher));
+    controller.incrementImageNum();
+    return controller;
+  }
+
+  @Test
+  public void testResultIsShownWhenDone() {
+    GuiControllerImpl controller = controller();
+    controller.actionPerformed(new MockActionEvent("blur"));
+    assertEquals("", appendable.toString());
+    assertNull(model.getValue("2"));
+
+    background.runAll();
+    // the result is saved in the background, but not shown until it is handed over
+    assertTrue(new Quality("blur").process(image).hasSameContent(model.getValue("2")));
+    assertEquals("", appendable.toString());
+    publisher.runAll();
+    assertEquals(" setImagePanel image was blurred", appendable.toString());
+  }
+
+  @Test
+  public void testOneEditAtATime() {
+    GuiControllerImpl controller = controller();
+    controller.actionPerformed(new MockActionEvent("blur"));
+    controller.actionPerformed(new MockActionEvent("sepia"));
+    assertEquals("wait for the current edit to finish or cancel it", appendable.toString());
+  }
+
+  @Test
+  public void testCancel() {
+    GuiControllerImpl controller = controller();
+    controller.actionPerformed(new MockActionEvent("blur"));
+    controller.actionPerformed(new MockActionEvent("cancel"));
+    background.runAll();
+    publisher.runAll();
+    assertEquals("the edit was cancelled", appendable.toString());
+
+    // the next edit still goes on the first image, under a number of its own, and the result of
+    // the cancelled edit is dropped
+    controller.actionPerformed(new MockActionEvent("sharpen"));
+    background.runAll();
+    publisher.runAll();
+    assertNull(model.getValue("2"));
+    assertTrue(new Quality("sharpen").process(image).hasSameContent(model.getValue("3")));
+  }
+}
@@ -5,7 +5,6 @@ import java.awt.event.ActionListener;
 import java.io.IOException;
 
 import model.IImage;
-import model.ImageImpl;
 import view.GuiView;
 
 /**
@@ -55,7 +54,7 @@ public class FakeView implements GuiView {
   }
 
   @Override
-  public void setHistogramPanel(ImageImpl image, String type) {
+  public void setHistogramPanel(IImage image, String type) {
     try {
       appendable.append(" setHistogramPanel ");
     } catch (IOException e) {
@@ -63,6 +62,16 @@ public class FakeView implements GuiView {
     }
   }
 
+  @Override
+  public void showProgress(String task) {
+    num++;
+  }
+
+  @Override
+  public void hideProgress() {
+    num++;
+  }
+
   @Override
   public String getSelectedGrayscale() {
     return null;
@@ -0,0 +1,116 @@
+package model;
+
+import org.junit.Test;
+
+import model.commands.BoxBlur;
+import model.commands.ParallelExecutor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the BoxBlur command.
+ */
+public class BoxBlurTests {
+
+  private final IImage image = TestImages.randomImage(29, 41, 13);
+
+  // blurs one channel the slow way, summing the whole window for every value
+  private static int[][] reference(int[][] values, int radius) {
+    int height = values.length;
+    int width = values[0].length;
+    int[][] rows = new int[height][width];
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int sum = 0;
+        int count = 0;
+        for (int c = Math.max(0, col - radius); c <= Math.min(width - 1, col + radius); c++) {
+          sum += values[row][c];
+          count++;
+        }
+        rows[row][col] = (sum + count / 2) / count;
+      }
+    }
+    int[][] result = new int[height][width];
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        int sum = 0;
+        int count = 0;
+        for (int r = Math.max(0, row - radius); r <= Math.min(height - 1, row + radius); r++) {
+          sum += rows[r][col];
+          count++;
+        }
+        result[row][col] = (sum + count / 2) / count;
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testMatchesSlowAverage() {
+    int[] radii = {0, 1, 4, 40};
+    for (int radius : radii) {
+      int[][] green = new int[image.getHeight()][image.getWidth()];
+      for (int row = 0; row < image.getHeight(); row++) {
+        for (int col = 0; col < image.getWidth(); col++) {
+          green[row][col] = image.getPixelAt(row, col).getG();
+        }
+      }
+      for (int pass = 0; pass < 2; pass++) {
+        green = reference(green, radius);
+      }
+
+      IImage blurred = new BoxBlur(radius, 2).process(image);
+      for (int row = 0; row < image.getHeight(); row++) {
+        for (int col = 0; col < image.getWidth(); col++) {
+          assertEquals(green[row][col], blurred.getPixelAt(row, col).getG());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFlatImageStaysFlat() {
+    int[] pixels = new int[6 * 5];
+    java.util.Arrays.fill(pixels, PackedPixels.pack(90, 120, 200));
+    IImage flat = ImageImpl.fromPacked(6, 5, 255, pixels);
+
+    IImage blurred = BoxBlur.gaussian(50).process(flat);
+
+    // the edges are averaged only with pixels inside of the image, so nothing darkens
+    assertEquals(PackedPixels.pack(90, 120, 200), blurred.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(90, 120, 200), blurred.getPackedAt(4, 5));
+  }
+
+  @Test
+  public void testGaussianPasses() {
+    assertArrayEquals(new int[] {0, 0, 0}, BoxBlur.gaussian(0).getRadii());
+    assertArrayEquals(new int[] {9, 9, 10}, BoxBlur.gaussian(30).getRadii());
+  }
+
+  @Test
+  public void testBandsMatchWholeImage() {
+    BoxBlur blur = BoxBlur.gaussian(6);
+    IImage whole = blur.process(image);
+    IImage banded;
+    try (ParallelExecutor executor = new ParallelExecutor(4, 1)) {
+      banded = executor.execute(blur, image);
+    }
+
+    for (int row = 0; row < image.getHeight(); row++) {
+      for (int col = 0; col < image.getWidth(); col++) {
+        assertEquals(whole.getPackedAt(row, col), banded.getPackedAt(row, col));
+      }
+    }
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testNegativeRadius() {
+    new BoxBlur(-1, 1);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testNoPasses() {
+    new BoxBlur(3, 0);
+  }
+}
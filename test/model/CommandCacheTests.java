@@ -0,0 +1,150 @@
+package model;
+
+import org.junit.Test;
+
+import model.commands.Brightness;
+import model.commands.CacheableCommand;
+import model.commands.ColorMatrix;
+import model.commands.CommandCache;
+import model.commands.Convolution;
+import model.commands.Flip;
+import model.commands.GrayScale;
+import model.commands.ImageProcessingCommands;
+import model.commands.ParallelExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for the CommandCache class and the descriptors of the commands it keeps.
+ */
+public class CommandCacheTests {
+
+  @Test
+  public void testHitsAndMisses() {
+    CommandCache cache = new CommandCache();
+    IImage image = TestImages.randomImage(8, 6, 1);
+    IImage first = cache.process(new GrayScale("luma"), image, null);
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertSame(first, cache.process(new GrayScale("luma"), image, null));
+    // an equal image that is a different object finds the same result
+    assertSame(first, cache.process(new GrayScale("luma"), TestImages.randomImage(8, 6, 1), null));
+    assertEquals(2, cache.getHits());
+
+    assertNotSame(first, cache.process(new GrayScale("value"), image, null));
+    assertNotSame(first,
+        cache.process(new GrayScale("luma"), TestImages.randomImage(8, 6, 2), null));
+    assertEquals(3, cache.getMisses());
+    assertEquals(3, cache.size());
+    assertEquals(3 * (4 * 48 + 64), cache.getBytes());
+  }
+
+  /**
+   * This class is an image whose content hash is always the same, as if it collided with every
+   * other image of its size.
+   */
+  private static final class CollidingImage extends ImageImpl {
+
+    CollidingImage(IImage image) {
+      super(image.getWidth(), image.getHeight(), image.getMaxValue(), pixelsOf(image));
+    }
+
+    // the pixels of an image by row and column
+    private static Pixel[][] pixelsOf(IImage image) {
+      Pixel[][] pixels = new Pixel[image.getHeight()][image.getWidth()];
+      for (int row = 0; row < image.getHeight(); row++) {
+        for (int col = 0; col < image.getWidth(); col++) {
+          pixels[row][col] = image.getPixelAt(row, col);
+        }
+      }
+      return pixels;
+    }
+
+    @Override
+    public long getContentHash() {
+      return 42;
+    }
+  }
+
+  @Test
+  public void testHashCollision() {
+    CommandCache cache = new CommandCache();
+    IImage first = new CollidingImage(TestImages.randomImage(6, 4, 1));
+    IImage second = new CollidingImage(TestImages.randomImage(6, 4, 2));
+    cache.process(new GrayScale("luma"), first, null);
+    // the hashes are the same but the pixels are not, so the result of the first is not used
+    IImage result = cache.process(new GrayScale("luma"), second, null);
+    assertEquals(true, new GrayScale("luma").process(second).hasSameContent(result));
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    // the equal image still finds its result
+    cache.process(new GrayScale("luma"), new CollidingImage(TestImages.randomImage(6, 4, 2)),
+            null);
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void testSameResultAsCommand() {
+    CommandCache cache = new CommandCache();
+    IImage image = TestImages.randomImage(20, 15, 3);
+    ImageProcessingCommands cmd = new Brightness(-40);
+    IImage expected = cmd.process(image);
+    try (ParallelExecutor executor = new ParallelExecutor(2, 4)) {
+      IImage cached = cache.process(cmd, image, executor);
+      assertEquals(true, expected.hasSameContent(cached));
+      assertSame(cached, cache.process(new Brightness(-40), image, null));
+    }
+  }
+
+  @Test
+  public void testBudget() {
+    IImage image = TestImages.randomImage(10, 10, 4);
+    // room for two results of 464 bytes
+    CommandCache cache = new CommandCache(1000);
+    IImage first = cache.process(new Brightness(1), image, null);
+    cache.process(new Brightness(2), image, null);
+    assertSame(first, cache.process(new Brightness(1), image, null));
+    cache.process(new Brightness(3), image, null);
+    // brightness 2 was the least recently used
+    assertEquals(2, cache.size());
+    assertSame(first, cache.process(new Brightness(1), image, null));
+    cache.process(new Brightness(2), image, null);
+    assertEquals(2, cache.getHits());
+    assertEquals(4, cache.getMisses());
+
+    CommandCache tiny = new CommandCache(100);
+    tiny.process(new Brightness(1), image, null);
+    assertEquals(0, tiny.size());
+  }
+
+  @Test
+  public void testUncachedCommands() {
+    CommandCache cache = new CommandCache();
+    IImage image = TestImages.randomImage(4, 4, 5);
+    try (ParallelExecutor executor = new ParallelExecutor(2, 1)) {
+      ImageProcessingCommands cmd = executor.parallel(new Flip("vertical"));
+      assertNotSame(cache.process(cmd, image, null), cache.process(cmd, image, null));
+    }
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.getMisses());
+  }
+
+  @Test
+  public void testDescriptors() {
+    assertEquals("brightness 10", new Brightness(10).getDescriptor());
+    assertEquals("grayscale luma", new GrayScale("luma").getDescriptor());
+    assertEquals("flip vertical", new Flip("vertical").getDescriptor());
+    CacheableCommand matrix = new ColorMatrix(new double[][] {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}});
+    // a matrix without offsets is the same as one with offsets of zero
+    assertEquals("matrix [[1.0, 0.0, 0.0, 0.0], [0.0, 1.0, 0.0, 0.0], [0.0, 0.0, 1.0, 0.0]]",
+            matrix.getDescriptor());
+    // a separable kernel is described by its halves, however it was given
+    Convolution halves = new Convolution(new double[] {1, 2, 1}, new double[] {1, 0, -1});
+    assertEquals("convolution [1.0, 2.0, 1.0] [1.0, 0.0, -1.0]", halves.getDescriptor());
+    assertNotEquals(new Convolution(new double[][] {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}})
+            .getDescriptor(), halves.getDescriptor());
+  }
+}
@@ -0,0 +1,128 @@
+package model;
+
+import org.junit.Test;
+
+import model.commands.Brightness;
+import model.commands.ChannelLookupTable;
+import model.commands.ColorTransformation;
+import model.commands.CommandPipeline;
+import model.commands.Flip;
+import model.commands.FusedPointOperation;
+import model.commands.GrayScale;
+import model.commands.ImageProcessingCommands;
+import model.commands.Quality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the CommandPipeline and the fusing of point operations.
+ */
+public class CommandPipelineTests {
+
+  private final IImage image = TestImages.randomImage(19, 11, 11);
+
+  // runs the commands one after the other the way the controller does
+  private static IImage runEach(IImage image, ImageProcessingCommands... commands) {
+    IImage current = image;
+    for (ImageProcessingCommands cmd : commands) {
+      current = cmd.process(current);
+    }
+    return current;
+  }
+
+  @Test
+  public void testPointOperationsAreFused() {
+    CommandPipeline pipeline = new CommandPipeline.Builder()
+            .then(new Brightness(10))
+            .then(new GrayScale("luma"))
+            .then(new ColorTransformation("sepia"))
+            .build();
+
+    assertEquals(1, pipeline.getStages().size());
+    assertTrue(pipeline.getStages().get(0) instanceof FusedPointOperation);
+    assertEquals(3, ((FusedPointOperation) pipeline.getStages().get(0)).size());
+  }
+
+  @Test
+  public void testFusedMatchesSeparatePasses() {
+    ImageProcessingCommands[] commands = {new Brightness(40), new GrayScale("intensity"),
+        new Brightness(-15), new ColorTransformation("sepia"), new GrayScale("value"),
+        new ColorTransformation("luma"), new Brightness(200)};
+    CommandPipeline.Builder builder = new CommandPipeline.Builder();
+    for (ImageProcessingCommands cmd : commands) {
+      builder.then(cmd);
+    }
+
+    TestImages.assertSamePixels(runEach(image, commands), builder.build().process(image));
+  }
+
+  @Test
+  public void testOtherCommandsSplitRuns() {
+    ImageProcessingCommands[] commands = {new Brightness(5), new GrayScale("red"),
+        new Quality("blur"), new Brightness(-5), new Flip("horizontal"),
+        new ColorTransformation("sepia")};
+    CommandPipeline.Builder builder = new CommandPipeline.Builder();
+    for (ImageProcessingCommands cmd : commands) {
+      builder.then(cmd);
+    }
+    CommandPipeline pipeline = builder.build();
+
+    assertEquals(5, pipeline.getStages().size());
+    TestImages.assertSamePixels(runEach(image, commands), pipeline.process(image));
+  }
+
+  @Test
+  public void testEmptyPipeline() {
+    TestImages.assertSamePixels(image, new CommandPipeline.Builder().build().process(image));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testNullCommand() {
+    new CommandPipeline.Builder().then(null);
+  }
+
+  @Test
+  public void testLookupTablesAreComposed() {
+    ImageProcessingCommands[] commands = {new Brightness(20), new GrayScale("green"),
+        new Brightness(-20), new Brightness(35)};
+    CommandPipeline.Builder builder = new CommandPipeline.Builder();
+    for (ImageProcessingCommands cmd : commands) {
+      builder.then(cmd);
+    }
+    CommandPipeline pipeline = builder.build();
+
+    // the whole chain becomes one table lookup per channel
+    assertEquals(1, pipeline.getStages().size());
+    assertTrue(pipeline.getStages().get(0) instanceof ChannelLookupTable);
+    TestImages.assertSamePixels(runEach(image, commands), pipeline.process(image));
+  }
+
+  @Test
+  public void testLookupTableKeepsClamping() {
+    ChannelLookupTable table = new Brightness(100).toLookupTable()
+            .andThen(new Brightness(-100).toLookupTable());
+
+    // 200 is clamped to 255 before it is darkened again
+    assertEquals(PackedPixels.pack(155, 100, 0),
+            table.applyTo(PackedPixels.pack(200, 100, 0)));
+  }
+
+  @Test
+  public void testMixedChannelGrayScaleHasNoTable() {
+    assertEquals(null, new GrayScale("luma").toLookupTable());
+    assertTrue(new GrayScale("blue").toLookupTable() != null);
+  }
+
+  @Test
+  public void testIdentityLookupTable() {
+    TestImages.assertSamePixels(image, ChannelLookupTable.identity().process(image));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testLookupTableEntryOutOfRange() {
+    int[] table = new int[256];
+    table[3] = 256;
+    new ChannelLookupTable(new int[] {0, 1, 2}, new int[][] {table, table, table});
+  }
+}
@@ -0,0 +1,106 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ConcurrentImageModel class methods.
+ */
+public class ConcurrentImageModelTests {
+
+  private final IImage first = ImageImpl.fromPacked(1, 1, 255, new int[] {1});
+  private final IImage second = ImageImpl.fromPacked(1, 1, 255, new int[] {2});
+
+  @Test
+  public void testSaveAndGet() {
+    ConcurrentImageModel model = new ConcurrentImageModel();
+    assertNull(model.getValue("image"));
+    model.saveName("image", first);
+    assertSame(first, model.getValue("image"));
+    model.saveName("image", second);
+    assertSame(second, model.getValue("image"));
+    model.saveName("image", null);
+    assertNull(model.getValue("image"));
+  }
+
+  @Test
+  public void testReplace() {
+    ConcurrentImageModel model = new ConcurrentImageModel();
+    assertFalse(model.replace("image", null, first));
+    model.saveName("image", first);
+    assertFalse(model.replace("image", second, second));
+    assertSame(first, model.getValue("image"));
+    assertTrue(model.replace("image", first, second));
+    assertSame(second, model.getValue("image"));
+  }
+
+  @Test
+  public void testComputeOnce() throws Exception {
+    ConcurrentImageModel model = new ConcurrentImageModel();
+    AtomicInteger computed = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<IImage>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        results.add(pool.submit(() -> {
+          start.await();
+          return model.computeIfAbsent("derived", name -> {
+            computed.incrementAndGet();
+            try {
+              Thread.sleep(50);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            return first;
+          });
+        }));
+      }
+      start.countDown();
+      for (Future<IImage> result : results) {
+        assertSame(first, result.get());
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(1, computed.get());
+    assertSame(first, model.getValue("derived"));
+    assertSame(first, model.computeIfAbsent("derived", name -> second));
+  }
+
+  @Test
+  public void testComputeFailure() {
+    ConcurrentImageModel model = new ConcurrentImageModel();
+    try {
+      model.computeIfAbsent("image", name -> {
+        throw new IllegalStateException("no image");
+      });
+      fail("the exception should have been thrown");
+    } catch (IllegalStateException e) {
+      assertEquals("no image", e.getMessage());
+    }
+    assertNull(model.getValue("image"));
+    assertNull(model.computeIfAbsent("image", name -> null));
+    assertNull(model.getValue("image"));
+    assertSame(second, model.computeIfAbsent("image", name -> second));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullFunction() {
+    new ConcurrentImageModel().computeIfAbsent("image", null);
+  }
+}
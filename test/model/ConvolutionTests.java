@@ -0,0 +1,129 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import model.commands.Convolution;
+import model.commands.Quality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the Convolution command and its separable and direct paths.
+ */
+public class ConvolutionTests {
+
+  private final IImage image = TestImages.randomImage(23, 17, 3);
+
+  private static final double[] BINOMIAL = {0.0625, 0.25, 0.375, 0.25, 0.0625};
+
+  // convolves one pixel the slow way, skipping taps outside of the image
+  private static int reference(IImage image, double[][] kernel, int row, int col) {
+    double[] sums = new double[3];
+    int halfHeight = kernel.length / 2;
+    int halfWidth = kernel[0].length / 2;
+    for (int kRow = -halfHeight; kRow <= halfHeight; kRow++) {
+      for (int kCol = -halfWidth; kCol <= halfWidth; kCol++) {
+        int r = row + kRow;
+        int c = col + kCol;
+        if (r >= 0 && c >= 0 && r < image.getHeight() && c < image.getWidth()) {
+          Pixel p = image.getPixelAt(r, c);
+          double weight = kernel[kRow + halfHeight][kCol + halfWidth];
+          sums[0] += p.getR() * weight;
+          sums[1] += p.getG() * weight;
+          sums[2] += p.getB() * weight;
+        }
+      }
+    }
+    return PackedPixels.pack((int) Math.round(sums[0]), (int) Math.round(sums[1]),
+            (int) Math.round(sums[2]));
+  }
+
+  // checks every pixel of a convolved image against the slow way
+  private void assertMatchesReference(double[][] kernel, IImage result) {
+    for (int row = 0; row < image.getHeight(); row++) {
+      for (int col = 0; col < image.getWidth(); col++) {
+        assertEquals(reference(image, kernel, row, col), result.getPackedAt(row, col));
+      }
+    }
+  }
+
+  @Test
+  public void testBlurIsSeparable() {
+    Convolution blur = new Convolution(new double[][]{
+            {0.0625, 0.125, 0.0625},
+            {0.125, 0.25, 0.125},
+            {0.0625, 0.125, 0.0625}});
+
+    assertTrue(blur.isSeparable());
+  }
+
+  @Test
+  public void testSharpenIsNotSeparable() {
+    Convolution sharpen = new Convolution(new double[][]{
+            {-0.125, -0.125, -0.125, -0.125, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, 0.25, 1, 0.25, -0.125},
+            {-0.125, 0.25, 0.25, 0.25, -0.125},
+            {-0.125, -0.125, -0.125, -0.125, -0.125}});
+
+    assertFalse(sharpen.isSeparable());
+  }
+
+  @Test
+  public void testSeparableMatchesReference() {
+    Convolution convolution = new Convolution(BINOMIAL, BINOMIAL);
+
+    assertTrue(convolution.isSeparable());
+    assertMatchesReference(convolution.getKernel(), convolution.process(image));
+  }
+
+  @Test
+  public void testDirectMatchesReference() {
+    double[][] kernel = new double[7][3];
+    Random random = new Random(5);
+    for (int row = 0; row < kernel.length; row++) {
+      for (int col = 0; col < kernel[0].length; col++) {
+        kernel[row][col] = random.nextInt(9) / 16.0 - 0.25;
+      }
+    }
+    Convolution convolution = new Convolution(kernel);
+
+    assertFalse(convolution.isSeparable());
+    assertMatchesReference(kernel, convolution.process(image));
+  }
+
+  @Test
+  public void testKernelWiderThanImage() {
+    double[] wide = new double[31];
+    wide[15] = 0.5;
+    wide[0] = 0.25;
+    wide[30] = 0.25;
+    Convolution convolution = new Convolution(new double[] {1}, wide);
+
+    assertMatchesReference(convolution.getKernel(), convolution.process(image));
+  }
+
+  @Test
+  public void testQualityUsesConvolution() {
+    double[][] blur = {
+        {0.0625, 0.125, 0.0625},
+        {0.125, 0.25, 0.125},
+        {0.0625, 0.125, 0.0625}};
+
+    assertMatchesReference(blur, new Quality("blur").process(image));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testEvenKernel() {
+    new Convolution(new double[2][3]);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testRaggedKernel() {
+    new Convolution(new double[][] {{1, 2, 3}, {1}, {1, 2, 3}});
+  }
+}
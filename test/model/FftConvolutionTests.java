@@ -0,0 +1,106 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import model.commands.Convolution;
+import model.commands.FftConvolution;
+import model.commands.ParallelExecutor;
+import model.commands.RowBandCommand;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the FftConvolution command, which must match Convolution up to rounding.
+ */
+public class FftConvolutionTests {
+
+  private final Random random = new Random(11);
+
+  // makes a kernel of random weights that add up to about one
+  private double[][] randomKernel(int rows, int cols) {
+    double[][] kernel = new double[rows][cols];
+    for (int row = 0; row < rows; row++) {
+      for (int col = 0; col < cols; col++) {
+        kernel[row][col] = (random.nextDouble() * 2 - 0.5) / (rows * cols);
+      }
+    }
+    return kernel;
+  }
+
+  // checks that every channel of two images differs by at most one
+  private static void assertClose(IImage expected, IImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int col = 0; col < expected.getWidth(); col++) {
+        int a = expected.getPackedAt(row, col);
+        int b = actual.getPackedAt(row, col);
+        assertTrue(Math.abs(PackedPixels.red(a) - PackedPixels.red(b)) <= 1);
+        assertTrue(Math.abs(PackedPixels.green(a) - PackedPixels.green(b)) <= 1);
+        assertTrue(Math.abs(PackedPixels.blue(a) - PackedPixels.blue(b)) <= 1);
+      }
+    }
+  }
+
+  @Test
+  public void testMatchesDirect() {
+    IImage image = TestImages.randomImage(150, 90, random);
+    int[][] sizes = {{1, 1}, {3, 3}, {7, 5}, {5, 21}, {31, 31}};
+    for (int[] size : sizes) {
+      double[][] kernel = randomKernel(size[0], size[1]);
+      assertClose(new Convolution(kernel).process(image),
+              new FftConvolution(kernel).process(image));
+    }
+  }
+
+  @Test
+  public void testKernelBiggerThanImage() {
+    IImage image = TestImages.randomImage(6, 4, random);
+    double[][] kernel = randomKernel(15, 13);
+    assertClose(new Convolution(kernel).process(image),
+            new FftConvolution(kernel).process(image));
+  }
+
+  @Test
+  public void testBandsMatchWholeImage() {
+    IImage image = TestImages.randomImage(40, 70, random);
+    FftConvolution convolution = new FftConvolution(randomKernel(9, 9));
+    IImage whole = convolution.process(image);
+    try (ParallelExecutor executor = new ParallelExecutor(4, 1)) {
+      assertClose(whole, executor.execute(convolution, image));
+    }
+  }
+
+  @Test
+  public void testCrossover() {
+    // the Quality kernels stay on the direct path, which gives the exact same images
+    assertFalse(FftConvolution.forKernel(randomKernel(3, 3)) instanceof FftConvolution);
+    assertFalse(FftConvolution.forKernel(randomKernel(5, 5)) instanceof FftConvolution);
+    RowBandCommand large = FftConvolution.forKernel(randomKernel(41, 41));
+    assertTrue(large instanceof FftConvolution);
+
+    // a separable kernel is cheap to run directly even when it is large
+    double[] row = new double[21];
+    Arrays.fill(row, 1.0 / 21);
+    double[][] box = new double[21][];
+    for (int i = 0; i < box.length; i++) {
+      box[i] = row.clone();
+    }
+    assertFalse(FftConvolution.forKernel(box) instanceof FftConvolution);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testEvenKernel() {
+    new FftConvolution(new double[4][3]);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testNullKernel() {
+    FftConvolution.forKernel(null);
+  }
+}
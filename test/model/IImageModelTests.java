@@ -1,10 +1,19 @@
 package model;
 
 import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
 import control.PPMUtil;
+import model.commands.Flip;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for the ImageModel class methods.
@@ -46,4 +55,120 @@ public class IImageModelTests {
     assertEquals(koala, model.getValue("koalaImage"));
   }
 
+  @Test
+  public void testSpillAndReload() throws IOException {
+    File directory = Files.createTempDirectory("spill").toFile();
+    // room for two of the 10 by 10 images, which count as 464 bytes each
+    ImageModelImpl store = new ImageModelImpl(1000, directory);
+    IImage[] images = new IImage[5];
+    for (int i = 0; i < images.length; i++) {
+      images[i] = TestImages.randomImage(10, 10, i);
+      store.saveName("image" + i, images[i]);
+    }
+    assertEquals(3, store.getSpills());
+    assertEquals(3, directory.listFiles().length);
+    assertTrue(store.getResidentBytes() <= 1000);
+    assertEquals(3 * (12 + 300), store.getSpilledBytes());
+
+    assertSame(images[4], store.getValue("image4"));
+    assertEquals(1, store.getHits());
+    TestImages.assertSamePixels(images[0], store.getValue("image0"));
+    assertEquals(1, store.getReloads());
+    // image 3 was spilled when image 0 came back, image 0 keeps its file
+    assertEquals(4, store.getSpills());
+    for (int i = 0; i < images.length; i++) {
+      TestImages.assertSamePixels(images[i], store.getValue("image" + i));
+    }
+    assertEquals(5, store.getSpills());
+    // every image has a file now, so going around again writes nothing
+    for (int i = 0; i < images.length; i++) {
+      TestImages.assertSamePixels(images[i], store.getValue("image" + i));
+    }
+    assertEquals(5, store.getSpills());
+    assertNull(store.getValue("missing"));
+
+    // saving over a spilled image deletes its file
+    store.saveName("image1", images[2]);
+    TestImages.assertSamePixels(images[2], store.getValue("image1"));
+    assertEquals(4, directory.listFiles().length);
+  }
+
+  @Test
+  public void testLargeImageStaysInMemory() {
+    ImageModelImpl store = new ImageModelImpl(0, null);
+    IImage first = TestImages.randomImage(4, 3, 1);
+    IImage second = TestImages.randomImage(3, 4, 2);
+    store.saveName("first", first);
+    assertSame(first, store.getValue("first"));
+    store.saveName("second", second);
+    assertSame(second, store.getValue("second"));
+    TestImages.assertSamePixels(first, store.getValue("first"));
+    assertEquals(2, store.getSpills());
+    assertEquals(1, store.getReloads());
+  }
+
+  @Test
+  public void testSharedContent() {
+    ImageModelImpl store = new ImageModelImpl();
+    IImage original = TestImages.randomImage(6, 5, 1);
+    IImage copy = TestImages.randomImage(6, 5, 1);
+    IImage other = TestImages.randomImage(6, 5, 2);
+    store.saveName("original", original);
+    store.saveName("copy", copy);
+    store.saveName("other", other);
+    assertEquals(1, store.getShared());
+    assertEquals(2, store.getDistinctImages());
+    assertEquals(2 * (4 * 30 + 64), store.getResidentBytes());
+    assertSame(original, store.getValue("copy"));
+
+    // the pixels stay while any name still refers to them
+    store.saveName("original", other);
+    assertEquals(2, store.getDistinctImages());
+    assertSame(original, store.getValue("copy"));
+    store.saveName("copy", null);
+    assertNull(store.getValue("copy"));
+    assertEquals(1, store.getDistinctImages());
+    assertEquals(4 * 30 + 64, store.getResidentBytes());
+    assertSame(other, store.getValue("original"));
+  }
+
+  @Test
+  public void testViewIsSpilled() throws IOException {
+    File directory = Files.createTempDirectory("spill").toFile();
+    ImageModelImpl store = new ImageModelImpl(500, directory);
+    IImage large = TestImages.randomImage(20, 20, 1);
+    store.saveName("large", large);
+    store.saveName("large", TransformedImage.flip(large, true, false));
+    // the view keeps the large image in memory, so it is counted at its size
+    assertEquals(4 * 20 * 20 + 64, store.getResidentBytes());
+
+    store.saveName("small", TestImages.randomImage(5, 5, 2));
+    // the view is written out with only its own pixels and is let go with the large image
+    assertEquals(4 * 5 * 5 + 64, store.getResidentBytes());
+    assertEquals(1, store.getSpills());
+    IImage flipped = store.getValue("large");
+    assertTrue(flipped instanceof ImageImpl);
+    TestImages.assertSamePixels(new Flip("horizontal").process(large), flipped);
+  }
+
+  @Test
+  public void testSharedContentOnDisk() throws IOException {
+    File directory = Files.createTempDirectory("spill").toFile();
+    ImageModelImpl store = new ImageModelImpl(0, directory);
+    store.saveName("first", TestImages.randomImage(10, 10, 1));
+    store.saveName("second", TestImages.randomImage(10, 10, 2));
+    assertEquals(1, store.getSpills());
+    // the first image is on disk, so it is read back to compare its pixels
+    store.saveName("again", TestImages.randomImage(10, 10, 1));
+    assertEquals(1, store.getShared());
+    assertEquals(1, store.getReloads());
+    assertEquals(2, store.getDistinctImages());
+    TestImages.assertSamePixels(TestImages.randomImage(10, 10, 1), store.getValue("again"));
+    assertSame(store.getValue("first"), store.getValue("again"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeBudget() {
+    new ImageModelImpl(-1, null);
+  }
 }
@@ -2,6 +2,10 @@ package model;
 
 import org.junit.Test;
 
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import control.PPMUtil;
 import model.commands.Brightness;
 import model.commands.ColorTransformation;
@@ -10,7 +14,12 @@ import model.commands.GrayScale;
 import model.commands.ImageProcessingCommands;
 import model.commands.Quality;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for the Image class constructors and command function objects.
@@ -615,4 +624,167 @@ public class IImageTests {
          + "11\n"
          + "12\n", appendable.toString());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testGetPackedAt() {
+    assertEquals(PackedPixels.pack(1, 2, 3), image.getPackedAt(0, 0));
+    assertEquals(PackedPixels.pack(10, 11, 12), image.getPackedAt(1, 1));
+    assertEquals(10, PackedPixels.red(image.getPackedAt(1, 1)));
+    assertEquals(11, PackedPixels.green(image.getPackedAt(1, 1)));
+    assertEquals(12, PackedPixels.blue(image.getPackedAt(1, 1)));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testGetPackedAtOutOfBounds() {
+    image.getPackedAt(0, 2);
+  }
+
+  @Test
+  public void testGetPackedRow() {
+    int[] row = new int[3];
+
+    image.getPackedRow(1, row, 1);
+
+    assertEquals(0, row[0]);
+    assertEquals(PackedPixels.pack(7, 8, 9), row[1]);
+    assertEquals(PackedPixels.pack(10, 11, 12), row[2]);
+  }
+
+  @Test
+  public void testPackedConstructor() {
+    IImage packed = ImageImpl.fromPacked(2, 1, 255,
+            new int[] {PackedPixels.pack(300, -5, 7), PackedPixels.pack(1, 2, 3)});
+
+    // values are clamped the same way the PixelImpl constructor clamps them
+    assertEquals(255, packed.getPixelAt(0, 0).getR());
+    assertEquals(0, packed.getPixelAt(0, 0).getG());
+    assertEquals(7, packed.getPixelAt(0, 0).getB());
+    assertEquals(2, packed.getPixelAt(0, 1).getG());
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testPackedConstructorWrongLength() {
+    ImageImpl.fromPacked(2, 2, 255, new int[3]);
+  }
+
+  @Test
+  public void testGetChannelRow() {
+    int[] channels = new int[6];
+
+    image.getChannelRow(1, channels, 0);
+
+    assertEquals(7, channels[0]);
+    assertEquals(8, channels[1]);
+    assertEquals(9, channels[2]);
+    assertEquals(10, channels[3]);
+    assertEquals(11, channels[4]);
+    assertEquals(12, channels[5]);
+  }
+
+  @Test
+  public void testGetChannelRegion() {
+    int[] channels = new int[7];
+
+    image.getChannelRegion(0, 1, 1, 2, channels, 1);
+
+    assertEquals(0, channels[0]);
+    assertEquals(4, channels[1]);
+    assertEquals(5, channels[2]);
+    assertEquals(6, channels[3]);
+    assertEquals(10, channels[4]);
+    assertEquals(11, channels[5]);
+    assertEquals(12, channels[6]);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testGetChannelRegionOutOfBounds() {
+    image.getChannelRegion(1, 1, 2, 1, new int[6], 0);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testGetChannelRowBufferTooSmall() {
+    image.getChannelRow(0, new int[5], 0);
+  }
+
+  @Test
+  public void testHistogramValues() {
+    Map<Integer, Integer> red = image.getHistogramValues("red");
+    assertEquals(256, red.size());
+    assertEquals(1, (int) red.get(1));
+    assertEquals(1, (int) red.get(10));
+    assertEquals(0, (int) red.get(2));
+
+    // (10 + 11 + 12) / 3 is 11
+    assertEquals(1, (int) image.getHistogramValues("intensity").get(11));
+    // a type that is not a histogram counts nothing
+    assertEquals(0, (int) image.getHistogramValues("purple").get(0));
+  }
+
+  @Test
+  public void testHistogramMatchesCounting() {
+    Random random = new Random(17);
+    int[] pixels = new int[300 * 200];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    IImage big = ImageImpl.fromPacked(300, 200, 255, pixels);
+
+    int[][] expected = new int[4][256];
+    for (int pixel : pixels) {
+      int r = PackedPixels.red(pixel);
+      int g = PackedPixels.green(pixel);
+      int b = PackedPixels.blue(pixel);
+      expected[0][r]++;
+      expected[1][g]++;
+      expected[2][b]++;
+      expected[3][(r + g + b) / 3]++;
+    }
+
+    Histogram sequential = Histogram.of(big);
+    ForkJoinPool pool = new ForkJoinPool(3);
+    Histogram parallel;
+    try {
+      parallel = Histogram.of(big, pool);
+    } finally {
+      pool.shutdown();
+    }
+    String[] types = {"red", "green", "blue", "intensity"};
+    for (int type = 0; type < types.length; type++) {
+      assertArrayEquals(expected[type], sequential.getCounts(types[type]));
+      assertArrayEquals(expected[type], parallel.getCounts(types[type]));
+    }
+  }
+
+  @Test
+  public void testHistogramIsCached() {
+    assertSame(image.getHistogram(), image.getHistogram());
+    assertEquals(1, image.getHistogram().getMaxCount("green"));
+
+    // changing the copy of the counts does not change the histogram
+    image.getHistogram().getCounts("green")[2] = 100;
+    assertEquals(1, image.getHistogram().getCounts("green")[2]);
+  }
+
+  @Test
+  public void testContentHash() {
+    int[] pixels = new int[12];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = i * 0x010203;
+    }
+    IImage image = ImageImpl.fromPacked(4, 3, 255, pixels.clone());
+    IImage same = ImageImpl.fromPacked(4, 3, 255, pixels.clone());
+    IImage turned = ImageImpl.fromPacked(3, 4, 255, pixels.clone());
+    IImage deeper = ImageImpl.fromPacked(4, 3, 65535, pixels.clone());
+    pixels[11] ^= 1;
+    IImage changed = ImageImpl.fromPacked(4, 3, 255, pixels);
+
+    assertEquals(image.getContentHash(), same.getContentHash());
+    assertTrue(image.hasSameContent(same));
+    assertTrue(image.hasSameContent(image));
+    assertNotEquals(image.getContentHash(), changed.getContentHash());
+    assertFalse(image.hasSameContent(changed));
+    assertFalse(image.hasSameContent(turned));
+    assertFalse(image.hasSameContent(deeper));
+    assertFalse(image.hasSameContent(null));
+  }
+}
@@ -0,0 +1,147 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.commands.Brightness;
+import model.commands.ColorMatrix;
+import model.commands.GrayScale;
+import model.commands.PackedKernels;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for PackedKernels, whose loops must give exactly the same pixels as the scalar code
+ * of each command.
+ */
+public class PackedKernelsTests {
+
+  // the values at and next to both ends and the middle of a channel
+  private static final int[] EDGES = {0, 1, 2, 127, 128, 129, 253, 254, 255};
+
+  // random pixels from a fixed seed, every pixel made of edge values, and for each row of the
+  // given matrices the pixels whose new value lands next to 255, where it starts to be clamped
+  private static int[] samplePixels(ColorMatrix... matrices) {
+    List<Integer> pixels = new ArrayList<>();
+    Random random = new Random(24);
+    for (int i = 0; i < 1 << 16; i++) {
+      pixels.add(random.nextInt(1 << 24));
+    }
+    for (int r : EDGES) {
+      for (int g : EDGES) {
+        for (int b : EDGES) {
+          pixels.add(PackedPixels.pack(r, g, b));
+        }
+      }
+    }
+    for (ColorMatrix matrix : matrices) {
+      for (double[] row : matrix.getMatrix()) {
+        double offset = row.length > 3 ? row[3] : 0;
+        for (int r = 0; r < 256; r += 3) {
+          for (int g = 0; g < 256; g += 3) {
+            int b = (int) ((255 - offset - row[0] * r - row[1] * g) / row[2]);
+            for (int near = b - 2; near <= b + 2; near++) {
+              if (near >= 0 && near < 256) {
+                pixels.add(PackedPixels.pack(r, g, near));
+              }
+            }
+          }
+        }
+      }
+    }
+    return pixels.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  @Test
+  public void testAddSaturating() {
+    Random random = new Random(5);
+    int[] pixels = new int[4096];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    // the corners of every channel, where a carry or a borrow could leak into the next channel
+    pixels[0] = 0x000000;
+    pixels[1] = 0xFFFFFF;
+    pixels[2] = 0xFF00FF;
+    pixels[3] = 0x00FF00;
+    pixels[4] = 0x010101;
+    pixels[5] = 0xFEFEFE;
+
+    for (int increment = -300; increment <= 300; increment++) {
+      Brightness brightness = new Brightness(increment);
+      int[] result = pixels.clone();
+      PackedKernels.addSaturating(result, 0, result.length, increment);
+      for (int i = 0; i < pixels.length; i++) {
+        assertEquals(brightness.applyTo(pixels[i]), result[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testGrayScales() {
+    int[] pixels = samplePixels();
+    int[] max = pixels.clone();
+    int[] average = pixels.clone();
+    PackedKernels.channelMax(max, 0, max.length);
+    PackedKernels.channelAverage(average, 0, average.length);
+
+    GrayScale value = new GrayScale("value");
+    GrayScale intensity = new GrayScale("intensity");
+    for (int i = 0; i < pixels.length; i++) {
+      assertEquals(value.applyTo(pixels[i]), max[i]);
+      assertEquals(intensity.applyTo(pixels[i]), average[i]);
+    }
+  }
+
+  @Test
+  public void testSepiaAndLuma() {
+    ColorMatrix[] matrices = {ColorMatrix.SEPIA, ColorMatrix.LUMA};
+    for (ColorMatrix matrix : matrices) {
+      int[] pixels = samplePixels(matrix);
+      IImage image = ImageImpl.fromPacked(pixels.length, 1, 255, pixels.clone());
+      IImage result = matrix.process(image);
+      for (int i = 0; i < pixels.length; i++) {
+        assertEquals(matrix.applyTo(pixels[i]), result.getPackedAt(0, i));
+      }
+    }
+  }
+
+  @Test
+  public void testNegativeAndOffsetMatrix() {
+    ColorMatrix matrix = new ColorMatrix(new double[][] {
+            {1.2, -0.25, 0.1, 10},
+            {-0.5, 0.9, 0.3, -20},
+            {0.0, 0.0, -1.0, 255}});
+    Random random = new Random(9);
+    int[] pixels = new int[4096];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    IImage result = matrix.process(ImageImpl.fromPacked(64, 64, 255, pixels.clone()));
+    for (int i = 0; i < pixels.length; i++) {
+      assertEquals(matrix.applyTo(pixels[i]), result.getPackedAt(i / 64, i % 64));
+    }
+  }
+
+  @Test
+  public void testFixedPoint() {
+    double[] coefficients = {0.393, 0.769, 0.189, 0.2126, 0.7152, 0.0722, -0.25, 3.0};
+    int shift = PackedKernels.fixedPointShift(coefficients);
+    assertTrue(shift > 0);
+    for (double coefficient : coefficients) {
+      int multiplier = PackedKernels.fixedPoint(coefficient, shift);
+      for (int value = 0; value < 256; value++) {
+        assertEquals((int) (Math.abs(coefficient) * value), (value * multiplier) >> shift);
+      }
+    }
+    // too large to fit in fixed point
+    assertEquals(-1, PackedKernels.fixedPoint(1e9, 0));
+    // 0.35 times 160 is exactly 56 but 0.35 times 180 comes out just below 63,
+    // which no multiply and shift can copy, so this matrix keeps its tables
+    assertEquals(-1, PackedKernels.fixedPointShift(new double[] {0.35}));
+  }
+}
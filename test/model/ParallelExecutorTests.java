@@ -0,0 +1,76 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import model.commands.Brightness;
+import model.commands.ColorTransformation;
+import model.commands.Flip;
+import model.commands.GrayScale;
+import model.commands.ImageProcessingCommands;
+import model.commands.ParallelExecutor;
+import model.commands.Quality;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the ParallelExecutor, which must give the same images as the sequential path.
+ */
+public class ParallelExecutorTests {
+
+  private final IImage image = TestImages.randomImage(37, 53, 7);
+
+  @Test
+  public void testParallelMatchesSequential() {
+    ImageProcessingCommands[] commands = {new Brightness(30), new Brightness(-70),
+        new GrayScale("luma"), new GrayScale("value"), new Flip("horizontal"),
+        new Flip("vertical"), new ColorTransformation("sepia"), new Quality("blur"),
+        new Quality("sharpen")};
+
+    try (ParallelExecutor executor = new ParallelExecutor(4, 1)) {
+      for (ImageProcessingCommands cmd : commands) {
+        TestImages.assertSamePixels(cmd.process(image), executor.execute(cmd, image));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelWrappedCommand() {
+    try (ParallelExecutor executor = new ParallelExecutor(3, 5)) {
+      ImageProcessingCommands cmd = executor.parallel(new Quality("sharpen"));
+      TestImages.assertSamePixels(new Quality("sharpen").process(image), cmd.process(image));
+    }
+  }
+
+  @Test
+  public void testSmallImageRunsSequentially() {
+    IImage small = TestImages.randomImage(2, 2, 7);
+    try (ParallelExecutor executor = new ParallelExecutor(2, 64)) {
+      TestImages.assertSamePixels(new Quality("blur").process(small),
+              executor.execute(new Quality("blur"), small));
+    }
+  }
+
+  @Test
+  public void testDefaultExecutor() {
+    ParallelExecutor executor = new ParallelExecutor();
+    assertEquals(ForkJoinPool.getCommonPoolParallelism(), executor.getParallelism());
+    TestImages.assertSamePixels(new Quality("blur").process(image),
+            executor.execute(new Quality("blur"), image));
+    // the common pool is not this executor's, so closing it leaves the pool running
+    executor.close();
+    TestImages.assertSamePixels(new Quality("blur").process(image),
+            executor.execute(new Quality("blur"), image));
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testInvalidParallelism() {
+    new ParallelExecutor(0, 64);
+  }
+
+  @Test (expected = IllegalArgumentException.class)
+  public void testInvalidBandHeight() {
+    new ParallelExecutor(2, 0);
+  }
+}
@@ -0,0 +1,131 @@
+package model;
+
+import org.junit.Test;
+
+import model.commands.Brightness;
+import model.commands.ChannelLookupTable;
+import model.commands.ColorTransformation;
+import model.commands.Flip;
+import model.commands.FusedPointOperation;
+import model.commands.GrayScale;
+import model.commands.ImageProcessingCommands;
+import model.plan.PlanOptimizer;
+import model.plan.PlannedImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PlanOptimizer class.
+ */
+public class PlanOptimizerTests {
+
+  // plans the commands one after another, the way a lazy Controller does
+  private static IImage planAll(IImage image, ImageProcessingCommands... commands) {
+    IImage current = image;
+    for (ImageProcessingCommands command : commands) {
+      current = PlanOptimizer.plan(command, current, null, null);
+    }
+    return current;
+  }
+
+  // runs the commands one after another right away
+  private static IImage runAll(IImage image, ImageProcessingCommands... commands) {
+    IImage current = image;
+    for (ImageProcessingCommands command : commands) {
+      current = command.process(current);
+    }
+    return current;
+  }
+
+  // checks that the planned chain gives the same pixels as running every command, and gives
+  // back the same chain planned again, which is not made yet
+  private static IImage checkSame(IImage image, ImageProcessingCommands... commands) {
+    assertTrue(runAll(image, commands).hasSameContent(planAll(image, commands)));
+    return planAll(image, commands);
+  }
+
+  @Test
+  public void testRotation() {
+    IImage image = TestImages.nearLimitsImage(3, 2, 3);
+    IImage rotated = new Flip("both").process(image);
+    for (int row = 0; row < 2; row++) {
+      for (int col = 0; col < 3; col++) {
+        assertEquals(image.getPackedAt(row, col), rotated.getPackedAt(1 - row, 2 - col));
+      }
+    }
+  }
+
+  @Test
+  public void testBrightnessAddsUp() {
+    IImage image = TestImages.nearLimitsImage(8, 8, 4);
+    PlannedImage planned = (PlannedImage) checkSame(image, new Brightness(20),
+            new Brightness(30), new Brightness(10));
+    assertSame(image, planned.getInput());
+    assertEquals(60, ((Brightness) planned.getCommand()).getIncrement());
+
+    planned = (PlannedImage) checkSame(image, new Brightness(-200), new Brightness(-200));
+    assertEquals(-255, ((Brightness) planned.getCommand()).getIncrement());
+    assertSame(image, checkSame(image, new Brightness(0), new Brightness(0)));
+  }
+
+  @Test
+  public void testOppositeBrightnessKeepsClamping() {
+    IImage image = TestImages.nearLimitsImage(8, 8, 5);
+    PlannedImage planned = (PlannedImage) checkSame(image, new Brightness(20),
+            new Brightness(-20));
+    assertSame(image, planned.getInput());
+    assertTrue(planned.getCommand() instanceof ChannelLookupTable);
+    // 250 goes to 255 and back to 235, so the two do not cancel
+    assertFalse(image.hasSameContent(planned));
+
+    planned = (PlannedImage) checkSame(image, new Brightness(-50), new Brightness(100),
+            new Brightness(-30), new Brightness(5));
+    assertSame(image, planned.getInput());
+  }
+
+  @Test
+  public void testPointOperationsFuse() {
+    IImage image = TestImages.nearLimitsImage(6, 5, 9);
+    PlannedImage planned = (PlannedImage) checkSame(image, new GrayScale("luma"),
+            new ColorTransformation("sepia"), new Brightness(-40));
+    assertSame(image, planned.getInput());
+    assertEquals(3, ((FusedPointOperation) planned.getCommand()).size());
+
+    planned = (PlannedImage) checkSame(image, new GrayScale("red"), new Brightness(30));
+    assertSame(image, planned.getInput());
+    assertTrue(planned.getCommand() instanceof ChannelLookupTable);
+  }
+
+  @Test
+  public void testOtherEditsAreKept() {
+    IImage image = TestImages.nearLimitsImage(5, 5, 6);
+    PlannedImage planned = (PlannedImage) checkSame(image, new GrayScale("luma"),
+            new Flip("horizontal"), new ColorTransformation("sepia"));
+    assertTrue(planned.getCommand() instanceof ColorTransformation);
+    assertTrue(planned.getInput() instanceof PlannedImage);
+
+    planned = (PlannedImage) checkSame(image, new Brightness(10), new Flip("vertical"),
+            new Brightness(10));
+    assertEquals(10, ((Brightness) planned.getCommand()).getIncrement());
+  }
+
+  @Test
+  public void testMadeImagesAreNotRewritten() {
+    IImage image = TestImages.nearLimitsImage(4, 3, 7);
+    PlannedImage first = (PlannedImage) PlanOptimizer.plan(new Brightness(20), image, null,
+            null);
+    first.materialize();
+    PlannedImage second = (PlannedImage) PlanOptimizer.plan(new Brightness(10), first, null,
+            null);
+    assertSame(first, second.getInput());
+    assertTrue(new Brightness(30).process(image).hasSameContent(second));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullCommand() {
+    PlanOptimizer.plan(null, TestImages.nearLimitsImage(1, 1, 8), null, null);
+  }
+}
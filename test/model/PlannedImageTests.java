@@ -0,0 +1,94 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.commands.Brightness;
+import model.commands.CommandCache;
+import model.commands.Flip;
+import model.commands.GrayScale;
+import model.commands.ImageProcessingCommands;
+import model.plan.PlannedImage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PlannedImage class and how the model keeps planned images.
+ */
+public class PlannedImageTests {
+
+  @Test
+  public void testChainMatchesEager() {
+    IImage image = TestImages.randomImage(9, 7, 1);
+    IImage eager = new GrayScale("luma").process(
+            new Flip("vertical").process(new Brightness(30).process(image)));
+
+    PlannedImage first = new PlannedImage(new Brightness(30), image, null, null);
+    PlannedImage second = new PlannedImage(new Flip("vertical"), first, null, null);
+    PlannedImage third = new PlannedImage(new GrayScale("luma"), second, null, null);
+    assertEquals(9, third.getWidth());
+    assertEquals(7, third.getHeight());
+    assertEquals(255, third.getMaxValue());
+    assertFalse(first.isMaterialized());
+
+    assertTrue(eager.hasSameContent(third));
+    assertTrue(first.isMaterialized());
+    assertTrue(third.isMaterialized());
+    // a made image lets go of its command and input
+    assertNull(third.getCommand());
+    assertNull(third.getInput());
+  }
+
+  @Test
+  public void testOnlyReadImagesAreMade() {
+    AtomicInteger runs = new AtomicInteger();
+    ImageProcessingCommands counted = image -> {
+      runs.incrementAndGet();
+      return new Brightness(1).process(image);
+    };
+    IImage image = TestImages.randomImage(4, 4, 2);
+    PlannedImage used = new PlannedImage(counted, image, null, null);
+    PlannedImage unused = new PlannedImage(counted, used, null, null);
+    assertEquals(0, runs.get());
+    used.getPackedAt(0, 0);
+    used.getPackedAt(1, 1);
+    assertEquals(1, runs.get());
+    assertFalse(unused.isMaterialized());
+  }
+
+  @Test
+  public void testCache() {
+    CommandCache cache = new CommandCache();
+    IImage image = TestImages.randomImage(5, 5, 3);
+    new PlannedImage(new Brightness(5), image, null, cache).materialize();
+    new PlannedImage(new Brightness(5), image, null, cache).materialize();
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testModelKeepsPlans() {
+    ImageModelImpl model = new ImageModelImpl();
+    IImage image = TestImages.randomImage(10, 10, 4);
+    PlannedImage planned = new PlannedImage(new Flip("horizontal"), image, null, null);
+    model.saveName("planned", planned);
+    assertFalse(planned.isMaterialized());
+    assertEquals(64, model.getResidentBytes());
+
+    // once the plan is made, the model counts it in full and finds its content
+    model.getValue("planned").getPackedAt(0, 0);
+    model.saveName("image", image);
+    assertEquals(2 * (400 + 64), model.getResidentBytes());
+    model.saveName("again", new Flip("horizontal").process(image));
+    assertEquals(1, model.getShared());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullInput() {
+    new PlannedImage(new Brightness(1), null, null, null);
+  }
+}
@@ -0,0 +1,81 @@
+package model;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This class has the images and checks that the tests of the model share.
+ */
+public final class TestImages {
+
+  private TestImages() {
+  }
+
+  /**
+   * Makes an image of random pixels.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param seed   the seed of the pixels, so the same seed makes the same image
+   * @return the image
+   */
+  public static ImageImpl randomImage(int width, int height, long seed) {
+    return randomImage(width, height, new Random(seed));
+  }
+
+  /**
+   * Makes an image of random pixels.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param random where the pixels come from
+   * @return the image
+   */
+  public static ImageImpl randomImage(int width, int height, Random random) {
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt(1 << 24);
+    }
+    return ImageImpl.fromPacked(width, height, 255, pixels);
+  }
+
+  /**
+   * Makes an image whose red and blue values are mostly at or near 0 and 255, where edits that
+   * are added up or clamped go wrong first. The green values are random.
+   *
+   * @param width  the width of the image
+   * @param height the height of the image
+   * @param seed   the seed of the pixels, so the same seed makes the same image
+   * @return the image
+   */
+  public static ImageImpl nearLimitsImage(int width, int height, long seed) {
+    Random random = new Random(seed);
+    int[] values = {0, 1, 5, 20, 128, 235, 250, 254, 255};
+    int[] pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      int r = values[random.nextInt(values.length)];
+      int g = random.nextInt(256);
+      int b = values[random.nextInt(values.length)];
+      pixels[i] = PackedPixels.pack(r, g, b);
+    }
+    return ImageImpl.fromPacked(width, height, 255, pixels);
+  }
+
+  /**
+   * Checks that two images have the same size, max value and pixels.
+   *
+   * @param expected the image that is expected
+   * @param actual   the image that was made
+   */
+  public static void assertSamePixels(IImage expected, IImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.getMaxValue(), actual.getMaxValue());
+    for (int row = 0; row < expected.getHeight(); row++) {
+      for (int col = 0; col < expected.getWidth(); col++) {
+        assertEquals(expected.getPackedAt(row, col), actual.getPackedAt(row, col));
+      }
+    }
+  }
+}
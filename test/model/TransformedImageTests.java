@@ -0,0 +1,128 @@
+package model;
+
+import org.junit.Test;
+
+import model.commands.Flip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the TransformedImage class.
+ */
+public class TransformedImageTests {
+
+  // checks every way of reading an image against a dense copy with the same pixels
+  private static void checkSame(IImage expected, IImage actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.getMaxValue(), actual.getMaxValue());
+    int width = expected.getWidth();
+    for (int row = 0; row < expected.getHeight(); row++) {
+      int[] expectedRow = new int[width + 2];
+      int[] actualRow = new int[width + 2];
+      expected.getPackedRow(row, expectedRow, 2);
+      actual.getPackedRow(row, actualRow, 2);
+      assertArrayEquals(expectedRow, actualRow);
+      for (int col = 0; col < width; col++) {
+        assertEquals(expected.getPackedAt(row, col), actual.getPackedAt(row, col));
+      }
+    }
+    int[] expectedRegion = new int[12];
+    int[] actualRegion = new int[12];
+    expected.getChannelRegion(1, 1, 2, 2, expectedRegion, 0);
+    actual.getChannelRegion(1, 1, 2, 2, actualRegion, 0);
+    assertArrayEquals(expectedRegion, actualRegion);
+    assertEquals(expected.getContentHash(), actual.getContentHash());
+    assertTrue(expected.hasSameContent(actual));
+    assertTrue(actual.hasSameContent(expected));
+    assertEquals(expected.getHistogramValues("red"), actual.getHistogramValues("red"));
+  }
+
+  @Test
+  public void testFlipsMatchFlip() {
+    ImageImpl image = TestImages.randomImage(7, 5, 1);
+    checkSame(new Flip("horizontal").process(image), TransformedImage.flip(image, true, false));
+    checkSame(new Flip("vertical").process(image), TransformedImage.flip(image, false, true));
+    checkSame(new Flip("both").process(image), TransformedImage.flip(image, true, true));
+    checkSame(new Flip("horizontal").process(image), new Flip("horizontal").view(image));
+  }
+
+  @Test
+  public void testFlipsCancel() {
+    ImageImpl image = TestImages.randomImage(4, 6, 2);
+    assertSame(image, TransformedImage.flip(TransformedImage.flip(image, true, false), true,
+            false));
+    IImage rotated = TransformedImage.flip(TransformedImage.flip(image, true, false), false,
+            true);
+    checkSame(new Flip("both").process(image), rotated);
+  }
+
+  @Test
+  public void testCrop() {
+    ImageImpl image = TestImages.randomImage(8, 6, 3);
+    IImage cropped = TransformedImage.crop(image, 1, 2, 4, 3);
+    int[] pixels = new int[12];
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 4; col++) {
+        pixels[row * 4 + col] = image.getPackedAt(row + 1, col + 2);
+      }
+    }
+    checkSame(ImageImpl.fromPacked(4, 3, 255, pixels), cropped);
+    assertSame(image, TransformedImage.crop(image, 0, 0, 8, 6));
+  }
+
+  @Test
+  public void testCropOfFlip() {
+    ImageImpl image = TestImages.randomImage(9, 7, 4);
+    IImage flipped = new Flip("both").process(image);
+    IImage view = TransformedImage.crop(TransformedImage.flip(image, true, true), 2, 1, 5, 4);
+    checkSame(ImageImpl.copyOf(TransformedImage.crop(flipped, 2, 1, 5, 4)), view);
+    // flipping a crop is the same as cropping the other side of the flipped image
+    IImage flippedCrop = TransformedImage.flip(TransformedImage.crop(image, 1, 3, 4, 3), true,
+            false);
+    checkSame(new Flip("horizontal").process(
+            ImageImpl.copyOf(TransformedImage.crop(image, 1, 3, 4, 3))), flippedCrop);
+  }
+
+  @Test
+  public void testViewOfOtherImage() {
+    ImageImpl image = TestImages.randomImage(6, 5, 5);
+    IImage source = TransformedImage.flip(image, true, false);
+    // a view of a view reads from the first image, which is the same as reading through both
+    IImage view = TransformedImage.crop(source, 1, 1, 3, 3);
+    checkSame(TransformedImage.crop(new Flip("horizontal").process(image), 1, 1, 3, 3), view);
+  }
+
+  @Test
+  public void testMaterialize() {
+    ImageImpl image = TestImages.randomImage(5, 5, 6);
+    ImageImpl copy = ((TransformedImage) TransformedImage.flip(image, false, true))
+            .materialize();
+    checkSame(new Flip("vertical").process(image), copy);
+    assertSame(image, ImageImpl.copyOf(image));
+  }
+
+  @Test
+  public void testModelKeepsViews() {
+    ImageModelImpl model = new ImageModelImpl();
+    ImageImpl image = TestImages.randomImage(10, 10, 7);
+    model.saveName("image", image);
+    model.saveName("flipped", TransformedImage.flip(image, true, false));
+    // the view keeps the image in memory, so it is counted as if it had pixels of its own
+    assertEquals(2 * (400 + 64), model.getResidentBytes());
+    assertEquals(2, model.getDistinctImages());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCropOutside() {
+    TransformedImage.crop(TestImages.randomImage(4, 4, 8), 2, 2, 3, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullImage() {
+    TransformedImage.flip(null, true, false);
+  }
+}